@@ -10,6 +10,7 @@ android {
     defaultConfig {
         minSdk = 21
         targetSdk = 36
+        testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
         consumerProguardFiles("consumer-rules.pro")
     }
 
@@ -39,6 +40,9 @@ android {
 dependencies {
     api(libs.appcompat)
     api(libs.core)
+    testImplementation(libs.junit)
+    androidTestImplementation(libs.ext.junit)
+    androidTestImplementation(libs.espresso.core)
 }
 
 publishing {
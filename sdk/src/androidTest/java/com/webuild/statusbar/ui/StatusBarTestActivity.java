@@ -0,0 +1,9 @@
+package com.webuild.statusbar.ui;
+
+import android.app.Activity;
+
+/**
+ * 仪器测试中承载状态栏视图的空白 Activity
+ */
+public class StatusBarTestActivity extends Activity {
+}
@@ -0,0 +1,136 @@
+package com.webuild.statusbar.ui;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 预留槽位模式：子控件的 requestLayout 不能传到父容器，且子控件在同一帧内完成布局再绘制
+ */
+@RunWith(AndroidJUnit4.class)
+public class StatusBarViewReservedSlotsTest {
+    private ActivityScenario<StatusBarTestActivity> mScenario;
+    private CountingLayout mRoot;
+    private StatusBarView mBar;
+    private ProbeView mProbe;
+
+    @Before
+    public void setUp() {
+        mScenario = ActivityScenario.launch(StatusBarTestActivity.class);
+        mScenario.onActivity(activity -> {
+            mRoot = new CountingLayout(activity);
+            mBar = new StatusBarView(activity);
+            mBar.setReservedSlots(true);
+            mProbe = new ProbeView(activity);
+            mBar.addView(mProbe, new FrameLayout.LayoutParams(40, ViewGroup.LayoutParams.MATCH_PARENT));
+            mRoot.addView(mBar, new FrameLayout.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+            activity.setContentView(mRoot);
+        });
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        mScenario.onActivity(activity -> {
+            // Insets have settled the bar's height, which is what makes its size fixed
+            assertEquals(mBar.getLayoutParams().height, mBar.getHeight());
+            mRoot.layoutRequests = 0;
+        });
+    }
+
+    @After
+    public void tearDown() {
+        mScenario.close();
+    }
+
+    @Test
+    public void slotChangeInAFrameCallbackIsLaidOutBeforeItDraws() throws InterruptedException {
+        // Status updates land from FrameDispatcher, inside the Choreographer's animation callback
+        mScenario.onActivity(activity -> FrameDispatcher.getInstance().requestFrame(() -> {
+            mProbe.getLayoutParams().width = 80;
+            mProbe.requestLayout();
+            mProbe.invalidate();
+            mProbe.arm();
+        }));
+        assertTrue(mProbe.drawn.await(2, TimeUnit.SECONDS));
+        assertEquals(80, mProbe.widthAtFirstDraw);
+        mScenario.onActivity(activity -> assertEquals(0, mRoot.layoutRequests));
+    }
+
+    @Test
+    public void repeatedSlotChangesNeverReachTheParent() {
+        for (int i = 0; i < 10; i++) {
+            int width = 40 + i;
+            mScenario.onActivity(activity -> {
+                mProbe.getLayoutParams().width = width;
+                mProbe.requestLayout();
+            });
+            InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        }
+        mScenario.onActivity(activity -> {
+            assertEquals(0, mRoot.layoutRequests);
+            assertEquals(49, mProbe.getWidth());
+        });
+    }
+
+    @Test
+    public void ownHeightChangeStillReachesTheParent() {
+        mScenario.onActivity(activity -> {
+            ViewGroup.LayoutParams lp = mBar.getLayoutParams();
+            lp.height = mBar.getHeight() + 10;
+            mBar.setLayoutParams(lp);
+            assertTrue(mRoot.layoutRequests > 0);
+        });
+    }
+
+    private static final class CountingLayout extends FrameLayout {
+        int layoutRequests;
+
+        CountingLayout(Context context) {
+            super(context);
+        }
+
+        @Override
+        public void requestLayout() {
+            layoutRequests++;
+            super.requestLayout();
+        }
+    }
+
+    private static final class ProbeView extends View {
+        final CountDownLatch drawn = new CountDownLatch(1);
+        volatile int widthAtFirstDraw = -1;
+        private boolean mArmed;
+
+        ProbeView(Context context) {
+            super(context);
+        }
+
+        void arm() {
+            mArmed = true;
+        }
+
+        @Override
+        protected void onDraw(Canvas canvas) {
+            super.onDraw(canvas);
+            if (mArmed) {
+                mArmed = false;
+                widthAtFirstDraw = getWidth();
+                drawn.countDown();
+            }
+        }
+    }
+}
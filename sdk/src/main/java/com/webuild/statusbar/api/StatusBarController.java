@@ -11,6 +11,7 @@ import com.webuild.statusbar.R;
 import com.webuild.statusbar.config.StatusBarConfig;
 import com.webuild.statusbar.core.StatusBarInstaller;
 import com.webuild.statusbar.core.WindowHelper;
+import com.webuild.statusbar.ui.FlatStatusRenderer;
 import com.webuild.statusbar.ui.NetworkView;
 import com.webuild.statusbar.ui.StatusBarView;
 
@@ -79,6 +80,11 @@ public final class StatusBarController {
     public static void setTitleVisible(@NonNull Activity activity, boolean visible) {
         StatusBarView v = get(activity);
         if (v == null) return;
+        FlatStatusRenderer flat = v.getFlatRenderer();
+        if (flat != null) {
+            flat.setSlotEnabled(FlatStatusRenderer.SLOT_TITLE, visible);
+            return;
+        }
         android.widget.TextView title = v.findViewById(R.id.sdk_title);
         NetworkView net = v.findViewById(R.id.sdk_network);
         if (title == null && visible) {
@@ -121,6 +127,12 @@ public final class StatusBarController {
     public static void setTitleText(@NonNull Activity activity, @NonNull CharSequence text) {
         StatusBarView v = get(activity);
         if (v == null) return;
+        FlatStatusRenderer flat = v.getFlatRenderer();
+        if (flat != null) {
+            flat.setTitle(text);
+            flat.setSlotEnabled(FlatStatusRenderer.SLOT_TITLE, true);
+            return;
+        }
         android.widget.TextView title = v.findViewById(R.id.sdk_title);
         if (title == null) {
             setTitleVisible(activity, true);
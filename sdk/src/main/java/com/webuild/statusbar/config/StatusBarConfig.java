@@ -5,6 +5,9 @@ import android.graphics.Color;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
 
+import com.webuild.statusbar.state.SignalFilter;
+import com.webuild.statusbar.ui.TimeView;
+
 public class StatusBarConfig {
     public Drawable background;
     public boolean lightIcons;
@@ -13,12 +16,30 @@ public class StatusBarConfig {
     public boolean useSystemInsets = true;
     public boolean networkClickable = false;
     public boolean useXmlContent = true;
+    /** 不创建子控件，所有内容由 StatusBarView 直接绘制，整个状态栏只有一个 View；开启时忽略 useXmlContent */
+    public boolean flatRendering = false;
+    /** 预留槽位：各图标、文字槽位尺寸固定，隐藏时保留位置，状态变化只重绘，不会让 DecorView 和内容区重新布局 */
+    public boolean reservedSlots = false;
     public boolean showNetwork = true;
     public boolean showBluetooth = true;
     public boolean showTime = true;
     public boolean showBattery = true;
     public boolean showTitle = false;
     public CharSequence titleText;
+    /** TimeView.CLOCK_MODE_*，相机、录像等需要秒级显示的页面使用 CLOCK_MODE_SECONDS */
+    public int clockMode = TimeView.CLOCK_MODE_SYSTEM;
+    /** 时间和电量使用等宽数字并锁定宽度，数值变化时只重绘不重新布局 */
+    public boolean fixedWidthDigits = false;
+    /** 电池图标改为按实际电量连续绘制的电量表，电量变化只重绘图标区域 */
+    public boolean batteryGauge = false;
+    /** 电量量化步长（百分比），如 5 表示每变化 5% 才刷新一次；电池观察者进程内共享，以最后一次 install 为准 */
+    public int batteryStep = 1;
+    /** 电量每分钟最多刷新次数，0 表示不限；充电状态变化和进出低电量不受限制 */
+    public int batteryMaxPerMinute = 0;
+    /** Wi-Fi 信号跨越格数边界需要超出的 dB 数，RSSI 停在边界附近时图标不再来回跳动 */
+    public int signalMarginDb = SignalFilter.DEFAULT_MARGIN_DB;
+    /** Wi-Fi RSSI 平滑系数，新样本权重 (0, 1]，默认 1 不平滑；RSSI 按事件上报、样本稀疏，小于 1 会让格数滞后 */
+    public float signalSmoothing = SignalFilter.DEFAULT_SMOOTHING;
 
     public StatusBarConfig() {}
 
@@ -18,11 +18,16 @@ import androidx.core.view.WindowInsetsCompat;
 
 import com.webuild.statusbar.R;
 import com.webuild.statusbar.config.StatusBarConfig;
+import com.webuild.statusbar.metrics.FlightRecorder;
 import com.webuild.statusbar.ui.BatteryView;
 import com.webuild.statusbar.ui.BluetoothView;
+import com.webuild.statusbar.ui.FlatStatusRenderer;
 import com.webuild.statusbar.ui.NetworkView;
 import com.webuild.statusbar.ui.StatusBarView;
 import com.webuild.statusbar.ui.TimeView;
+import com.webuild.statusbar.ui.observers.BatteryObserver;
+import com.webuild.statusbar.ui.observers.NetworkObserver;
+import com.webuild.statusbar.ui.observers.StatusHub;
 
 /**
  * 状态栏安装器 - 将自定义状态栏View添加到DecorView
@@ -36,10 +41,16 @@ public final class StatusBarInstaller {
     public static void install(@NonNull Activity activity, @Nullable StatusBarConfig config) {
         // 1. 立即准备窗口，隐藏系统状态栏
         WindowHelper.prepareForCustomStatusBar(activity);
+        // 在创建任何状态栏控件之前载入上次缓存的状态（观察者线程上，每个进程一次，最多等待几十毫秒），
+        // 状态栏 attach 时读到的快照即为缓存值，首帧即可显示正确图标
+        StatusHub.getInstance(activity).warmStart();
         
         Window window = activity.getWindow();
         ViewGroup decorView = (ViewGroup) window.getDecorView();
         View existing = decorView.findViewById(R.id.sdk_status_bar);
+        // value1: 1 when re-installing onto an existing bar; value2: whether a config was passed
+        FlightRecorder.getInstance().record(FlightRecorder.SOURCE_INSTALL, FlightRecorder.OUTCOME_INSTALLED,
+                existing != null ? 1 : 0, config != null ? 1 : 0);
         if (existing == null) {
             StatusBarView view = new StatusBarView(activity);
             view.setId(R.id.sdk_status_bar);
@@ -52,9 +63,12 @@ public final class StatusBarInstaller {
                     view.setFixedHeightPx(config.fixedHeightPx);
                 }
                 view.setUseSystemInsets(config.useSystemInsets);
+                view.setReservedSlots(config.reservedSlots);
             }
             decorView.addView(view, new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
-            if (config != null && !config.useXmlContent) {
+            if (config != null && config.flatRendering) {
+                view.setFlatRendering(true);
+            } else if (config != null && !config.useXmlContent) {
                 setupDynamicContent(activity, view, config);
             } else {
                 LayoutInflater.from(activity).inflate(R.layout.sdk_status_bar_content, view, true);
@@ -87,12 +101,14 @@ public final class StatusBarInstaller {
                     view.setFixedHeightPx(config.fixedHeightPx);
                 }
                 view.setUseSystemInsets(config.useSystemInsets);
+                view.setReservedSlots(config.reservedSlots);
+                view.setFlatRendering(config.flatRendering);
                 View net = view.findViewById(R.id.sdk_network);
                 if (net instanceof NetworkView) {
                     ((NetworkView) net).setClickEnabled(config.networkClickable);
                 }
             }
-            if (view.getChildCount() == 0) {
+            if (!view.isFlatRendering() && view.getChildCount() == 0) {
                 if (config != null && !config.useXmlContent) {
                     setupDynamicContent(activity, view, config);
                 } else {
@@ -129,6 +145,35 @@ public final class StatusBarInstaller {
             }
             view.bringToFront();
         }
+        if (config != null) {
+            // Reserved slots need the text widths locked too, otherwise every tick resizes the text
+            boolean fixedWidthDigits = config.fixedWidthDigits || config.reservedSlots;
+            View time = decorView.findViewById(R.id.sdk_time);
+            if (time instanceof TimeView) {
+                ((TimeView) time).setClockMode(config.clockMode);
+                ((TimeView) time).setFixedWidthDigits(fixedWidthDigits);
+            }
+            View battery = decorView.findViewById(R.id.sdk_battery);
+            if (battery instanceof BatteryView) {
+                ((BatteryView) battery).setFixedWidthDigits(fixedWidthDigits);
+                ((BatteryView) battery).setGaugeEnabled(config.batteryGauge);
+            }
+            View bluetooth = decorView.findViewById(R.id.sdk_bluetooth);
+            if (bluetooth instanceof BluetoothView) {
+                ((BluetoothView) bluetooth).setReserveSpace(config.reservedSlots);
+            }
+            View network = decorView.findViewById(R.id.sdk_network);
+            if (network instanceof NetworkView) {
+                ((NetworkView) network).setReserveSpace(config.reservedSlots);
+            }
+            View bar = decorView.findViewById(R.id.sdk_status_bar);
+            FlatStatusRenderer flat = bar instanceof StatusBarView ? ((StatusBarView) bar).getFlatRenderer() : null;
+            if (flat != null) {
+                applyFlatConfig(flat, config);
+            }
+            BatteryObserver.getInstance(activity).setReportPolicy(config.batteryStep, config.batteryMaxPerMinute);
+            NetworkObserver.getInstance(activity).setSignalFilter(config.signalMarginDb, config.signalSmoothing);
+        }
         // 2. 设置状态栏图标颜色模式
         if (config != null) {
             WindowHelper.setLightStatusBar(activity, config.lightIcons);
@@ -260,6 +305,22 @@ public final class StatusBarInstaller {
         }
     }
 
+    private static void applyFlatConfig(@NonNull FlatStatusRenderer flat, @NonNull StatusBarConfig config) {
+        boolean showTitle = config.showTitle && config.titleText != null && config.titleText.length() > 0;
+        flat.setSlotEnabled(FlatStatusRenderer.SLOT_TIME, config.showTime);
+        flat.setSlotEnabled(FlatStatusRenderer.SLOT_TITLE, showTitle);
+        flat.setSlotEnabled(FlatStatusRenderer.SLOT_BLUETOOTH, config.showBluetooth);
+        flat.setSlotEnabled(FlatStatusRenderer.SLOT_NETWORK, config.showNetwork);
+        flat.setSlotEnabled(FlatStatusRenderer.SLOT_BATTERY, config.showBattery);
+        if (showTitle) {
+            flat.setTitle(config.titleText);
+        }
+        flat.setClockMode(config.clockMode);
+        flat.setFixedWidthDigits(config.fixedWidthDigits || config.reservedSlots);
+        flat.setBatteryGauge(config.batteryGauge);
+        flat.setNetworkClickable(config.networkClickable);
+    }
+
     private static int margin(@NonNull Activity activity, int dp) {
         return Math.round(dp * activity.getResources().getDisplayMetrics().density);
     }
@@ -0,0 +1,85 @@
+package com.webuild.statusbar.core;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.webuild.statusbar.state.StatusWord;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 状态预热缓存
+ * 把最近一次的 {@link StatusWord} 存进一个 16 字节的内存映射文件，冷启动时由
+ * {@link com.webuild.statusbar.ui.observers.StatusHub#warmStart()} 在首个 StatusBarView 创建前读出，
+ * 使第一帧就显示接近真实的图标，避免布局跳动。
+ *
+ * <pre>
+ * 0  int   MAGIC
+ * 4  int   VERSION
+ * 8  long  status word（不含时间字段）
+ * </pre>
+ */
+public final class StatusCache {
+    private static final String FILE_NAME = "wb_status_cache.bin";
+    private static final int MAGIC = 0x57425354; // "WBST"
+    private static final int VERSION = 1;
+    private static final int SIZE = 16;
+    private static final int WORD_OFFSET = 8;
+
+    private static MappedByteBuffer sBuffer;
+    private static boolean sOpened;
+
+    private StatusCache() {}
+
+    /**
+     * @return 缓存的状态；没有缓存或读取失败时返回 {@link StatusWord#EMPTY}
+     */
+    public static synchronized long load(@NonNull Context context) {
+        MappedByteBuffer buffer = open(context);
+        if (buffer == null || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            return StatusWord.EMPTY;
+        }
+        return buffer.getLong(WORD_OFFSET);
+    }
+
+    public static synchronized void save(@NonNull Context context, long word) {
+        MappedByteBuffer buffer = open(context);
+        if (buffer == null) {
+            return;
+        }
+        // Time fields are meaningless across launches
+        long persisted = StatusWord.withBluetooth(
+                StatusWord.pack(StatusWord.batteryLevel(word), StatusWord.isCharging(word),
+                        StatusWord.transport(word), StatusWord.signalLevel(word),
+                        StatusWord.bluetoothState(word), false, 0),
+                StatusWord.bluetoothState(word), StatusWord.bluetoothDevices(word));
+        if (buffer.getInt(0) == MAGIC && buffer.getLong(WORD_OFFSET) == persisted) {
+            return;
+        }
+        buffer.putLong(WORD_OFFSET, persisted);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(0, MAGIC);
+    }
+
+    private static MappedByteBuffer open(Context context) {
+        if (sOpened) {
+            return sBuffer;
+        }
+        sOpened = true;
+        File file = new File(context.getApplicationContext().getNoBackupFilesDir(), FILE_NAME);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            if (raf.length() != SIZE) {
+                raf.setLength(SIZE);
+            }
+            // The mapping stays valid after the channel is closed
+            sBuffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, SIZE);
+        } catch (Exception e) {
+            sBuffer = null;
+        }
+        return sBuffer;
+    }
+}
@@ -0,0 +1,114 @@
+package com.webuild.statusbar.metrics;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 状态事件飞行记录器
+ * 固定大小的环形缓冲区，每条记录为 3 个 long：时间戳、来源/结果、两个原始值，写入时不分配对象。
+ * 可随时或在崩溃时导出为紧凑的二进制文件，用于排查图标闪烁、状态栏停止刷新等现场问题。
+ * 导出是尽力而为的：与写入并发时，最旧的几条记录可能已被覆盖。
+ *
+ * <pre>
+ * 文件头: int MAGIC, int VERSION, int 记录数, int 保留
+ * 记录:   long 时间戳(ms), long (source &lt;&lt; 32 | outcome), long (value1 &lt;&lt; 32 | value2 &amp; 0xFFFFFFFF)
+ * 全部为小端序，按时间顺序排列
+ * </pre>
+ * 各来源的原始值：电池为 (level &lt;&lt; 16 | scale, status &lt;&lt; 16 | plugged)，网络为 (transport, level)，
+ * 蓝牙为 (state, 设备数)，时间为 (0, 分钟) 或 (1, 是否 24 小时制)，安装为 (是否重复安装, 是否带配置)。
+ * OUTCOME_RECEIVED 在观察者收到原始事件时写入，随后同一来源的 DISPATCHED/DROPPED/COALESCED 是规则处理的结果；
+ * 接收记录中网络为 (0, 0)（类型和格数要等去抖后才确定），蓝牙为 (profile，适配器事件为 -1, 事件携带的状态)，
+ * 电池和时间与上面相同。
+ */
+public final class FlightRecorder {
+    public static final int SOURCE_INSTALL = StatusMetrics.SOURCE_COUNT;
+
+    public static final int OUTCOME_RECEIVED = 0;
+    public static final int OUTCOME_DISPATCHED = 1;
+    public static final int OUTCOME_DROPPED = 2;
+    public static final int OUTCOME_COALESCED = 3;
+    public static final int OUTCOME_INSTALLED = 4;
+
+    private static final int MAGIC = 0x57424652; // "WBFR"
+    private static final int VERSION = 1;
+    private static final int CAPACITY = 1024; // power of two
+    private static final int STRIDE = 3;
+    private static final int HEADER_BYTES = 16;
+
+    private static final FlightRecorder sInstance = new FlightRecorder();
+
+    private final long[] mRecords = new long[CAPACITY * STRIDE];
+    private final AtomicLong mNext = new AtomicLong();
+    private volatile boolean mEnabled = true;
+
+    public static FlightRecorder getInstance() {
+        return sInstance;
+    }
+
+    private FlightRecorder() {}
+
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    /**
+     * @param source  StatusMetrics.SOURCE_* 或 {@link #SOURCE_INSTALL}
+     * @param outcome OUTCOME_*
+     */
+    public void record(int source, int outcome, int value1, int value2) {
+        if (!mEnabled) return;
+        int base = (int) (mNext.getAndIncrement() & (CAPACITY - 1)) * STRIDE;
+        mRecords[base] = System.currentTimeMillis();
+        mRecords[base + 1] = ((long) source << 32) | (outcome & 0xFFFFFFFFL);
+        mRecords[base + 2] = ((long) value1 << 32) | (value2 & 0xFFFFFFFFL);
+    }
+
+    public long getRecordedCount() {
+        return mNext.get();
+    }
+
+    /**
+     * 把当前缓冲区按时间顺序写入 file（覆盖）
+     */
+    public void dump(File file) throws IOException {
+        long end = mNext.get();
+        int count = (int) Math.min(end, CAPACITY);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + count * STRIDE * 8).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(0);
+        for (long i = end - count; i < end; i++) {
+            int base = (int) (i & (CAPACITY - 1)) * STRIDE;
+            buffer.putLong(mRecords[base]);
+            buffer.putLong(mRecords[base + 1]);
+            buffer.putLong(mRecords[base + 2]);
+        }
+        buffer.flip();
+        try (FileOutputStream out = new FileOutputStream(file);
+             FileChannel channel = out.getChannel()) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * 在未捕获异常导致进程退出前把记录导出到 file，之后交给原有的处理器
+     */
+    public void enableCrashDump(File file) {
+        Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((thread, throwable) -> {
+            try {
+                dump(file);
+            } catch (Throwable ignored) {
+                // Never mask the original crash
+            }
+            if (previous != null) {
+                previous.uncaughtException(thread, throwable);
+            }
+        });
+    }
+}
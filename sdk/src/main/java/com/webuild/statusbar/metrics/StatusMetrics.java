@@ -0,0 +1,216 @@
+package com.webuild.statusbar.metrics;
+
+import com.webuild.statusbar.state.StatusSnapshot;
+import com.webuild.statusbar.util.ListenerRegistry;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 状态源运行时指标
+ * 按状态源统计：收到的事件数、分发的通知数、无变化被丢弃数、被防抖合并数，
+ * 以及从收到事件到界面应用的延迟直方图（按 2 的幂分桶，单位微秒）。
+ * 全部使用原子计数，无锁无分配，可以在线上常开。
+ */
+public final class StatusMetrics {
+    public static final int SOURCE_BATTERY = 0;
+    public static final int SOURCE_NETWORK = 1;
+    public static final int SOURCE_BLUETOOTH = 2;
+    public static final int SOURCE_TIME = 3;
+    public static final int SOURCE_COUNT = 4;
+
+    private static final String[] SOURCE_NAMES = {"battery", "network", "bluetooth", "time"};
+
+    // Bucket i holds latencies in [2^(i-1), 2^i) microseconds; the last one is open-ended
+    public static final int BUCKET_COUNT = 24;
+
+    private static final int COUNTER_RECEIVED = 0;
+    private static final int COUNTER_DISPATCHED = 1;
+    private static final int COUNTER_DROPPED = 2;
+    private static final int COUNTER_COALESCED = 3;
+    private static final int COUNTER_APPLIED = 4;
+    private static final int COUNTER_MAX_LATENCY_US = 5;
+    private static final int COUNTER_STRIDE = 6;
+
+    private static final ListenerRegistry.LongIntNotifier<Listener> LATENCY_RECORDED =
+            (listener, latencyNanos, source) -> listener.onLatencyRecorded(source, latencyNanos);
+    private static final StatusMetrics sInstance = new StatusMetrics();
+
+    private final AtomicLongArray mCounters = new AtomicLongArray(SOURCE_COUNT * COUNTER_STRIDE);
+    private final AtomicLongArray mHistogram = new AtomicLongArray(SOURCE_COUNT * BUCKET_COUNT);
+    // Receipt time of the oldest event not yet applied to the UI, 0 when nothing is pending
+    private final AtomicLongArray mPendingSince = new AtomicLongArray(SOURCE_COUNT);
+    private final ListenerRegistry<Listener> mListeners = new ListenerRegistry<>();
+    private volatile boolean mEnabled = true;
+
+    public interface Listener {
+        /**
+         * 某个状态源的变化被界面应用时回调，在界面线程上调用，实现需要足够轻量
+         */
+        void onLatencyRecorded(int source, long latencyNanos);
+    }
+
+    public static StatusMetrics getInstance() {
+        return sInstance;
+    }
+
+    private StatusMetrics() {}
+
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    public void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * 收到一次系统事件（广播、回调等）
+     */
+    public void recordReceived(int source) {
+        if (!mEnabled) return;
+        mCounters.incrementAndGet(source * COUNTER_STRIDE + COUNTER_RECEIVED);
+        mPendingSince.compareAndSet(source, 0, System.nanoTime());
+    }
+
+    /**
+     * 状态变化后通知了监听器
+     */
+    public void recordDispatched(int source) {
+        if (!mEnabled) return;
+        mCounters.incrementAndGet(source * COUNTER_STRIDE + COUNTER_DISPATCHED);
+    }
+
+    /**
+     * 事件处理后状态没有变化
+     */
+    public void recordDropped(int source) {
+        if (!mEnabled) return;
+        mCounters.incrementAndGet(source * COUNTER_STRIDE + COUNTER_DROPPED);
+        mPendingSince.set(source, 0);
+    }
+
+    /**
+     * 事件被合并进一个尚未执行的更新
+     */
+    public void recordCoalesced(int source) {
+        if (!mEnabled) return;
+        mCounters.incrementAndGet(source * COUNTER_STRIDE + COUNTER_COALESCED);
+    }
+
+    /**
+     * 界面应用了 changedFields 对应的变化，记录从收到事件到此刻的延迟
+     * @param changedFields StatusSnapshot.FIELD_* 组合
+     */
+    public void recordApplied(int changedFields) {
+        if (!mEnabled) return;
+        if ((changedFields & StatusSnapshot.FIELD_BATTERY) != 0) recordAppliedSource(SOURCE_BATTERY);
+        if ((changedFields & StatusSnapshot.FIELD_NETWORK) != 0) recordAppliedSource(SOURCE_NETWORK);
+        if ((changedFields & StatusSnapshot.FIELD_BLUETOOTH) != 0) recordAppliedSource(SOURCE_BLUETOOTH);
+        if ((changedFields & StatusSnapshot.FIELD_TIME) != 0) recordAppliedSource(SOURCE_TIME);
+    }
+
+    private void recordAppliedSource(int source) {
+        long since = mPendingSince.getAndSet(source, 0);
+        if (since == 0) {
+            return;
+        }
+        long latencyNanos = System.nanoTime() - since;
+        long micros = latencyNanos / 1000;
+        int bucket = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+        mHistogram.incrementAndGet(source * BUCKET_COUNT + bucket);
+        int base = source * COUNTER_STRIDE;
+        mCounters.incrementAndGet(base + COUNTER_APPLIED);
+        long max;
+        do {
+            max = mCounters.get(base + COUNTER_MAX_LATENCY_US);
+        } while (micros > max && !mCounters.compareAndSet(base + COUNTER_MAX_LATENCY_US, max, micros));
+        mListeners.dispatchLong(LATENCY_RECORDED, latencyNanos, source);
+    }
+
+    public long getReceived(int source) {
+        return mCounters.get(source * COUNTER_STRIDE + COUNTER_RECEIVED);
+    }
+
+    public long getDispatched(int source) {
+        return mCounters.get(source * COUNTER_STRIDE + COUNTER_DISPATCHED);
+    }
+
+    public long getDropped(int source) {
+        return mCounters.get(source * COUNTER_STRIDE + COUNTER_DROPPED);
+    }
+
+    public long getCoalesced(int source) {
+        return mCounters.get(source * COUNTER_STRIDE + COUNTER_COALESCED);
+    }
+
+    /**
+     * @return 收到的事件数与分发的通知数之比，1 表示没有任何合并
+     */
+    public float getCoalescingRatio(int source) {
+        long dispatched = getDispatched(source);
+        return dispatched == 0 ? 0f : getReceived(source) / (float) dispatched;
+    }
+
+    /**
+     * @param percentile 0-100
+     * @return 延迟上界估计（微秒），没有样本时返回 0
+     */
+    public long getLatencyPercentileMicros(int source, float percentile) {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += mHistogram.get(source * BUCKET_COUNT + i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(total * percentile / 100f);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += mHistogram.get(source * BUCKET_COUNT + i);
+            if (seen >= target) {
+                return i == BUCKET_COUNT - 1 ? getMaxLatencyMicros(source) : 1L << i;
+            }
+        }
+        return getMaxLatencyMicros(source);
+    }
+
+    public long getMaxLatencyMicros(int source) {
+        return mCounters.get(source * COUNTER_STRIDE + COUNTER_MAX_LATENCY_US);
+    }
+
+    public void reset() {
+        for (int i = 0; i < mCounters.length(); i++) mCounters.set(i, 0);
+        for (int i = 0; i < mHistogram.length(); i++) mHistogram.set(i, 0);
+        for (int i = 0; i < mPendingSince.length(); i++) mPendingSince.set(i, 0);
+    }
+
+    public static String sourceName(int source) {
+        return source >= 0 && source < SOURCE_COUNT ? SOURCE_NAMES[source] : "unknown";
+    }
+
+    /**
+     * 生成便于贴进问题报告的文本，延迟单位为微秒
+     */
+    public String dump() {
+        StringBuilder sb = new StringBuilder(512);
+        sb.append(String.format(Locale.US, "%-10s %8s %8s %8s %8s %6s %8s %8s %8s %8s%n",
+                "source", "recv", "disp", "drop", "coal", "ratio", "p50", "p90", "p99", "max"));
+        for (int s = 0; s < SOURCE_COUNT; s++) {
+            sb.append(String.format(Locale.US, "%-10s %8d %8d %8d %8d %6.2f %8d %8d %8d %8d%n",
+                    SOURCE_NAMES[s], getReceived(s), getDispatched(s), getDropped(s), getCoalesced(s),
+                    getCoalescingRatio(s),
+                    getLatencyPercentileMicros(s, 50), getLatencyPercentileMicros(s, 90),
+                    getLatencyPercentileMicros(s, 99), getMaxLatencyMicros(s)));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,28 @@
+package com.webuild.statusbar.source;
+
+/**
+ * 状态源向分发引擎上报原始状态的入口
+ * 只接收基本类型，实现方（{@link com.webuild.statusbar.state.StatusEngine}）负责合并与去重。
+ */
+public interface StatusSink {
+    /**
+     * @param level 0-100
+     */
+    void onBatteryChanged(int level, boolean charging);
+
+    /**
+     * @param transport   StatusWord.TRANSPORT_*
+     * @param signalLevel 0-4，仅 Wi-Fi 有意义
+     */
+    void onNetworkChanged(int transport, int signalLevel);
+
+    /**
+     * @param state            -1: 关闭, 0: 开启未连接, 2: 已连接
+     * @param connectedDevices 已连接设备数
+     */
+    void onBluetoothChanged(int state, int connectedDevices);
+
+    void onTimeFormatChanged(boolean is24Hour);
+
+    void onTimeTick();
+}
@@ -0,0 +1,14 @@
+package com.webuild.statusbar.source;
+
+/**
+ * 原始状态源
+ * 与分发引擎解耦：Android 实现包装系统观察者，测试/压测可以换成内存中的 Fake 实现。
+ */
+public interface StatusSource {
+    /**
+     * 开始上报，实现应立即上报一次当前状态
+     */
+    void start(StatusSink sink);
+
+    void stop();
+}
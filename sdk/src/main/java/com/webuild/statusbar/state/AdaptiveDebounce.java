@@ -0,0 +1,59 @@
+package com.webuild.statusbar.state;
+
+/**
+ * 自适应防抖窗口
+ * 事件在上一个窗口内再次到达时窗口加倍，直到上限；事件变稀疏时逐步减半回到下限。
+ * 高频抖动时合并得更多，偶发事件仍能很快生效。
+ * 不依赖 Android 类，非线程安全，只能在一个线程上使用。
+ */
+public final class AdaptiveDebounce {
+    public static final long DEFAULT_MIN_MS = 100;
+    public static final long DEFAULT_MAX_MS = 1000;
+    // A gap this many windows long means the burst is over
+    private static final int QUIET_WINDOWS = 4;
+
+    private final long mMinMs;
+    private final long mMaxMs;
+    private long mWindowMs;
+    private long mLastEventMs;
+    private boolean mHasEvent;
+
+    public AdaptiveDebounce() {
+        this(DEFAULT_MIN_MS, DEFAULT_MAX_MS);
+    }
+
+    public AdaptiveDebounce(long minMs, long maxMs) {
+        mMinMs = Math.max(0, minMs);
+        mMaxMs = Math.max(mMinMs, maxMs);
+        mWindowMs = mMinMs;
+    }
+
+    /**
+     * 记录一次事件
+     * @return 本次应使用的防抖时长
+     */
+    public long onEvent(long nowMs) {
+        if (mHasEvent) {
+            long gap = nowMs - mLastEventMs;
+            if (gap < mWindowMs) {
+                mWindowMs = Math.min(mMaxMs, Math.max(1, mWindowMs * 2));
+            } else if (gap >= mWindowMs * QUIET_WINDOWS) {
+                mWindowMs = mMinMs;
+            } else {
+                mWindowMs = Math.max(mMinMs, mWindowMs / 2);
+            }
+        }
+        mHasEvent = true;
+        mLastEventMs = nowMs;
+        return mWindowMs;
+    }
+
+    public long getWindowMs() {
+        return mWindowMs;
+    }
+
+    public void reset() {
+        mWindowMs = mMinMs;
+        mHasEvent = false;
+    }
+}
@@ -0,0 +1,158 @@
+package com.webuild.statusbar.state;
+
+/**
+ * 电量上报过滤器
+ * ACTION_BATTERY_CHANGED 在电压、温度变化时也会发送，充电时尤其频繁。这里按三条规则决定是否通知界面：
+ * 1. 量化：电量与上次上报相差不足 step 时不上报（低电量区间、0% 和 100% 除外）；
+ * 2. 滞回：低于 {@link #LOW_THRESHOLD} 进入低电量，回到 LOW_THRESHOLD + hysteresis 以上才退出，
+ *    期间上报值保持在阈值以下，避免在阈值附近来回闪烁；
+ * 3. 限流：每分钟最多上报 maxPerMinute 次，超出的更新只保留最新值，延迟到窗口允许时再上报。
+ *    首次上报、充电状态变化和进出低电量不受限流约束。
+ * 不依赖 Android 类，观察者和回放引擎共用同一套规则。非线程安全，只能在一个线程上使用。
+ */
+public final class BatteryFilter {
+    public static final int LOW_THRESHOLD = 20;
+    public static final int DEFAULT_HYSTERESIS = 2;
+    public static final long WINDOW_MS = 60_000L;
+
+    public static final int RESULT_DISPATCH = 0;
+    public static final int RESULT_DROP = 1;
+    public static final int RESULT_DEFER = 2;
+
+    private int mStep = 1;
+    private int mHysteresis = DEFAULT_HYSTERESIS;
+    // Timestamps of the last dispatches, used as a ring; empty when unlimited
+    private long[] mSentTimes = new long[0];
+    private int mSentIndex;
+
+    private int mLevel = -1;
+    private boolean mCharging;
+    private boolean mLow;
+
+    private boolean mHasPending;
+    private int mPendingLevel;
+    private boolean mPendingCharging;
+    private long mDeferUntil;
+
+    /**
+     * @param step 量化步长（百分比），1 表示每 1% 上报一次
+     */
+    public void setStep(int step) {
+        mStep = Math.max(1, Math.min(50, step));
+    }
+
+    public int getStep() {
+        return mStep;
+    }
+
+    /**
+     * @param hysteresis 退出低电量需要高出阈值的百分比，0 表示不做滞回
+     */
+    public void setHysteresis(int hysteresis) {
+        mHysteresis = Math.max(0, Math.min(LOW_THRESHOLD, hysteresis));
+    }
+
+    /**
+     * @param maxPerMinute 每分钟最多上报次数，0 表示不限
+     */
+    public void setMaxPerMinute(int maxPerMinute) {
+        maxPerMinute = Math.max(0, maxPerMinute);
+        if (maxPerMinute != mSentTimes.length) {
+            mSentTimes = new long[maxPerMinute];
+            for (int i = 0; i < maxPerMinute; i++) {
+                mSentTimes[i] = Long.MIN_VALUE;
+            }
+            mSentIndex = 0;
+        }
+    }
+
+    public int getMaxPerMinute() {
+        return mSentTimes.length;
+    }
+
+    /**
+     * 提交一次原始电量
+     * @return RESULT_*；RESULT_DISPATCH 时通过 {@link #getLevel()}、{@link #isCharging()} 读取要上报的值，
+     *         RESULT_DEFER 时应在 {@link #getDeferUntil()} 调用 {@link #flush(long)}
+     */
+    public int offer(int level, boolean charging, long nowMs) {
+        level = Math.max(0, Math.min(100, level));
+        boolean low = !charging && (mLow ? level < LOW_THRESHOLD + mHysteresis : level < LOW_THRESHOLD);
+        // Hold the reported level under the threshold while latched low
+        int reported = low ? Math.min(level, LOW_THRESHOLD - 1) : level;
+        boolean urgent = mLevel < 0 || charging != mCharging || low != mLow;
+        if (!urgent) {
+            if (reported == mLevel) {
+                mHasPending = false;
+                return RESULT_DROP;
+            }
+            boolean exact = low || reported == 0 || reported == 100;
+            if (!exact && Math.abs(reported - mLevel) < mStep) {
+                mHasPending = false;
+                return RESULT_DROP;
+            }
+            if (mSentTimes.length > 0) {
+                long oldest = mSentTimes[mSentIndex];
+                if (oldest != Long.MIN_VALUE && nowMs - oldest < WINDOW_MS) {
+                    mHasPending = true;
+                    mPendingLevel = level;
+                    mPendingCharging = charging;
+                    mDeferUntil = oldest + WINDOW_MS;
+                    return RESULT_DEFER;
+                }
+            }
+        }
+        mHasPending = false;
+        mLevel = reported;
+        mCharging = charging;
+        mLow = low;
+        if (mSentTimes.length > 0) {
+            mSentTimes[mSentIndex] = nowMs;
+            mSentIndex = (mSentIndex + 1) % mSentTimes.length;
+        }
+        return RESULT_DISPATCH;
+    }
+
+    /**
+     * 重新提交被限流的最新值，没有待上报的值时返回 RESULT_DROP
+     */
+    public int flush(long nowMs) {
+        if (!mHasPending) {
+            return RESULT_DROP;
+        }
+        return offer(mPendingLevel, mPendingCharging, nowMs);
+    }
+
+    public boolean hasPending() {
+        return mHasPending;
+    }
+
+    public long getDeferUntil() {
+        return mDeferUntil;
+    }
+
+    /**
+     * 最近一次上报的电量，尚未上报时为 -1
+     */
+    public int getLevel() {
+        return mLevel;
+    }
+
+    public boolean isCharging() {
+        return mCharging;
+    }
+
+    /**
+     * 清除上报记录和待上报值，下一次 offer 一定上报，设置保持不变
+     */
+    public void reset() {
+        mLevel = -1;
+        mCharging = false;
+        mLow = false;
+        mHasPending = false;
+        for (int i = 0; i < mSentTimes.length; i++) {
+            mSentTimes[i] = Long.MIN_VALUE;
+        }
+        mSentIndex = 0;
+    }
+}
@@ -0,0 +1,88 @@
+package com.webuild.statusbar.state;
+
+import com.webuild.statusbar.metrics.FlightRecorder;
+
+/**
+ * 电量上报规则
+ * 在 {@link BatteryFilter} 之上负责被推迟样本的定时补发，
+ * BatteryObserver 和回放引擎共用这一份实现。
+ * 不依赖 Android 类，非线程安全，只能在 scheduler 的线程上使用。
+ */
+public final class BatteryGate {
+    private final BatteryFilter mFilter = new BatteryFilter();
+    private final Scheduler mScheduler;
+    private final GateCallback mCallback;
+    private final Runnable mFlushRunnable = this::flushDeferred;
+    // Raw values of the deferred sample, passed through with its delayed outcome
+    private int mDeferredRaw1;
+    private int mDeferredRaw2;
+
+    /**
+     * 结果回调的两个值为 offer 时传入的原始值，分发时的电量从 {@link #getLevel()}、{@link #isCharging()} 读取
+     */
+    public BatteryGate(Scheduler scheduler, GateCallback callback) {
+        mScheduler = scheduler;
+        mCallback = callback;
+    }
+
+    public BatteryFilter getFilter() {
+        return mFilter;
+    }
+
+    /**
+     * 提交一次电量样本
+     * @param raw1 原始值，仅随结果透传
+     * @param raw2 原始值，仅随结果透传
+     */
+    public void offer(int level, boolean charging, int raw1, int raw2) {
+        handleResult(mFilter.offer(level, charging, mScheduler.now()), raw1, raw2);
+    }
+
+    /**
+     * 取消尚未补发的样本，之后的新样本会取代它
+     */
+    public void cancel() {
+        mScheduler.cancel(mFlushRunnable);
+    }
+
+    public void reset() {
+        cancel();
+        mFilter.reset();
+    }
+
+    /**
+     * 最近一次分发的电量，尚未分发时为 -1
+     */
+    public int getLevel() {
+        return mFilter.getLevel();
+    }
+
+    public boolean isCharging() {
+        return mFilter.isCharging();
+    }
+
+    private void flushDeferred() {
+        if (mFilter.hasPending()) {
+            handleResult(mFilter.flush(mScheduler.now()), mDeferredRaw1, mDeferredRaw2);
+        }
+    }
+
+    private void handleResult(int result, int raw1, int raw2) {
+        switch (result) {
+            case BatteryFilter.RESULT_DISPATCH:
+                mScheduler.cancel(mFlushRunnable);
+                mCallback.onOutcome(FlightRecorder.OUTCOME_DISPATCHED, raw1, raw2);
+                break;
+            case BatteryFilter.RESULT_DEFER:
+                mDeferredRaw1 = raw1;
+                mDeferredRaw2 = raw2;
+                mScheduler.postAt(mFlushRunnable, mFilter.getDeferUntil());
+                mCallback.onOutcome(FlightRecorder.OUTCOME_COALESCED, raw1, raw2);
+                break;
+            default:
+                mScheduler.cancel(mFlushRunnable);
+                mCallback.onOutcome(FlightRecorder.OUTCOME_DROPPED, raw1, raw2);
+                break;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.webuild.statusbar.state;
+
+import com.webuild.statusbar.metrics.FlightRecorder;
+
+/**
+ * 规则对象的处理结果
+ * 观察者据此通知监听器并写入统计和飞行记录，回放引擎据此上报给分发引擎。
+ */
+public interface GateCallback {
+    /**
+     * @param outcome {@link FlightRecorder#OUTCOME_DISPATCHED}、{@link FlightRecorder#OUTCOME_DROPPED}
+     *                或 {@link FlightRecorder#OUTCOME_COALESCED}
+     */
+    void onOutcome(int outcome, int value1, int value2);
+}
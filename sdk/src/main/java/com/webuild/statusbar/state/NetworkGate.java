@@ -0,0 +1,114 @@
+package com.webuild.statusbar.state;
+
+import com.webuild.statusbar.metrics.FlightRecorder;
+
+/**
+ * 网络上报规则
+ * 每次 {@link NetworkTable} 变化后调用 {@link #post()}：网络类型变化立即分发，格数回到已分发的值时丢弃，
+ * 其余变化按 {@link AdaptiveDebounce} 合并，连续的事件不会推迟已排定的更新。
+ * 激活后先等待一段时间，让系统补发的现有网络全部进表再计算第一次结果。
+ * NetworkObserver 和回放引擎共用这一份实现；结果回调的两个值为 (transport, level)，合并时为 (0, 0)。
+ * 不依赖 Android 类，非线程安全，只能在 scheduler 的线程上使用。
+ */
+public final class NetworkGate {
+    // Lets the callback replay of live networks land before the first update after activation
+    public static final long DEFAULT_SETTLE_MS = 200;
+
+    private final NetworkTable mTable;
+    private final Scheduler mScheduler;
+    private final GateCallback mCallback;
+    private final Runnable mUpdateRunnable = this::update;
+    private AdaptiveDebounce mDebounce = new AdaptiveDebounce();
+    // Whether a debounced update is queued
+    private boolean mUpdatePending;
+    private boolean mSettling;
+    // Last dispatched values, readable from any thread
+    private volatile int mLastTransport = StatusWord.TRANSPORT_UNKNOWN;
+    private volatile int mLastSignalLevel;
+
+    public NetworkGate(NetworkTable table, Scheduler scheduler, GateCallback callback) {
+        mTable = table;
+        mScheduler = scheduler;
+        mCallback = callback;
+    }
+
+    /**
+     * 自适应防抖窗口的上下限，默认同 {@link AdaptiveDebounce}
+     */
+    public void setDebounce(long minMs, long maxMs) {
+        mDebounce = new AdaptiveDebounce(minMs, maxMs);
+    }
+
+    /**
+     * 开始一轮观察，settleMs 后计算第一次结果
+     */
+    public void start(long settleMs) {
+        mSettling = true;
+        mUpdatePending = true;
+        mDebounce.reset();
+        mScheduler.postAt(mUpdateRunnable, mScheduler.now() + settleMs);
+    }
+
+    public void stop() {
+        mScheduler.cancel(mUpdateRunnable);
+        mUpdatePending = false;
+        mSettling = false;
+    }
+
+    /**
+     * 状态表变化后调用
+     */
+    public void post() {
+        if (!mSettling) {
+            // The table is in memory, so the outcome is known before deciding whether to wait
+            long state = mTable.currentState();
+            int transport = (int) (state >> 32);
+            int level = (int) state;
+            if (transport != mLastTransport) {
+                mScheduler.cancel(mUpdateRunnable);
+                update();
+                return;
+            }
+            if (level == mLastSignalLevel) {
+                mScheduler.cancel(mUpdateRunnable);
+                mUpdatePending = false;
+                mCallback.onOutcome(FlightRecorder.OUTCOME_DROPPED, transport, level);
+                return;
+            }
+        }
+        long delay = mDebounce.onEvent(mScheduler.now());
+        if (mUpdatePending) {
+            // Keep the earlier deadline, so a steady stream cannot postpone the update forever
+            mCallback.onOutcome(FlightRecorder.OUTCOME_COALESCED, 0, 0);
+            return;
+        }
+        mUpdatePending = true;
+        mScheduler.postAt(mUpdateRunnable, mScheduler.now() + delay);
+    }
+
+    /**
+     * 最近一次分发的网络类型，尚未分发时为 StatusWord.TRANSPORT_UNKNOWN
+     */
+    public int getTransport() {
+        return mLastTransport;
+    }
+
+    public int getSignalLevel() {
+        return mLastSignalLevel;
+    }
+
+    private void update() {
+        mUpdatePending = false;
+        mSettling = false;
+        long state = mTable.currentState();
+        int transport = (int) (state >> 32);
+        int level = (int) state;
+        if (transport != mLastTransport || level != mLastSignalLevel) {
+            mLastTransport = transport;
+            mLastSignalLevel = level;
+            mCallback.onOutcome(FlightRecorder.OUTCOME_DISPATCHED, transport, level);
+        } else {
+            mCallback.onOutcome(FlightRecorder.OUTCOME_DROPPED, transport, level);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.webuild.statusbar.state;
+
+import java.util.ArrayList;
+
+/**
+ * 网络状态表
+ * 每个网络一条记录，Wi-Fi 的 RSSI 经各自的 {@link SignalFilter} 换算成格数；
+ * 当前状态取已验证优先、再按以太网、Wi-Fi、蜂窝排序的第一条。
+ * 记录以任意对象为键：NetworkObserver 使用 Network，回放引擎使用传输类型。
+ * 不依赖 Android 类，非线程安全，只能在一个线程上使用。
+ */
+public final class NetworkTable {
+    // WifiInfo reports -127 when the RSSI is not known
+    public static final int INVALID_RSSI = -127;
+
+    private final ArrayList<Entry> mEntries = new ArrayList<>();
+    private int mSignalMarginDb = SignalFilter.DEFAULT_MARGIN_DB;
+    private float mSignalSmoothing = SignalFilter.DEFAULT_SMOOTHING;
+
+    /**
+     * 设置全部记录（包括之后新建的）的信号过滤参数，含义同 {@link SignalFilter}
+     */
+    public void setSignalFilter(int marginDb, float smoothing) {
+        mSignalMarginDb = marginDb;
+        mSignalSmoothing = smoothing;
+        for (int i = 0; i < mEntries.size(); i++) {
+            mEntries.get(i).signal.setMargin(marginDb);
+            mEntries.get(i).signal.setSmoothing(smoothing);
+        }
+    }
+
+    /**
+     * 查找键对应的记录，没有则新建
+     */
+    public Entry obtain(Object key) {
+        Entry entry = find(key);
+        if (entry == null) {
+            entry = new Entry(key);
+            entry.signal.setMargin(mSignalMarginDb);
+            entry.signal.setSmoothing(mSignalSmoothing);
+            mEntries.add(entry);
+        }
+        return entry;
+    }
+
+    public Entry find(Object key) {
+        for (int i = 0; i < mEntries.size(); i++) {
+            Entry entry = mEntries.get(i);
+            if (entry.key.equals(key)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    public void remove(Object key) {
+        for (int i = mEntries.size() - 1; i >= 0; i--) {
+            if (mEntries.get(i).key.equals(key)) {
+                mEntries.remove(i);
+            }
+        }
+    }
+
+    public void clear() {
+        mEntries.clear();
+    }
+
+    public int size() {
+        return mEntries.size();
+    }
+
+    public Entry get(int index) {
+        return mEntries.get(index);
+    }
+
+    /**
+     * 把一次 RSSI 样本交给所有 Wi-Fi 记录，对应不区分网络的 RSSI_CHANGED 广播
+     */
+    public void offerWifiRssi(int rssi) {
+        for (int i = 0; i < mEntries.size(); i++) {
+            Entry entry = mEntries.get(i);
+            if (entry.transport == StatusWord.TRANSPORT_WIFI) {
+                entry.offerRssi(rssi);
+            }
+        }
+    }
+
+    /**
+     * 当前状态，高 32 位为 StatusWord.TRANSPORT_*，低 32 位为信号格数；只查表
+     */
+    public long currentState() {
+        Entry best = null;
+        for (int i = 0; i < mEntries.size(); i++) {
+            Entry entry = mEntries.get(i);
+            if (entry.transport != StatusWord.TRANSPORT_NONE && (best == null || entry.outranks(best))) {
+                best = entry;
+            }
+        }
+        if (best == null) return 0;
+        if (best.transport != StatusWord.TRANSPORT_WIFI) {
+            return (long) best.transport << 32;
+        }
+        int level = Math.max(0, best.signal.getLevel());
+        return ((long) StatusWord.TRANSPORT_WIFI << 32) | level;
+    }
+
+    /**
+     * 任一 Wi-Fi 记录已知的 SSID，没有时为 null
+     */
+    public String currentSsid() {
+        for (int i = 0; i < mEntries.size(); i++) {
+            Entry entry = mEntries.get(i);
+            if (entry.transport == StatusWord.TRANSPORT_WIFI && entry.ssid != null) {
+                return entry.ssid;
+            }
+        }
+        return null;
+    }
+
+    public static final class Entry {
+        public final Object key;
+        final SignalFilter signal = new SignalFilter();
+        /** StatusWord.TRANSPORT_*，TRANSPORT_NONE 的记录不参与选择 */
+        public int transport = StatusWord.TRANSPORT_NONE;
+        public boolean validated;
+        public String ssid;
+        /** SSID 是否已在回调之外查询过一次，避免每次能力变化都跨进程查询 */
+        public boolean ssidQueried;
+        private int mRssi = INVALID_RSSI;
+
+        Entry(Object key) {
+            this.key = key;
+        }
+
+        public int getRssi() {
+            return mRssi;
+        }
+
+        // A repeated reading is still a sample; dropping it would leave a smoothed average behind
+        public void offerRssi(int rssi) {
+            if (rssi != INVALID_RSSI) {
+                mRssi = rssi;
+                signal.offer(rssi);
+            }
+        }
+
+        // Validated first, then the system's usual default order: Ethernet, Wi-Fi, cellular
+        boolean outranks(Entry other) {
+            if (validated != other.validated) {
+                return validated;
+            }
+            return rank(transport) > rank(other.transport);
+        }
+
+        private static int rank(int transport) {
+            switch (transport) {
+                case StatusWord.TRANSPORT_ETHERNET: return 3;
+                case StatusWord.TRANSPORT_WIFI: return 2;
+                case StatusWord.TRANSPORT_CELLULAR: return 1;
+                default: return 0;
+            }
+        }
+    }
+}
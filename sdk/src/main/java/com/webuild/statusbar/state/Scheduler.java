@@ -0,0 +1,16 @@
+package com.webuild.statusbar.state;
+
+/**
+ * 规则对象使用的定时器
+ * 观察者层由 ObserverThread 的 Handler 实现，时间基准为 uptime；回放和单测使用虚拟时钟。
+ */
+public interface Scheduler {
+    long now();
+
+    /**
+     * 同一个 Runnable 只保留最近一次调度
+     */
+    void postAt(Runnable task, long atMs);
+
+    void cancel(Runnable task);
+}
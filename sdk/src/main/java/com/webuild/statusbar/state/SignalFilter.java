@@ -0,0 +1,84 @@
+package com.webuild.statusbar.state;
+
+/**
+ * Wi-Fi 信号格数过滤器
+ * RSSI 可先做指数平滑，再按与 WifiManager.calculateSignalLevel(rssi, 5) 相同的分档换算成 0-4 格，
+ * 但跨越分档边界时要求超出 margin 才切换，RSSI 停在边界附近时图标不会来回跳动。
+ * 不依赖 Android 类，非线程安全，只能在一个线程上使用。
+ */
+public final class SignalFilter {
+    public static final int LEVELS = 5;
+    public static final int DEFAULT_MARGIN_DB = 3;
+    // Samples are event driven and can be minutes apart, so averaging them lags a real change
+    public static final float DEFAULT_SMOOTHING = 1f;
+
+    // Same range as the legacy WifiManager.calculateSignalLevel
+    private static final int MIN_RSSI = -100;
+    private static final int MAX_RSSI = -55;
+
+    private int mMarginDb = DEFAULT_MARGIN_DB;
+    private float mSmoothing = DEFAULT_SMOOTHING;
+    private float mRssi = Float.NaN;
+    private int mLevel = -1;
+
+    /**
+     * @param marginDb 跨越分档边界需要超出的 dB 数，0 表示不做滞回
+     */
+    public void setMargin(int marginDb) {
+        mMarginDb = Math.max(0, marginDb);
+    }
+
+    /**
+     * @param smoothing 新样本的权重，(0, 1]，1 表示不平滑；小于 1 时只适合高频上报的 RSSI
+     */
+    public void setSmoothing(float smoothing) {
+        mSmoothing = smoothing > 0f && smoothing <= 1f ? smoothing : 1f;
+    }
+
+    /**
+     * 提交一次 RSSI 样本
+     * @return 过滤后的格数 0-4
+     */
+    public int offer(int rssi) {
+        mRssi = Float.isNaN(mRssi) ? rssi : mRssi + mSmoothing * (rssi - mRssi);
+        int raw = levelOf(mRssi);
+        if (mLevel < 0) {
+            mLevel = raw;
+        } else if (raw > mLevel) {
+            while (mLevel < LEVELS - 1 && mRssi >= edge(mLevel + 1) + mMarginDb) {
+                mLevel++;
+            }
+        } else if (raw < mLevel) {
+            while (mLevel > 0 && mRssi < edge(mLevel) - mMarginDb) {
+                mLevel--;
+            }
+        }
+        return mLevel;
+    }
+
+    /**
+     * 当前格数，尚无样本时为 -1
+     */
+    public int getLevel() {
+        return mLevel;
+    }
+
+    /**
+     * 换到另一个网络时调用，丢弃平滑历史
+     */
+    public void reset() {
+        mRssi = Float.NaN;
+        mLevel = -1;
+    }
+
+    // Lowest RSSI that maps to the given level
+    private static float edge(int level) {
+        return MIN_RSSI + (float) (MAX_RSSI - MIN_RSSI) * level / (LEVELS - 1);
+    }
+
+    private static int levelOf(float rssi) {
+        if (rssi <= MIN_RSSI) return 0;
+        if (rssi >= MAX_RSSI) return LEVELS - 1;
+        return (int) ((rssi - MIN_RSSI) * (LEVELS - 1) / (MAX_RSSI - MIN_RSSI));
+    }
+}
@@ -0,0 +1,141 @@
+package com.webuild.statusbar.state;
+
+import com.webuild.statusbar.source.StatusSink;
+import com.webuild.statusbar.source.StatusSource;
+import com.webuild.statusbar.util.ListenerRegistry;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 状态分发引擎
+ * 把各 {@link StatusSource} 上报的原始值合并进一个 {@link StatusWord}，只在真正变化时通知监听器。
+ * 不依赖任何 Android 类，可以直接在 JVM 上配合 Fake 状态源做单测和压测（见 src/test 下的 StatusEngineTest）。
+ * 合并使用 CAS，可从任意线程上报；监听器在上报线程回调。
+ */
+public class StatusEngine implements StatusSink {
+    private final AtomicLong mWord = new AtomicLong(StatusWord.EMPTY);
+    private final ListenerRegistry<Listener> mListeners = new ListenerRegistry<>();
+    private final ArrayList<StatusSource> mSources = new ArrayList<>();
+    private final ListenerRegistry.LongIntNotifier<Listener> mChanged = Listener::onStatusChanged;
+    private boolean mStarted;
+
+    public interface Listener {
+        /**
+         * @param changedFields StatusSnapshot.FIELD_* 组合
+         */
+        void onStatusChanged(long word, int changedFields);
+    }
+
+    public long getWord() {
+        return mWord.get();
+    }
+
+    /**
+     * 直接设置初始状态，不通知监听器（如预热缓存）。
+     * 只在还没有任何状态源上报时生效，已上报的真实状态不会被覆盖
+     * @return 是否已设置
+     */
+    public boolean seed(long word) {
+        return mWord.compareAndSet(StatusWord.EMPTY, word);
+    }
+
+    public void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    public synchronized void addSource(StatusSource source) {
+        mSources.add(source);
+        if (mStarted) {
+            source.start(this);
+        }
+    }
+
+    public synchronized void removeSource(StatusSource source) {
+        if (mSources.remove(source) && mStarted) {
+            source.stop();
+        }
+    }
+
+    public synchronized void start() {
+        if (mStarted) return;
+        mStarted = true;
+        for (int i = 0; i < mSources.size(); i++) {
+            mSources.get(i).start(this);
+        }
+    }
+
+    public synchronized void stop() {
+        if (!mStarted) return;
+        mStarted = false;
+        for (int i = 0; i < mSources.size(); i++) {
+            mSources.get(i).stop();
+        }
+    }
+
+    @Override
+    public void onBatteryChanged(int level, boolean charging) {
+        long old;
+        long next;
+        do {
+            old = mWord.get();
+            next = StatusWord.withBattery(old, level, charging);
+        } while (old != next && !mWord.compareAndSet(old, next));
+        publish(old, next);
+    }
+
+    @Override
+    public void onNetworkChanged(int transport, int signalLevel) {
+        long old;
+        long next;
+        do {
+            old = mWord.get();
+            next = StatusWord.withNetwork(old, transport, signalLevel);
+        } while (old != next && !mWord.compareAndSet(old, next));
+        publish(old, next);
+    }
+
+    @Override
+    public void onBluetoothChanged(int state, int connectedDevices) {
+        long old;
+        long next;
+        do {
+            old = mWord.get();
+            next = StatusWord.withBluetooth(old, state, connectedDevices);
+        } while (old != next && !mWord.compareAndSet(old, next));
+        publish(old, next);
+    }
+
+    @Override
+    public void onTimeFormatChanged(boolean is24Hour) {
+        long old;
+        long next;
+        do {
+            old = mWord.get();
+            next = StatusWord.withTimeFormat(old, is24Hour);
+        } while (old != next && !mWord.compareAndSet(old, next));
+        publish(old, next);
+    }
+
+    @Override
+    public void onTimeTick() {
+        long old;
+        long next;
+        do {
+            old = mWord.get();
+            next = StatusWord.withTimeTick(old, StatusWord.timeTick(old) + 1);
+        } while (!mWord.compareAndSet(old, next));
+        publish(old, next);
+    }
+
+    private void publish(long old, long next) {
+        int changed = StatusWord.changedFields(old, next);
+        if (changed != 0) {
+            mListeners.dispatchLong(mChanged, next, changed);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.webuild.statusbar.state;
+
+/**
+ * 状态栏全部状态的不可变快照
+ * 每次发布递增 version，配合 FIELD_* 位掩码描述本次变化的字段。
+ */
+public final class StatusSnapshot {
+    public static final int FIELD_BATTERY_LEVEL = 1;
+    public static final int FIELD_CHARGING = 1 << 1;
+    public static final int FIELD_NETWORK = 1 << 2;
+    public static final int FIELD_BLUETOOTH = 1 << 3;
+    public static final int FIELD_TIME_FORMAT = 1 << 4;
+    public static final int FIELD_TIME_TICK = 1 << 5;
+
+    public static final int FIELD_BATTERY = FIELD_BATTERY_LEVEL | FIELD_CHARGING;
+    public static final int FIELD_TIME = FIELD_TIME_FORMAT | FIELD_TIME_TICK;
+    public static final int FIELD_ALL = FIELD_BATTERY | FIELD_NETWORK | FIELD_BLUETOOTH | FIELD_TIME;
+
+    public static final int UNKNOWN = Integer.MIN_VALUE;
+
+    public static final StatusSnapshot EMPTY = new StatusSnapshot(0, StatusWord.EMPTY);
+
+    public final long version;
+    /** 打包后的状态，见 {@link StatusWord} */
+    public final long word;
+    /** 电量百分比，未知时为 {@link #UNKNOWN} */
+    public final int batteryLevel;
+    public final boolean charging;
+    /** StatusWord.TRANSPORT_*，未知时为 TRANSPORT_UNKNOWN */
+    public final int transport;
+    /** 0-4，仅 Wi-Fi 有意义 */
+    public final int signalLevel;
+    /** -1: 关闭, 0: 开启未连接, 2: 已连接，未知时为 {@link #UNKNOWN} */
+    public final int bluetoothState;
+    /** 已连接的蓝牙设备数（0-15） */
+    public final int bluetoothDevices;
+    public final boolean is24HourFormat;
+    /** 每收到一次时间变化加一，只用于判断是否需要刷新时间 */
+    public final int timeTick;
+
+    public StatusSnapshot(long version, long word) {
+        this.version = version;
+        this.word = word;
+        this.batteryLevel = StatusWord.batteryLevel(word);
+        this.charging = StatusWord.isCharging(word);
+        this.transport = StatusWord.transport(word);
+        this.signalLevel = StatusWord.signalLevel(word);
+        this.bluetoothState = StatusWord.bluetoothState(word);
+        this.bluetoothDevices = StatusWord.bluetoothDevices(word);
+        this.is24HourFormat = StatusWord.is24HourFormat(word);
+        this.timeTick = StatusWord.timeTick(word);
+    }
+
+    public boolean hasBattery() {
+        return batteryLevel != UNKNOWN;
+    }
+
+    public boolean hasNetwork() {
+        return transport != StatusWord.TRANSPORT_UNKNOWN;
+    }
+
+    public boolean hasBluetooth() {
+        return bluetoothState != UNKNOWN;
+    }
+
+    public boolean hasTime() {
+        return StatusWord.hasTime(word);
+    }
+
+    /**
+     * @return 与 other 相比发生变化的字段掩码
+     */
+    public int diff(StatusSnapshot other) {
+        return StatusWord.changedFields(other.word, word);
+    }
+
+    @Override
+    public String toString() {
+        return "StatusSnapshot{v=" + version
+                + ", battery=" + batteryLevel + (charging ? "+" : "")
+                + ", network=" + transport + "/" + signalLevel
+                + ", bluetooth=" + bluetoothState + "/" + bluetoothDevices
+                + ", 24h=" + is24HourFormat
+                + ", tick=" + timeTick + "}";
+    }
+}
@@ -0,0 +1,189 @@
+package com.webuild.statusbar.state;
+
+/**
+ * 把全部状态压缩进一个 long 的位布局
+ * 读取和比较都不需要分配对象或加锁，适合渲染线程/GL 叠加层轮询。
+ *
+ * <pre>
+ * bit  0-6   电量百分比 (0-100, 127 = 未知)
+ * bit  7     充电中
+ * bit  8-10  网络类型 TRANSPORT_* (7 = 未知)
+ * bit 11-13  信号等级 (0-4)
+ * bit 14-15  蓝牙 BLUETOOTH_* (3 = 未知)
+ * bit 16     24 小时制
+ * bit 17     时间状态已知
+ * bit 18-21  蓝牙已连接设备数 (0-15，超出按 15 计)
+ * bit 22-31  保留
+ * bit 32-63  时间变化计数
+ * </pre>
+ */
+public final class StatusWord {
+    public static final int TRANSPORT_NONE = 0;
+    public static final int TRANSPORT_WIFI = 1;
+    public static final int TRANSPORT_CELLULAR = 2;
+    public static final int TRANSPORT_ETHERNET = 3;
+    public static final int TRANSPORT_UNKNOWN = 7;
+
+    public static final int BLUETOOTH_OFF = 0;
+    public static final int BLUETOOTH_ON = 1;
+    public static final int BLUETOOTH_CONNECTED = 2;
+    public static final int BLUETOOTH_UNKNOWN = 3;
+
+    private static final int LEVEL_SHIFT = 0;
+    private static final long LEVEL_MASK = 0x7FL;
+    private static final int LEVEL_UNKNOWN = 127;
+    private static final int CHARGING_SHIFT = 7;
+    private static final int TRANSPORT_SHIFT = 8;
+    private static final long TRANSPORT_MASK = 0x7L;
+    private static final int SIGNAL_SHIFT = 11;
+    private static final long SIGNAL_MASK = 0x7L;
+    private static final int BLUETOOTH_SHIFT = 14;
+    private static final long BLUETOOTH_MASK = 0x3L;
+    private static final int BLUETOOTH_DEVICES_SHIFT = 18;
+    private static final long BLUETOOTH_DEVICES_MASK = 0xFL;
+    private static final int FORMAT_24_SHIFT = 16;
+    private static final int TIME_KNOWN_SHIFT = 17;
+    private static final int TICK_SHIFT = 32;
+
+    private static final long BATTERY_LEVEL_BITS = LEVEL_MASK << LEVEL_SHIFT;
+    private static final long CHARGING_BITS = 1L << CHARGING_SHIFT;
+    private static final long NETWORK_BITS = (TRANSPORT_MASK << TRANSPORT_SHIFT) | (SIGNAL_MASK << SIGNAL_SHIFT);
+    private static final long BLUETOOTH_BITS = (BLUETOOTH_MASK << BLUETOOTH_SHIFT)
+            | (BLUETOOTH_DEVICES_MASK << BLUETOOTH_DEVICES_SHIFT);
+    private static final long TIME_FORMAT_BITS = (1L << FORMAT_24_SHIFT) | (1L << TIME_KNOWN_SHIFT);
+    private static final long TICK_BITS = 0xFFFFFFFFL << TICK_SHIFT;
+
+    /** 全部未知 */
+    public static final long EMPTY = pack(StatusSnapshot.UNKNOWN, false, TRANSPORT_UNKNOWN, 0,
+            StatusSnapshot.UNKNOWN, false, 0);
+
+    private StatusWord() {}
+
+    /**
+     * @param batteryLevel   0-100 或 StatusSnapshot.UNKNOWN
+     * @param bluetoothState -1/0/2（与 BluetoothObserver 一致）或 StatusSnapshot.UNKNOWN
+     * @param timeTick       0 表示时间状态未知，此时忽略 is24HourFormat
+     */
+    public static long pack(int batteryLevel, boolean charging, int transport, int signalLevel,
+                            int bluetoothState, boolean is24HourFormat, int timeTick) {
+        long word = withBattery(0L, batteryLevel, charging);
+        word = withNetwork(word, transport, signalLevel);
+        word = withBluetooth(word, bluetoothState);
+        if (timeTick != 0) {
+            word = withTimeFormat(word, is24HourFormat);
+            word = withTimeTick(word, timeTick);
+        }
+        return word;
+    }
+
+    public static long withBattery(long word, int batteryLevel, boolean charging) {
+        int level = batteryLevel < 0 || batteryLevel > 100 ? LEVEL_UNKNOWN : batteryLevel;
+        word = (word & ~(BATTERY_LEVEL_BITS | CHARGING_BITS)) | ((long) level << LEVEL_SHIFT);
+        return charging ? word | CHARGING_BITS : word;
+    }
+
+    public static long withNetwork(long word, int transport, int signalLevel) {
+        return (word & ~NETWORK_BITS)
+                | (((long) transport & TRANSPORT_MASK) << TRANSPORT_SHIFT)
+                | (((long) Math.max(0, Math.min(4, signalLevel)) & SIGNAL_MASK) << SIGNAL_SHIFT);
+    }
+
+    public static long withBluetooth(long word, int bluetoothState) {
+        return withBluetooth(word, bluetoothState, 0);
+    }
+
+    /**
+     * @param connectedDevices 已连接设备数，超过 15 按 15 存储
+     */
+    public static long withBluetooth(long word, int bluetoothState, int connectedDevices) {
+        long devices = Math.max(0, Math.min((int) BLUETOOTH_DEVICES_MASK, connectedDevices));
+        return (word & ~BLUETOOTH_BITS) | ((long) encodeBluetooth(bluetoothState) << BLUETOOTH_SHIFT)
+                | (devices << BLUETOOTH_DEVICES_SHIFT);
+    }
+
+    public static long withTimeFormat(long word, boolean is24HourFormat) {
+        word |= 1L << TIME_KNOWN_SHIFT;
+        return is24HourFormat ? word | (1L << FORMAT_24_SHIFT) : word & ~(1L << FORMAT_24_SHIFT);
+    }
+
+    public static long withTimeTick(long word, int timeTick) {
+        return (word & ~TICK_BITS) | (1L << TIME_KNOWN_SHIFT) | (((long) timeTick & 0xFFFFFFFFL) << TICK_SHIFT);
+    }
+
+    public static int batteryLevel(long word) {
+        int level = (int) ((word >>> LEVEL_SHIFT) & LEVEL_MASK);
+        return level == LEVEL_UNKNOWN ? StatusSnapshot.UNKNOWN : level;
+    }
+
+    public static boolean isCharging(long word) {
+        return (word & CHARGING_BITS) != 0;
+    }
+
+    public static int transport(long word) {
+        return (int) ((word >>> TRANSPORT_SHIFT) & TRANSPORT_MASK);
+    }
+
+    public static int signalLevel(long word) {
+        return (int) ((word >>> SIGNAL_SHIFT) & SIGNAL_MASK);
+    }
+
+    /**
+     * @return -1/0/2（与 BluetoothObserver 一致）或 StatusSnapshot.UNKNOWN
+     */
+    public static int bluetoothState(long word) {
+        switch ((int) ((word >>> BLUETOOTH_SHIFT) & BLUETOOTH_MASK)) {
+            case BLUETOOTH_OFF: return -1;
+            case BLUETOOTH_ON: return 0;
+            case BLUETOOTH_CONNECTED: return 2;
+            default: return StatusSnapshot.UNKNOWN;
+        }
+    }
+
+    public static int bluetoothDevices(long word) {
+        return (int) ((word >>> BLUETOOTH_DEVICES_SHIFT) & BLUETOOTH_DEVICES_MASK);
+    }
+
+    public static boolean is24HourFormat(long word) {
+        return (word & (1L << FORMAT_24_SHIFT)) != 0;
+    }
+
+    public static boolean hasTime(long word) {
+        return (word & (1L << TIME_KNOWN_SHIFT)) != 0;
+    }
+
+    public static int timeTick(long word) {
+        return (int) (word >>> TICK_SHIFT);
+    }
+
+    /**
+     * 通过异或求出变化的字段
+     * @return StatusSnapshot.FIELD_* 组合
+     */
+    public static int changedFields(long oldWord, long newWord) {
+        long x = oldWord ^ newWord;
+        if (x == 0) return 0;
+        int mask = 0;
+        if ((x & BATTERY_LEVEL_BITS) != 0) mask |= StatusSnapshot.FIELD_BATTERY_LEVEL;
+        if ((x & CHARGING_BITS) != 0) mask |= StatusSnapshot.FIELD_CHARGING;
+        if ((x & NETWORK_BITS) != 0) mask |= StatusSnapshot.FIELD_NETWORK;
+        if ((x & BLUETOOTH_BITS) != 0) mask |= StatusSnapshot.FIELD_BLUETOOTH;
+        if ((x & TIME_FORMAT_BITS) != 0) mask |= StatusSnapshot.FIELD_TIME_FORMAT;
+        if ((x & TICK_BITS) != 0) mask |= StatusSnapshot.FIELD_TIME_TICK;
+        return mask;
+    }
+
+    private static int encodeBluetooth(int state) {
+        if (state == StatusSnapshot.UNKNOWN) return BLUETOOTH_UNKNOWN;
+        if (state < 0) return BLUETOOTH_OFF;
+        return state == 2 ? BLUETOOTH_CONNECTED : BLUETOOTH_ON;
+    }
+
+    public static String toString(long word) {
+        return "StatusWord{battery=" + batteryLevel(word) + (isCharging(word) ? "+" : "")
+                + ", transport=" + transport(word)
+                + ", signal=" + signalLevel(word)
+                + ", bluetooth=" + bluetoothState(word) + "/" + bluetoothDevices(word)
+                + ", 24h=" + is24HourFormat(word)
+                + ", tick=" + timeTick(word) + "}";
+    }
+}
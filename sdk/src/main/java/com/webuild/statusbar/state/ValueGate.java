@@ -0,0 +1,54 @@
+package com.webuild.statusbar.state;
+
+/**
+ * 去重规则
+ * 只有与上次放行的值不同时才放行，蓝牙状态和时间格式都按此规则去重。
+ * 不依赖 Android 类，非线程安全，只能在一个线程上使用。
+ */
+public final class ValueGate {
+    private final int mInitial;
+    private int mValue;
+
+    /**
+     * @param initial 尚未放行任何值时的基准，等于它的第一个值会被丢弃
+     */
+    public ValueGate(int initial) {
+        mInitial = initial;
+        mValue = initial;
+    }
+
+    /**
+     * @return 值是否变化，变化时记为新的基准
+     */
+    public boolean offer(int value) {
+        if (value == mValue) {
+            return false;
+        }
+        mValue = value;
+        return true;
+    }
+
+    public int getValue() {
+        return mValue;
+    }
+
+    public void reset() {
+        mValue = mInitial;
+    }
+
+    /**
+     * 把两个值合成一个去重键
+     * @param low 0-255
+     */
+    public static int pack(int high, int low) {
+        return (high << 8) | (low & 0xFF);
+    }
+
+    public static int high(int packed) {
+        return packed >> 8;
+    }
+
+    public static int low(int packed) {
+        return packed & 0xFF;
+    }
+}
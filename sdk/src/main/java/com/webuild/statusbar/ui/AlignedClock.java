@@ -0,0 +1,120 @@
+package com.webuild.statusbar.ui;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.webuild.statusbar.ui.observers.TimeObserver;
+
+import java.util.ArrayList;
+
+/**
+ * 对齐整秒/整分的主线程时钟
+ * 每次触发后都根据当前墙上时间重新计算下一个边界，用 postAtTime 设定截止时间，
+ * 主线程繁忙导致的延迟和时钟漂移不会累积，也不会在延迟后补发多次。
+ * 运行期间订阅 {@link TimeObserver}，系统时间或时区被修改时立即重新对齐。
+ * 没有可见的目标时自动停止。只能在主线程调用。
+ */
+final class AlignedClock {
+    private static final long SECOND_MS = 1000L;
+    private static final long MINUTE_MS = 60_000L;
+
+    private static AlignedClock sInstance;
+
+    private final Context mAppContext;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final ArrayList<Target> mTargets = new ArrayList<>();
+    private final ArrayList<Target> mSecondTargets = new ArrayList<>();
+    private boolean mObservingTime;
+
+    interface Target {
+        void onClockTick(long nowMs);
+    }
+
+    static AlignedClock getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new AlignedClock(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private AlignedClock(Context context) {
+        mAppContext = context;
+    }
+
+    /**
+     * @param seconds true 时按整秒触发，否则按整分触发
+     */
+    void add(Target target, boolean seconds) {
+        if (!mTargets.contains(target)) {
+            mTargets.add(target);
+        }
+        mSecondTargets.remove(target);
+        if (seconds) {
+            mSecondTargets.add(target);
+        }
+        schedule();
+    }
+
+    void remove(Target target) {
+        if (mTargets.remove(target)) {
+            mSecondTargets.remove(target);
+            schedule();
+        }
+    }
+
+    private void schedule() {
+        mHandler.removeCallbacks(mTick);
+        if (mTargets.isEmpty()) {
+            setObservingTime(false);
+            return;
+        }
+        setObservingTime(true);
+        long period = mSecondTargets.isEmpty() ? MINUTE_MS : SECOND_MS;
+        long now = System.currentTimeMillis();
+        long next = (now / period + 1) * period;
+        mHandler.postAtTime(mTick, SystemClock.uptimeMillis() + (next - now));
+    }
+
+    private void setObservingTime(boolean observing) {
+        if (observing == mObservingTime) {
+            return;
+        }
+        mObservingTime = observing;
+        if (observing) {
+            TimeObserver.getInstance(mAppContext).addObserver(mTimeListener);
+        } else {
+            TimeObserver.getInstance(mAppContext).removeObserver(mTimeListener);
+        }
+    }
+
+    private final Runnable mTick = new Runnable() {
+        @Override
+        public void run() {
+            long now = System.currentTimeMillis();
+            for (int i = mTargets.size() - 1; i >= 0; i--) {
+                mTargets.get(i).onClockTick(now);
+            }
+            schedule();
+        }
+    };
+
+    private final Runnable mRealign = () -> {
+        if (!mTargets.isEmpty()) {
+            mTick.run();
+        }
+    };
+
+    // Arrives on the observer thread for TIME_TICK, TIME_CHANGED and TIMEZONE_CHANGED
+    private final TimeObserver.Listener mTimeListener = new TimeObserver.Listener() {
+        @Override
+        public void onTimeTick() {
+            mHandler.post(mRealign);
+        }
+
+        @Override
+        public void onTimeFormatChanged(boolean is24Hour) {
+        }
+    };
+}
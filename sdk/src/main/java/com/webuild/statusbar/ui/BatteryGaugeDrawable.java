@@ -0,0 +1,176 @@
+package com.webuild.statusbar.ui;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * 连续电量表
+ * 按实际电量比例绘制填充，充电时绿色并带闪电，低电量时红色。
+ * Paint、Path、RectF 全部预先分配，几何只在 bounds 变化时计算，电量变化只会 invalidateSelf。
+ * 坐标沿用电池矢量图标的 24x24 视口，外观与原图标一致。
+ */
+public class BatteryGaugeDrawable extends Drawable {
+    private static final float VIEWPORT = 24f;
+    private static final int COLOR_CHARGING = 0xFF00AA00;
+    private static final int COLOR_LOW = 0xFFFF5555;
+
+    private final Paint mOutlinePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mTerminalPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mFillPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mBoltPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF mBody = new RectF();
+    private final RectF mTerminal = new RectF();
+    private final RectF mFillBounds = new RectF();
+    private final RectF mFill = new RectF();
+    private final Path mBolt = new Path();
+    private final int mIntrinsicSize;
+    private float mCornerRadius;
+    private int mColor = 0xFF000000;
+    private int mAlpha = 255;
+    private int mLevel = 100;
+    private boolean mCharging;
+    private boolean mLowWarning;
+
+    /**
+     * @param intrinsicSizePx 固有宽高（正方形）
+     */
+    public BatteryGaugeDrawable(int intrinsicSizePx) {
+        mIntrinsicSize = intrinsicSizePx;
+        mOutlinePaint.setStyle(Paint.Style.STROKE);
+        mTerminalPaint.setStyle(Paint.Style.FILL);
+        mFillPaint.setStyle(Paint.Style.FILL);
+        mBoltPaint.setStyle(Paint.Style.FILL);
+        updatePaints();
+    }
+
+    /**
+     * @param level 0-100
+     */
+    public void setState(int level, boolean charging, boolean lowWarning) {
+        level = Math.max(0, Math.min(100, level));
+        if (level == mLevel && charging == mCharging && lowWarning == mLowWarning) {
+            return;
+        }
+        boolean geometry = level != mLevel;
+        mLevel = level;
+        mCharging = charging;
+        mLowWarning = lowWarning;
+        if (geometry) {
+            updateFill();
+        }
+        updatePaints();
+        invalidateSelf();
+    }
+
+    /**
+     * 外框和正常电量的颜色
+     */
+    public void setColor(int color) {
+        if (color != mColor) {
+            mColor = color;
+            updatePaints();
+            invalidateSelf();
+        }
+    }
+
+    public int getBatteryLevel() {
+        return mLevel;
+    }
+
+    @Override
+    protected void onBoundsChange(@NonNull Rect bounds) {
+        float scale = Math.min(bounds.width(), bounds.height()) / VIEWPORT;
+        float left = bounds.left + (bounds.width() - VIEWPORT * scale) / 2f;
+        float top = bounds.top + (bounds.height() - VIEWPORT * scale) / 2f;
+        float stroke = 1.2f * scale;
+        mOutlinePaint.setStrokeWidth(stroke);
+        mCornerRadius = 1.2f * scale;
+        // Stroke is centred on the path, so inset the body by half of it
+        mBody.set(left + 3f * scale + stroke / 2f, top + 6.8f * scale + stroke / 2f,
+                left + 20f * scale - stroke / 2f, top + 17.2f * scale - stroke / 2f);
+        mTerminal.set(left + 20.6f * scale, top + 10f * scale, left + 22f * scale, top + 14f * scale);
+        float gap = stroke * 1.5f;
+        mFillBounds.set(mBody.left + gap, mBody.top + gap, mBody.right - gap, mBody.bottom - gap);
+        updateFill();
+        mBolt.rewind();
+        mBolt.moveTo(left + 14f * scale, top + 12f * scale);
+        mBolt.lineTo(left + 11.5f * scale, top + 12f * scale);
+        mBolt.lineTo(left + 13f * scale, top + 9f * scale);
+        mBolt.lineTo(left + 10f * scale, top + 9f * scale);
+        mBolt.lineTo(left + 8f * scale, top + 13f * scale);
+        mBolt.lineTo(left + 10.5f * scale, top + 13f * scale);
+        mBolt.lineTo(left + 9f * scale, top + 16f * scale);
+        mBolt.close();
+    }
+
+    private void updateFill() {
+        mFill.set(mFillBounds);
+        mFill.right = mFillBounds.left + mFillBounds.width() * mLevel / 100f;
+    }
+
+    private void updatePaints() {
+        int outlineColor = mLowWarning && !mCharging ? COLOR_LOW : mColor;
+        int fillColor = mCharging ? COLOR_CHARGING : outlineColor;
+        mOutlinePaint.setColor(outlineColor);
+        mTerminalPaint.setColor(outlineColor);
+        mFillPaint.setColor(fillColor);
+        mBoltPaint.setColor(mColor);
+        // setColor also resets alpha
+        mOutlinePaint.setAlpha(mAlpha);
+        mTerminalPaint.setAlpha(mAlpha);
+        mFillPaint.setAlpha(mAlpha);
+        mBoltPaint.setAlpha(mAlpha);
+    }
+
+    @Override
+    public void draw(@NonNull Canvas canvas) {
+        canvas.drawRoundRect(mBody, mCornerRadius, mCornerRadius, mOutlinePaint);
+        canvas.drawRect(mTerminal, mTerminalPaint);
+        if (mFill.right > mFill.left) {
+            canvas.drawRect(mFill, mFillPaint);
+        }
+        if (mCharging) {
+            canvas.drawPath(mBolt, mBoltPaint);
+        }
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return mIntrinsicSize;
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return mIntrinsicSize;
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        mAlpha = alpha;
+        updatePaints();
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(@Nullable ColorFilter colorFilter) {
+        mOutlinePaint.setColorFilter(colorFilter);
+        mTerminalPaint.setColorFilter(colorFilter);
+        mFillPaint.setColorFilter(colorFilter);
+        mBoltPaint.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+}
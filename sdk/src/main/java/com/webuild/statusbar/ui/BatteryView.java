@@ -2,6 +2,7 @@ package com.webuild.statusbar.ui;
 
 import android.content.Context;
 import android.graphics.Typeface;
+import android.text.TextPaint;
 import android.util.AttributeSet;
 import android.util.TypedValue;
 import android.view.Gravity;
@@ -9,19 +10,37 @@ import android.view.Gravity;
 import androidx.appcompat.widget.AppCompatTextView;
 
 import com.webuild.statusbar.R;
+import com.webuild.statusbar.metrics.StatusMetrics;
+import com.webuild.statusbar.state.BatteryFilter;
+import com.webuild.statusbar.state.StatusSnapshot;
 import com.webuild.statusbar.ui.observers.BatteryObserver;
 
-import java.util.Locale;
-
 /**
  * 电池状态显示控件
  * 显示电池电量百分比和充电状态
  */
-public class BatteryView extends AppCompatTextView implements BatteryObserver.Listener {
-    private static final int LOW_WARNING_THRESHOLD = 20;
+public class BatteryView extends AppCompatTextView implements BatteryObserver.Listener, StatusSlot {
+    static final int LOW_WARNING_THRESHOLD = BatteryFilter.LOW_THRESHOLD;
+    // Widest text this view can show; digits are measured as the widest digit
+    static final char[] WIDEST_TEXT = {'1', '0', '0', '%'};
 
     private boolean mBatteryCharging;
     private int mBatteryLevel;
+    private int mIconRes;
+    // TextView keeps a reference to this buffer; it is only rewritten right before setText
+    private final char[] mLevelChars = new char[4];
+    private boolean mFixedWidthDigits;
+    private BatteryGaugeDrawable mGauge;
+    private StatusBarView mHost;
+    // Latest observer values, applied once per frame by mFrameTarget;
+    // charging in bit 16, level in the low 16 bits, written together
+    private volatile int mPendingState;
+    private final FrameDispatcher.Target mFrameTarget = () -> {
+        int pending = mPendingState;
+        setBatteryCharging((pending & (1 << 16)) != 0);
+        setBatteryLevel((short) pending);
+        StatusMetrics.getInstance().recordApplied(StatusSnapshot.FIELD_BATTERY);
+    };
 
     public BatteryView(Context context) {
         this(context, null);
@@ -50,6 +69,68 @@ public class BatteryView extends AppCompatTextView implements BatteryObserver.Li
         setBatteryLevel(100);
     }
 
+    /**
+     * 开启后使用等宽数字并按 "100%" 锁定控件宽度（min == max），电量变化时只重绘、不再重新布局
+     */
+    public void setFixedWidthDigits(boolean fixed) {
+        if (fixed == mFixedWidthDigits) {
+            return;
+        }
+        mFixedWidthDigits = fixed;
+        setFontFeatureSettings(fixed ? FixedWidthText.FEATURE_TABULAR : null);
+        lockWidth();
+    }
+
+    public boolean isFixedWidthDigits() {
+        return mFixedWidthDigits;
+    }
+
+    /**
+     * 开启后电池图标改为 {@link BatteryGaugeDrawable}，按实际电量连续填充，
+     * 电量变化只重绘图标所在区域，不再切换图标资源
+     */
+    public void setGaugeEnabled(boolean enabled) {
+        if (enabled == (mGauge != null)) {
+            return;
+        }
+        if (enabled) {
+            // Same size as the 24dp vector icons scaled by 1.8
+            mGauge = new BatteryGaugeDrawable(Math.round(24 * getResources().getDisplayMetrics().density * 1.8f));
+            mGauge.setState(mBatteryLevel, mBatteryCharging, isLowWarning());
+            mGauge.setBounds(0, 0, mGauge.getIntrinsicWidth(), mGauge.getIntrinsicHeight());
+            mIconRes = 0;
+            setCompoundDrawablesRelative(null, null, mGauge, null);
+            if (mFixedWidthDigits) {
+                lockWidth();
+            }
+        } else {
+            mGauge = null;
+            mIconRes = 0;
+            updateDisplay();
+        }
+    }
+
+    public boolean isGaugeEnabled() {
+        return mGauge != null;
+    }
+
+    private boolean isLowWarning() {
+        return !mBatteryCharging && mBatteryLevel < LOW_WARNING_THRESHOLD;
+    }
+
+    private void lockWidth() {
+        if (!mFixedWidthDigits) {
+            setMinWidth(0);
+            setMaxWidth(Integer.MAX_VALUE);
+            return;
+        }
+        TextPaint paint = getPaint();
+        float textWidth = FixedWidthText.measure(paint, WIDEST_TEXT, WIDEST_TEXT.length, FixedWidthText.widestDigit(paint));
+        int width = getCompoundPaddingLeft() + getCompoundPaddingRight() + (int) Math.ceil(textWidth);
+        setMinWidth(width);
+        setMaxWidth(width);
+    }
+
     private int dpToPx(int dp) {
         final float density = getResources().getDisplayMetrics().density;
         return Math.round(dp * density);
@@ -57,10 +138,16 @@ public class BatteryView extends AppCompatTextView implements BatteryObserver.Li
 
     @Override
     public void onBatteryChanged(boolean charging, int level) {
-        post(() -> {
-            setBatteryCharging(charging);
-            setBatteryLevel(level);
-        });
+        mPendingState = (charging ? 1 << 16 : 0) | (level & 0xFFFF);
+        FrameDispatcher.getInstance().requestFrame(mFrameTarget);
+    }
+
+    @Override
+    public void applyStatus(StatusSnapshot snapshot, int changedFields) {
+        if ((changedFields & StatusSnapshot.FIELD_BATTERY) != 0 && snapshot.hasBattery()) {
+            setBatteryCharging(snapshot.charging);
+            setBatteryLevel(snapshot.batteryLevel);
+        }
     }
 
     public void setBatteryCharging(boolean charging) {
@@ -76,51 +163,79 @@ public class BatteryView extends AppCompatTextView implements BatteryObserver.Li
             return;
         }
         this.mBatteryLevel = level;
-        setText(String.format(Locale.getDefault(), "%d%%", this.mBatteryLevel));
+        int clamped = Math.max(0, Math.min(100, level));
+        int n = 0;
+        if (clamped >= 100) mLevelChars[n++] = (char) ('0' + clamped / 100);
+        if (clamped >= 10) mLevelChars[n++] = (char) ('0' + clamped / 10 % 10);
+        mLevelChars[n++] = (char) ('0' + clamped % 10);
+        mLevelChars[n++] = '%';
+        setText(mLevelChars, 0, n);
         updateDisplay();
     }
 
     private void updateDisplay() {
-        int iconRes;
-        if (mBatteryCharging) {
-            iconRes = R.drawable.ic_battery_charging_horizontal;
-        } else if (mBatteryLevel >= 90) {
-            iconRes = R.drawable.ic_battery_full_horizontal;
-        } else if (mBatteryLevel >= 60) {
-            iconRes = R.drawable.ic_battery_high_horizontal;
-        } else if (mBatteryLevel >= 30) {
-            iconRes = R.drawable.ic_battery_medium_horizontal;
+        if (mGauge != null) {
+            // TextView.invalidateDrawable only dirties the drawable's own rect
+            mGauge.setState(mBatteryLevel, mBatteryCharging, isLowWarning());
         } else {
-            iconRes = R.drawable.ic_battery_low_horizontal;
+            updateIcon();
         }
 
-        android.graphics.drawable.Drawable icon = getContext().getDrawable(iconRes);
-        if (icon != null) {
-            int width = Math.round(icon.getIntrinsicWidth() * 1.8f);
-            int height = Math.round(icon.getIntrinsicHeight() * 1.8f);
-            icon.setBounds(0, 0, width, height);
-        }
-
-        setCompoundDrawablesRelative(null, null, icon, null);
-
-        if (mBatteryCharging) {
-            setTextColor(0xFF000000);
-        } else if (mBatteryLevel < LOW_WARNING_THRESHOLD) {
+        if (isLowWarning()) {
             setTextColor(0xFFFF5555);
         } else {
             setTextColor(0xFF000000);
         }
     }
 
+    static int iconResFor(int level, boolean charging) {
+        if (charging) {
+            return R.drawable.ic_battery_charging_horizontal;
+        } else if (level >= 90) {
+            return R.drawable.ic_battery_full_horizontal;
+        } else if (level >= 60) {
+            return R.drawable.ic_battery_high_horizontal;
+        } else if (level >= 30) {
+            return R.drawable.ic_battery_medium_horizontal;
+        } else {
+            return R.drawable.ic_battery_low_horizontal;
+        }
+    }
+
+    private void updateIcon() {
+        int iconRes = iconResFor(mBatteryLevel, mBatteryCharging);
+
+        // Swapping compound drawables always requests a layout, so only do it when the icon changes
+        if (iconRes != mIconRes) {
+            mIconRes = iconRes;
+            android.graphics.drawable.Drawable icon = IconCache.getInstance(getContext()).get(getContext(), iconRes, 1.8f);
+            setCompoundDrawablesRelative(null, null, icon, null);
+            if (mFixedWidthDigits) {
+                lockWidth();
+            }
+        }
+    }
+
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
-        BatteryObserver.getInstance(getContext()).addObserver(this);
+        mHost = StatusBarView.findHost(this);
+        if (mHost != null) {
+            mHost.attachSlot(this);
+        } else {
+            BatteryObserver.getInstance(getContext()).addObserver(this);
+        }
     }
 
     @Override
     protected void onDetachedFromWindow() {
-        BatteryObserver.getInstance(getContext()).removeObserver(this);
+        if (mHost != null) {
+            mHost.detachSlot(this);
+            mHost = null;
+        } else {
+            BatteryObserver.getInstance(getContext()).removeObserver(this);
+            FrameDispatcher.getInstance().cancel(mFrameTarget);
+        }
         super.onDetachedFromWindow();
     }
 }
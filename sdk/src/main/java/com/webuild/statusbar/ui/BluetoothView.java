@@ -1,18 +1,35 @@
 package com.webuild.statusbar.ui;
 
 import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Typeface;
 import android.util.AttributeSet;
 
 import androidx.appcompat.widget.AppCompatImageView;
 
 import com.webuild.statusbar.R;
+import com.webuild.statusbar.metrics.StatusMetrics;
+import com.webuild.statusbar.state.StatusSnapshot;
 import com.webuild.statusbar.ui.observers.BluetoothObserver;
 
 /**
  * 蓝牙状态显示控件
- * 显示蓝牙开关和连接状态
+ * 显示蓝牙开关和连接状态，连接多个设备时在右下角显示设备数
  */
-public class BluetoothView extends AppCompatImageView implements BluetoothObserver.Listener {
+public class BluetoothView extends AppCompatImageView implements BluetoothObserver.Listener, StatusSlot {
+    private StatusBarView mHost;
+    private int mConnectedDevices;
+    private boolean mReserveSpace;
+    private final Paint mBadgePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final char[] mBadgeChars = new char[1];
+    // State in the high 16 bits, connected devices in the low 16 bits, written together
+    private volatile int mPendingState = -1 << 16;
+    private final FrameDispatcher.Target mFrameTarget = () -> {
+        int pending = mPendingState;
+        setState(pending >> 16, pending & 0xFFFF);
+        StatusMetrics.getInstance().recordApplied(StatusSnapshot.FIELD_BLUETOOTH);
+    };
 
     public BluetoothView(Context context) {
         super(context);
@@ -30,46 +47,106 @@ public class BluetoothView extends AppCompatImageView implements BluetoothObserv
     }
 
     private void init() {
-        setImageResource(R.drawable.ic_status_bluetooth);
+        // Level = BluetoothObserver state: 0 on, 2 connected (level 1 is unused)
+        setImageDrawable(IconCache.getInstance(getContext()).getLevels(getContext(), 1f,
+                R.drawable.ic_status_bluetooth, R.drawable.ic_status_bluetooth, R.drawable.ic_status_bluetooth));
         setAdjustViewBounds(true);
         setScaleType(ScaleType.FIT_CENTER);
         setMaxHeight(dpToPx(25));
+        mBadgePaint.setColor(0xFF000000);
+        mBadgePaint.setTextSize(dpToPx(10));
+        mBadgePaint.setTypeface(Typeface.DEFAULT_BOLD);
+        mBadgePaint.setTextAlign(Paint.Align.RIGHT);
         // Default to GONE until state is known to avoid "jumping"
         setVisibility(GONE);
     }
 
+    /**
+     * 开启后蓝牙关闭时改为 INVISIBLE 并保留位置，显示/隐藏只重绘，不会引起重新布局
+     */
+    public void setReserveSpace(boolean reserve) {
+        if (reserve == mReserveSpace) {
+            return;
+        }
+        mReserveSpace = reserve;
+        if (getVisibility() != VISIBLE) {
+            setVisibility(reserve ? INVISIBLE : GONE);
+        }
+    }
+
+    public boolean isReserveSpace() {
+        return mReserveSpace;
+    }
+
     private int dpToPx(int dp) {
         final float density = getResources().getDisplayMetrics().density;
         return Math.round(dp * density);
     }
 
     @Override
-    public void onBluetoothStateChanged(int state) {
-        post(() -> setState(state));
+    public void onBluetoothStateChanged(int state, int connectedDevices) {
+        mPendingState = (state << 16) | (connectedDevices & 0xFFFF);
+        FrameDispatcher.getInstance().requestFrame(mFrameTarget);
+    }
+
+    @Override
+    public void applyStatus(StatusSnapshot snapshot, int changedFields) {
+        if ((changedFields & StatusSnapshot.FIELD_BLUETOOTH) != 0 && snapshot.hasBluetooth()) {
+            setState(snapshot.bluetoothState, snapshot.bluetoothDevices);
+        }
     }
 
     /**
      * 设置蓝牙状态
      * @param state -1:不可用/关闭(隐藏), 0:开启未连接, 2:已连接
+     * @param connectedDevices 已连接设备数，大于 1 时显示角标
      */
-    private void setState(int state) {
+    private void setState(int state, int connectedDevices) {
         if (state < 0) {
-            setVisibility(GONE);
+            // GONE <-> VISIBLE requests a layout, INVISIBLE <-> VISIBLE only invalidates
+            setVisibility(mReserveSpace ? INVISIBLE : GONE);
         } else {
             setVisibility(VISIBLE);
-            setSelected(state == 2);
+            setImageLevel(state == 2 ? 2 : 0);
+        }
+        int devices = state == 2 ? connectedDevices : 0;
+        if (devices != mConnectedDevices) {
+            mConnectedDevices = devices;
+            // The badge is drawn over the icon, so only a redraw is needed
+            invalidate();
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (mConnectedDevices > 1) {
+            mBadgeChars[0] = mConnectedDevices > 9 ? '+' : (char) ('0' + mConnectedDevices);
+            canvas.drawText(mBadgeChars, 0, 1, getWidth() - getPaddingRight(),
+                    getHeight() - getPaddingBottom() - mBadgePaint.descent(), mBadgePaint);
         }
     }
 
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
-        BluetoothObserver.getInstance(getContext()).addObserver(this);
+        mHost = StatusBarView.findHost(this);
+        if (mHost != null) {
+            mHost.attachSlot(this);
+        } else {
+            BluetoothObserver.getInstance(getContext()).addObserver(this);
+        }
     }
 
     @Override
     protected void onDetachedFromWindow() {
-        BluetoothObserver.getInstance(getContext()).removeObserver(this);
+        if (mHost != null) {
+            mHost.detachSlot(this);
+            mHost = null;
+        } else {
+            BluetoothObserver.getInstance(getContext()).removeObserver(this);
+            FrameDispatcher.getInstance().cancel(mFrameTarget);
+        }
         super.onDetachedFromWindow();
     }
 }
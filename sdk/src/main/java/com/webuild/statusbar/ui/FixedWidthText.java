@@ -0,0 +1,45 @@
+package com.webuild.statusbar.ui;
+
+import android.graphics.Paint;
+
+/**
+ * 等宽数字文本的宽度计算
+ * 按最宽的数字计算字符串宽度，同一格式下任意数值的宽度都不超过结果，
+ * 文本控件据此锁定宽度，之后数值变化只需重绘、不需重新布局。
+ */
+final class FixedWidthText {
+    // OpenType tabular figures, so every digit shares one advance where the font supports it
+    static final String FEATURE_TABULAR = "tnum";
+
+    private static final String[] DIGITS = {"0", "1", "2", "3", "4", "5", "6", "7", "8", "9"};
+
+    private FixedWidthText() {}
+
+    static float widestDigit(Paint paint) {
+        float widest = 0;
+        for (String digit : DIGITS) {
+            widest = Math.max(widest, paint.measureText(digit));
+        }
+        return widest;
+    }
+
+    /**
+     * @return 把 chars 中的每个数字都换成最宽数字后的宽度
+     */
+    static float measure(Paint paint, char[] chars, int length, float widestDigit) {
+        float width = 0;
+        int start = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || (chars[i] >= '0' && chars[i] <= '9')) {
+                if (i > start) {
+                    width += paint.measureText(chars, start, i - start);
+                }
+                if (i < length) {
+                    width += widestDigit;
+                }
+                start = i + 1;
+            }
+        }
+        return width;
+    }
+}
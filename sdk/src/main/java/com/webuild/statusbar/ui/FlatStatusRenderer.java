@@ -0,0 +1,880 @@
+package com.webuild.statusbar.ui;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RecordingCanvas;
+import android.graphics.Rect;
+import android.graphics.RenderNode;
+import android.graphics.Typeface;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.Bundle;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.text.format.DateFormat;
+import android.util.TypedValue;
+import android.view.MotionEvent;
+import android.view.SoundEffectConstants;
+import android.view.View;
+import android.view.accessibility.AccessibilityEvent;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+import androidx.core.view.accessibility.AccessibilityNodeInfoCompat;
+import androidx.customview.widget.ExploreByTouchHelper;
+
+import com.webuild.statusbar.R;
+import com.webuild.statusbar.state.StatusSnapshot;
+import com.webuild.statusbar.state.StatusWord;
+
+import java.util.List;
+
+/**
+ * 单视图状态栏渲染器
+ * 扁平模式下由 {@link StatusBarView} 持有，时间、标题、蓝牙、网络、电池都在 StatusBarView.onDraw 中直接绘制，
+ * 整个状态栏只有一个 View，没有子控件需要 measure/layout。
+ * 各槽位的位置在一次线性遍历中算出（右侧从电池往左，左侧从时间往右），状态变化只 invalidate 对应槽位的区域；
+ * API 29+ 硬件加速时每个槽位录制到独立的 RenderNode，重绘时未变化的槽位直接复用上次的录制结果。
+ * 点击按区域判断，目前只有网络槽位可点击。无障碍服务通过 {@link #getAccessibilityHelper()} 把每个槽位
+ * 当作一个虚拟节点读取，网络槽位可点击时同样提供点击操作。只能在主线程调用。
+ */
+public final class FlatStatusRenderer implements StatusSlot {
+    public static final int SLOT_TIME = 0;
+    public static final int SLOT_TITLE = 1;
+    public static final int SLOT_BLUETOOTH = 2;
+    public static final int SLOT_NETWORK = 3;
+    public static final int SLOT_BATTERY = 4;
+    private static final int SLOT_COUNT = 5;
+
+    private static final int TEXT_COLOR = 0xFF000000;
+    private static final int LOW_TEXT_COLOR = 0xFFFF5555;
+
+    private final StatusBarView mView;
+    private final Context mContext;
+    private final Slot[] mSlots = new Slot[SLOT_COUNT];
+    private final SlotAccessibility mAccessibility;
+    // Same spacing as the XML and dynamic layouts; recomputed when the density changes
+    private int mPadding;
+    private int mTitleMargin;
+    private int mBluetoothMargin;
+    private int mNetworkMargin;
+    private int mBluetoothMaxHeight;
+    private int mNetworkMaxHeight;
+    private int mMinTouchSize;
+    private final TextPaint mTimePaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final TextPaint mTitlePaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final TextPaint mBatteryPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mBadgePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Rect mTouchRect = new Rect();
+    private boolean mAttached;
+
+    private int mClockMode = TimeView.CLOCK_MODE_SYSTEM;
+    private boolean mClockRegistered;
+    private boolean mIs24Hour;
+    private boolean mFixedWidthDigits;
+    private final char[] mTimeChars = new char[TimeFormatter.MAX_LENGTH];
+    private int mTimeLength = -1;
+    private float mTimeWidth;
+    private float mLockedTimeWidth;
+    private final AlignedClock.Target mClockTarget = nowMs -> updateTime();
+
+    private CharSequence mTitle;
+    private CharSequence mTitleDisplay;
+    private int mTitleAvailable = -1;
+
+    private int mBluetoothState = -1;
+    private int mBluetoothDevices;
+    private Drawable mBluetoothIcon;
+    private final char[] mBadgeChars = new char[1];
+
+    private int mTransport = StatusWord.TRANSPORT_UNKNOWN;
+    private Drawable mNetworkIcon;
+    private boolean mNetworkClickable;
+    private boolean mNetworkPressed;
+
+    private int mBatteryLevel = -1;
+    private boolean mBatteryCharging;
+    private int mBatteryIconRes;
+    private Drawable mBatteryIcon;
+    private BatteryGaugeDrawable mGauge;
+    private final char[] mLevelChars = new char[4];
+    private int mLevelLength;
+    private float mLevelWidth;
+
+    FlatStatusRenderer(StatusBarView view) {
+        mView = view;
+        mContext = view.getContext();
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            mSlots[i] = new Slot();
+        }
+        mSlots[SLOT_TITLE].enabled = false;
+        mAccessibility = new SlotAccessibility(view);
+        updateDimensions();
+        mBadgePaint.setColor(TEXT_COLOR);
+        mBadgePaint.setTypeface(Typeface.DEFAULT_BOLD);
+        mBadgePaint.setTextAlign(Paint.Align.RIGHT);
+        mTitlePaint.setColor(TEXT_COLOR);
+        mTitlePaint.setTypeface(Typeface.DEFAULT_BOLD);
+        mTimePaint.setColor(TEXT_COLOR);
+        mTimePaint.setTypeface(Typeface.DEFAULT_BOLD);
+        mBatteryPaint.setTypeface(Typeface.DEFAULT_BOLD);
+        mBluetoothIcon = loadBluetoothIcon();
+        updateTextSizes();
+        fitIcon(mBluetoothIcon, mBluetoothMaxHeight, mSlots[SLOT_BLUETOOTH]);
+        setBattery(100, false);
+    }
+
+    /**
+     * 扁平模式下 StatusBarView 的无障碍代理，把各槽位作为虚拟子节点提供给无障碍服务
+     */
+    ExploreByTouchHelper getAccessibilityHelper() {
+        return mAccessibility;
+    }
+
+    /**
+     * 显示或隐藏槽位；蓝牙、网络在没有状态时、标题在没有文字时即使开启也不显示
+     * @param slot SLOT_*
+     */
+    public void setSlotEnabled(int slot, boolean enabled) {
+        Slot s = mSlots[slot];
+        if (s.enabled == enabled) {
+            return;
+        }
+        s.enabled = enabled;
+        if (slot == SLOT_TIME) {
+            syncClock();
+        }
+        layoutSlots();
+    }
+
+    public boolean isSlotEnabled(int slot) {
+        return mSlots[slot].enabled;
+    }
+
+    public void setTitle(@Nullable CharSequence title) {
+        if (TextUtils.equals(title, mTitle)) {
+            return;
+        }
+        mTitle = title;
+        mTitleAvailable = -1;
+        layoutSlots();
+        invalidateSlot(SLOT_TITLE);
+    }
+
+    @Nullable
+    public CharSequence getTitle() {
+        return mTitle;
+    }
+
+    /**
+     * @param mode TimeView.CLOCK_MODE_*
+     */
+    public void setClockMode(int mode) {
+        if (mode == mClockMode) {
+            return;
+        }
+        mClockMode = mode;
+        mLockedTimeWidth = 0;
+        mClockRegistered = false;
+        AlignedClock.getInstance(mContext).remove(mClockTarget);
+        syncClock();
+        updateTime();
+    }
+
+    /**
+     * 开启后时间和电量使用等宽数字，槽位宽度按最宽数字锁定，数值变化时只重绘对应槽位
+     */
+    public void setFixedWidthDigits(boolean fixed) {
+        if (fixed == mFixedWidthDigits) {
+            return;
+        }
+        mFixedWidthDigits = fixed;
+        String features = fixed ? FixedWidthText.FEATURE_TABULAR : null;
+        mTimePaint.setFontFeatureSettings(features);
+        mBatteryPaint.setFontFeatureSettings(features);
+        mLockedTimeWidth = 0;
+        remeasureAll();
+    }
+
+    /**
+     * 开启后电池图标改为 {@link BatteryGaugeDrawable}
+     */
+    public void setBatteryGauge(boolean enabled) {
+        if (enabled == (mGauge != null)) {
+            return;
+        }
+        mGauge = enabled ? new BatteryGaugeDrawable(gaugeSize()) : null;
+        mBatteryIconRes = 0;
+        int level = mBatteryLevel;
+        mBatteryLevel = -1;
+        setBattery(level, mBatteryCharging);
+    }
+
+    public void setNetworkClickable(boolean clickable) {
+        mNetworkClickable = clickable;
+        mNetworkPressed = false;
+        if (clickable && mAttached) {
+            NetworkInfoDialog.obtain(mView).prefetch();
+        }
+        mAccessibility.invalidateVirtualView(SLOT_NETWORK);
+    }
+
+    void onAttached() {
+        mAttached = true;
+        mIs24Hour = DateFormat.is24HourFormat(mContext);
+        updateTime();
+        mView.attachSlot(this);
+        syncClock();
+        if (mNetworkClickable) {
+            // Build the dialog while the main thread is idle, so the tap only has to show it
+            NetworkInfoDialog.obtain(mView).prefetch();
+        }
+    }
+
+    void onDetached() {
+        mAttached = false;
+        syncClock();
+        mView.detachSlot(this);
+        NetworkInfoDialog dialog = NetworkInfoDialog.peek(mView);
+        if (dialog != null) {
+            dialog.dismiss();
+        }
+    }
+
+    void onConfigurationChanged() {
+        // Font scale, locale or density may have changed
+        updateDimensions();
+        updateTextSizes();
+        reloadIcons();
+        mTimeLength = -1;
+        mLockedTimeWidth = 0;
+        remeasureAll();
+    }
+
+    void onSizeChanged() {
+        layoutSlots();
+    }
+
+    // Aligned ticking runs only while the time slot can actually be seen
+    void syncClock() {
+        boolean wanted = mClockMode != TimeView.CLOCK_MODE_SYSTEM && mAttached && mSlots[SLOT_TIME].enabled
+                && mView.getWindowVisibility() == View.VISIBLE;
+        if (wanted == mClockRegistered) {
+            return;
+        }
+        mClockRegistered = wanted;
+        if (wanted) {
+            AlignedClock.getInstance(mContext).add(mClockTarget, mClockMode == TimeView.CLOCK_MODE_SECONDS);
+            updateTime();
+        } else {
+            AlignedClock.getInstance(mContext).remove(mClockTarget);
+        }
+    }
+
+    @Override
+    public void applyStatus(StatusSnapshot snapshot, int changedFields) {
+        if ((changedFields & StatusSnapshot.FIELD_TIME_FORMAT) != 0 && snapshot.hasTime()
+                && snapshot.is24HourFormat != mIs24Hour) {
+            mIs24Hour = snapshot.is24HourFormat;
+            mLockedTimeWidth = 0;
+        }
+        if ((changedFields & StatusSnapshot.FIELD_TIME) != 0) {
+            updateTime();
+        }
+        if ((changedFields & StatusSnapshot.FIELD_BLUETOOTH) != 0 && snapshot.hasBluetooth()) {
+            setBluetooth(snapshot.bluetoothState, snapshot.bluetoothDevices);
+        }
+        if ((changedFields & StatusSnapshot.FIELD_NETWORK) != 0 && snapshot.hasNetwork()) {
+            setNetwork(snapshot.transport, snapshot.signalLevel);
+        }
+        if ((changedFields & StatusSnapshot.FIELD_BATTERY) != 0 && snapshot.hasBattery()) {
+            setBattery(snapshot.batteryLevel, snapshot.charging);
+        }
+    }
+
+    private void updateTime() {
+        TimeFormatter formatter = TimeFormatter.getInstance();
+        formatter.format(mContext, mIs24Hour, mClockMode == TimeView.CLOCK_MODE_SECONDS, System.currentTimeMillis());
+        char[] chars = formatter.getChars();
+        int length = formatter.getLength();
+        if (length == mTimeLength && regionEquals(chars, mTimeChars, length)) {
+            return;
+        }
+        System.arraycopy(chars, 0, mTimeChars, 0, length);
+        mTimeLength = length;
+        if (measureTime()) {
+            layoutSlots();
+        }
+        invalidateSlot(SLOT_TIME);
+    }
+
+    // Returns true when the slot size changed
+    private boolean measureTime() {
+        float width;
+        if (mFixedWidthDigits) {
+            // Only grows the reservation, like TimeView
+            width = FixedWidthText.measure(mTimePaint, mTimeChars, Math.max(0, mTimeLength),
+                    FixedWidthText.widestDigit(mTimePaint));
+            mLockedTimeWidth = Math.max(mLockedTimeWidth, width);
+            width = mLockedTimeWidth;
+        } else {
+            width = mTimeLength > 0 ? mTimePaint.measureText(mTimeChars, 0, mTimeLength) : 0;
+        }
+        mTimeWidth = width;
+        return setContentSize(mSlots[SLOT_TIME], (int) Math.ceil(width), textHeight(mTimePaint));
+    }
+
+    private void setBluetooth(int state, int connectedDevices) {
+        int devices = state == 2 ? connectedDevices : 0;
+        if (state == mBluetoothState && devices == mBluetoothDevices) {
+            return;
+        }
+        boolean visibilityChanged = (state < 0) != (mBluetoothState < 0);
+        mBluetoothState = state;
+        mBluetoothDevices = devices;
+        mBluetoothIcon.setLevel(state == 2 ? 2 : 0);
+        if (visibilityChanged) {
+            layoutSlots();
+        }
+        invalidateSlot(SLOT_BLUETOOTH);
+    }
+
+    private void setNetwork(int transport, int signalLevel) {
+        if (transport != mTransport) {
+            mTransport = transport;
+            mNetworkIcon = NetworkView.iconFor(mContext, transport);
+            if (mNetworkIcon != null) {
+                fitIcon(mNetworkIcon, mNetworkMaxHeight, mSlots[SLOT_NETWORK]);
+            } else {
+                mNetworkPressed = false;
+            }
+            layoutSlots();
+        }
+        if (transport == StatusWord.TRANSPORT_WIFI && mNetworkIcon != null) {
+            mNetworkIcon.setLevel(NetworkView.wifiLevel(signalLevel));
+        }
+        invalidateSlot(SLOT_NETWORK);
+    }
+
+    private void setBattery(int level, boolean charging) {
+        if (level == mBatteryLevel && charging == mBatteryCharging) {
+            return;
+        }
+        boolean levelChanged = level != mBatteryLevel;
+        mBatteryLevel = level;
+        mBatteryCharging = charging;
+        boolean lowWarning = !charging && level < BatteryView.LOW_WARNING_THRESHOLD;
+        mBatteryPaint.setColor(lowWarning ? LOW_TEXT_COLOR : TEXT_COLOR);
+        if (levelChanged) {
+            int clamped = Math.max(0, Math.min(100, level));
+            int n = 0;
+            if (clamped >= 100) mLevelChars[n++] = (char) ('0' + clamped / 100);
+            if (clamped >= 10) mLevelChars[n++] = (char) ('0' + clamped / 10 % 10);
+            mLevelChars[n++] = (char) ('0' + clamped % 10);
+            mLevelChars[n++] = '%';
+            mLevelLength = n;
+        }
+        boolean resized = false;
+        if (mGauge != null) {
+            mGauge.setState(level, charging, lowWarning);
+            if (mBatteryIcon != mGauge) {
+                mBatteryIcon = mGauge;
+                resized = true;
+            }
+        } else {
+            int iconRes = BatteryView.iconResFor(level, charging);
+            if (iconRes != mBatteryIconRes) {
+                mBatteryIconRes = iconRes;
+                mBatteryIcon = IconCache.getInstance(mContext).get(mContext, iconRes, 1.8f);
+                resized = true;
+            }
+        }
+        if ((levelChanged || resized) && measureBattery()) {
+            layoutSlots();
+        }
+        invalidateSlot(SLOT_BATTERY);
+    }
+
+    // Text followed by the icon, both centred vertically; returns true when the slot size changed
+    private boolean measureBattery() {
+        if (mFixedWidthDigits) {
+            mLevelWidth = FixedWidthText.measure(mBatteryPaint, BatteryView.WIDEST_TEXT,
+                    BatteryView.WIDEST_TEXT.length, FixedWidthText.widestDigit(mBatteryPaint));
+        } else {
+            mLevelWidth = mBatteryPaint.measureText(mLevelChars, 0, mLevelLength);
+        }
+        int textWidth = (int) Math.ceil(mLevelWidth);
+        int iconWidth = mBatteryIcon != null ? mBatteryIcon.getIntrinsicWidth() : 0;
+        int iconHeight = mBatteryIcon != null ? mBatteryIcon.getIntrinsicHeight() : 0;
+        int height = Math.max(textHeight(mBatteryPaint), iconHeight);
+        if (mBatteryIcon != null) {
+            int top = (height - iconHeight) / 2;
+            mBatteryIcon.setBounds(textWidth, top, textWidth + iconWidth, top + iconHeight);
+        }
+        return setContentSize(mSlots[SLOT_BATTERY], textWidth + iconWidth, height);
+    }
+
+    private void remeasureAll() {
+        measureTime();
+        measureBattery();
+        mBadgePaint.setTextSize(dpToPx(10));
+        mTitleAvailable = -1;
+        layoutSlots();
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            invalidateSlot(i);
+        }
+    }
+
+    private void updateDimensions() {
+        mPadding = dpToPx(8);
+        mTitleMargin = dpToPx(8);
+        mBluetoothMargin = dpToPx(3);
+        mNetworkMargin = dpToPx(8);
+        mBluetoothMaxHeight = dpToPx(25);
+        mNetworkMaxHeight = dpToPx(30);
+        mMinTouchSize = dpToPx(48);
+    }
+
+    // Icons are sized in pixels when loaded, so a density change needs them loaded again
+    private void reloadIcons() {
+        int bluetoothLevel = mBluetoothIcon.getLevel();
+        mBluetoothIcon = loadBluetoothIcon();
+        mBluetoothIcon.setLevel(bluetoothLevel);
+        fitIcon(mBluetoothIcon, mBluetoothMaxHeight, mSlots[SLOT_BLUETOOTH]);
+        if (mNetworkIcon != null) {
+            int networkLevel = mNetworkIcon.getLevel();
+            mNetworkIcon = NetworkView.iconFor(mContext, mTransport);
+            if (mNetworkIcon != null) {
+                mNetworkIcon.setLevel(networkLevel);
+                fitIcon(mNetworkIcon, mNetworkMaxHeight, mSlots[SLOT_NETWORK]);
+            }
+        }
+        if (mGauge != null) {
+            mGauge = new BatteryGaugeDrawable(gaugeSize());
+        }
+        mBatteryIconRes = 0;
+        int level = mBatteryLevel;
+        mBatteryLevel = -1;
+        setBattery(level, mBatteryCharging);
+    }
+
+    private Drawable loadBluetoothIcon() {
+        // Level = BluetoothObserver state: 0 on, 2 connected (level 1 is unused)
+        return IconCache.getInstance(mContext).getLevels(mContext, 1f,
+                R.drawable.ic_status_bluetooth, R.drawable.ic_status_bluetooth, R.drawable.ic_status_bluetooth);
+    }
+
+    private int gaugeSize() {
+        return Math.round(24 * density() * 1.8f);
+    }
+
+    private void updateTextSizes() {
+        mTimePaint.setTextSize(spToPx(22));
+        mTitlePaint.setTextSize(spToPx(18));
+        mBatteryPaint.setTextSize(spToPx(22));
+        mBadgePaint.setTextSize(dpToPx(10));
+    }
+
+    private boolean isShown(int slot) {
+        if (!mSlots[slot].enabled) {
+            return false;
+        }
+        switch (slot) {
+            case SLOT_TITLE:
+                return mTitle != null && mTitle.length() > 0;
+            case SLOT_BLUETOOTH:
+                return mBluetoothState >= 0;
+            case SLOT_NETWORK:
+                return mNetworkIcon != null;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * 一次线性遍历算出所有槽位的位置：右侧从电池往左排，左侧从时间往右排，标题占用剩余宽度。
+     * 位置变化的槽位重绘新旧两个区域
+     */
+    private void layoutSlots() {
+        int width = mView.getWidth();
+        int height = mView.getHeight();
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        int end = width - mPadding;
+        end = placeEnd(SLOT_BATTERY, end, 0, height);
+        end = placeEnd(SLOT_NETWORK, end, mNetworkMargin, height);
+        end = placeEnd(SLOT_BLUETOOTH, end, mBluetoothMargin, height);
+
+        int start = placeStart(SLOT_TIME, mPadding, 0, height);
+        if (isShown(SLOT_TITLE)) {
+            int titleStart = start + (isShown(SLOT_TIME) ? mTitleMargin : 0);
+            ellipsizeTitle(Math.max(0, end - titleStart));
+        }
+        placeStart(SLOT_TITLE, start, isShown(SLOT_TIME) ? mTitleMargin : 0, height);
+    }
+
+    private int placeEnd(int slot, int end, int marginEnd, int height) {
+        Slot s = mSlots[slot];
+        if (!isShown(slot)) {
+            hide(s);
+            return end;
+        }
+        int right = end - marginEnd;
+        int top = (height - s.height) / 2;
+        moveTo(s, right - s.width, top, right, top + s.height);
+        return right - s.width;
+    }
+
+    private int placeStart(int slot, int start, int marginStart, int height) {
+        Slot s = mSlots[slot];
+        if (!isShown(slot)) {
+            hide(s);
+            return start;
+        }
+        int left = start + marginStart;
+        int top = (height - s.height) / 2;
+        moveTo(s, left, top, left + s.width, top + s.height);
+        return left + s.width;
+    }
+
+    private void ellipsizeTitle(int available) {
+        if (available == mTitleAvailable) {
+            return;
+        }
+        mTitleAvailable = available;
+        mTitleDisplay = TextUtils.ellipsize(mTitle, mTitlePaint, available, TextUtils.TruncateAt.END);
+        int width = (int) Math.ceil(mTitlePaint.measureText(mTitleDisplay, 0, mTitleDisplay.length()));
+        setContentSize(mSlots[SLOT_TITLE], width, textHeight(mTitlePaint));
+        invalidateSlot(SLOT_TITLE);
+    }
+
+    @SuppressWarnings("deprecation")
+    private void moveTo(Slot s, int left, int top, int right, int bottom) {
+        Rect b = s.bounds;
+        if (s.shown && b.left == left && b.top == top && b.right == right && b.bottom == bottom) {
+            return;
+        }
+        boolean appeared = !s.shown;
+        if (s.shown) {
+            mView.invalidate(b.left, b.top, b.right, b.bottom);
+        }
+        b.set(left, top, right, bottom);
+        s.shown = true;
+        s.dirty = true;
+        mView.invalidate(left, top, right, bottom);
+        if (appeared) {
+            mAccessibility.invalidateRoot();
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private void hide(Slot s) {
+        if (s.shown) {
+            s.shown = false;
+            mView.invalidate(s.bounds.left, s.bounds.top, s.bounds.right, s.bounds.bottom);
+            mAccessibility.invalidateRoot();
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private void invalidateSlot(int slot) {
+        Slot s = mSlots[slot];
+        s.dirty = true;
+        if (s.shown) {
+            mView.invalidate(s.bounds.left, s.bounds.top, s.bounds.right, s.bounds.bottom);
+            // No-op unless an accessibility service is running
+            mAccessibility.invalidateVirtualView(slot);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    void draw(Canvas canvas) {
+        boolean nodes = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && canvas.isHardwareAccelerated();
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            Slot s = mSlots[i];
+            if (!s.shown) {
+                continue;
+            }
+            if (nodes) {
+                Api29Impl.drawSlot(this, canvas, s, i);
+            } else if (!canvas.quickReject(s.bounds.left, s.bounds.top, s.bounds.right, s.bounds.bottom,
+                    Canvas.EdgeType.BW)) {
+                // Software rendering clips to the dirty rect; slots outside it are skipped
+                int count = canvas.save();
+                canvas.translate(s.bounds.left, s.bounds.top);
+                drawContent(canvas, i);
+                canvas.restoreToCount(count);
+            }
+            s.dirty = false;
+        }
+    }
+
+    // Draws a slot in its own coordinates, origin at the slot's top-left corner
+    private void drawContent(Canvas canvas, int slot) {
+        switch (slot) {
+            case SLOT_TIME:
+                if (mTimeLength > 0) {
+                    canvas.drawText(mTimeChars, 0, mTimeLength, 0, -mTimePaint.ascent(), mTimePaint);
+                }
+                break;
+            case SLOT_TITLE:
+                if (mTitleDisplay != null) {
+                    canvas.drawText(mTitleDisplay, 0, mTitleDisplay.length(), 0, -mTitlePaint.ascent(), mTitlePaint);
+                }
+                break;
+            case SLOT_BLUETOOTH:
+                mBluetoothIcon.draw(canvas);
+                if (mBluetoothDevices > 1) {
+                    Slot s = mSlots[SLOT_BLUETOOTH];
+                    mBadgeChars[0] = mBluetoothDevices > 9 ? '+' : (char) ('0' + mBluetoothDevices);
+                    canvas.drawText(mBadgeChars, 0, 1, s.width, s.height - mBadgePaint.descent(), mBadgePaint);
+                }
+                break;
+            case SLOT_NETWORK:
+                mNetworkIcon.draw(canvas);
+                break;
+            case SLOT_BATTERY: {
+                Slot s = mSlots[SLOT_BATTERY];
+                int textTop = (s.height - textHeight(mBatteryPaint)) / 2;
+                canvas.drawText(mLevelChars, 0, mLevelLength, 0, textTop - mBatteryPaint.ascent(), mBatteryPaint);
+                if (mBatteryIcon != null) {
+                    mBatteryIcon.draw(canvas);
+                }
+                break;
+            }
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 按区域分发点击，点击区域至少 48dp
+     * @return 是否消费了该事件
+     */
+    boolean onTouchEvent(MotionEvent event) {
+        Slot network = mSlots[SLOT_NETWORK];
+        if (!mNetworkClickable || !network.shown) {
+            mNetworkPressed = false;
+            return false;
+        }
+        touchBounds(network, mTouchRect);
+        boolean inside = mTouchRect.contains((int) event.getX(), (int) event.getY());
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                mNetworkPressed = inside;
+                return inside;
+            case MotionEvent.ACTION_MOVE:
+                if (!inside) {
+                    mNetworkPressed = false;
+                }
+                return mNetworkPressed;
+            case MotionEvent.ACTION_UP:
+                if (mNetworkPressed && inside) {
+                    mNetworkPressed = false;
+                    mView.playSoundEffect(SoundEffectConstants.CLICK);
+                    clickNetwork();
+                    return true;
+                }
+                mNetworkPressed = false;
+                return false;
+            case MotionEvent.ACTION_CANCEL:
+                mNetworkPressed = false;
+                return false;
+            default:
+                return mNetworkPressed;
+        }
+    }
+
+    private void clickNetwork() {
+        NetworkInfoDialog.obtain(mView).show();
+        mAccessibility.sendEventForVirtualView(SLOT_NETWORK, AccessibilityEvent.TYPE_VIEW_CLICKED);
+    }
+
+    // Slot bounds grown to at least the minimum touch size, centred on the slot
+    private void touchBounds(Slot slot, Rect out) {
+        out.set(slot.bounds);
+        int dx = Math.max(0, mMinTouchSize - out.width()) / 2;
+        int dy = Math.max(0, mMinTouchSize - out.height()) / 2;
+        out.inset(-dx, -dy);
+    }
+
+    private CharSequence describe(int slot) {
+        switch (slot) {
+            case SLOT_TIME:
+                return mTimeLength > 0 ? new String(mTimeChars, 0, mTimeLength) : null;
+            case SLOT_TITLE:
+                return mTitle;
+            case SLOT_BLUETOOTH:
+                if (mBluetoothState != 2) {
+                    return "蓝牙已开启";
+                }
+                return mBluetoothDevices > 1 ? "蓝牙已连接 " + mBluetoothDevices + " 台设备" : "蓝牙已连接";
+            case SLOT_NETWORK:
+                switch (mTransport) {
+                    case StatusWord.TRANSPORT_WIFI:
+                        // Icon level 0-4 picks one of five bar icons
+                        return "Wi‑Fi，强度 " + (mNetworkIcon.getLevel() + 1) + "/5";
+                    case StatusWord.TRANSPORT_ETHERNET:
+                        return "以太网";
+                    case StatusWord.TRANSPORT_CELLULAR:
+                        return "蜂窝网络";
+                    default:
+                        return null;
+                }
+            case SLOT_BATTERY:
+                return "电量 " + Math.max(0, Math.min(100, mBatteryLevel)) + "%" + (mBatteryCharging ? "，正在充电" : "");
+            default:
+                return null;
+        }
+    }
+
+    // Scales the icon down to maxHeight keeping its aspect ratio, like adjustViewBounds + maxHeight
+    private void fitIcon(Drawable icon, int maxHeight, Slot slot) {
+        int width = icon.getIntrinsicWidth();
+        int height = icon.getIntrinsicHeight();
+        if (height > maxHeight && height > 0) {
+            width = Math.round(width * (float) maxHeight / height);
+            height = maxHeight;
+        }
+        icon.setBounds(0, 0, width, height);
+        setContentSize(slot, width, height);
+    }
+
+    private static boolean setContentSize(Slot slot, int width, int height) {
+        if (slot.width == width && slot.height == height) {
+            return false;
+        }
+        slot.width = width;
+        slot.height = height;
+        return true;
+    }
+
+    private static int textHeight(Paint paint) {
+        return (int) Math.ceil(paint.descent() - paint.ascent());
+    }
+
+    private static boolean regionEquals(char[] a, char[] b, int length) {
+        for (int i = 0; i < length; i++) {
+            if (a[i] != b[i]) return false;
+        }
+        return true;
+    }
+
+    private float density() {
+        return mContext.getResources().getDisplayMetrics().density;
+    }
+
+    private int dpToPx(int dp) {
+        return Math.round(dp * density());
+    }
+
+    private float spToPx(int sp) {
+        return TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, sp, mContext.getResources().getDisplayMetrics());
+    }
+
+    private static final class Slot {
+        final Rect bounds = new Rect();
+        boolean enabled = true;
+        // Laid out and drawn
+        boolean shown;
+        // Content changed since the slot was last drawn
+        boolean dirty = true;
+        int width;
+        int height;
+        // RenderNode on API 29+, recorded again only when dirty
+        Object node;
+    }
+
+    /**
+     * 每个显示中的槽位对应一个虚拟节点，节点 id 即 SLOT_*
+     */
+    private final class SlotAccessibility extends ExploreByTouchHelper {
+        private final Rect mHitRect = new Rect();
+
+        SlotAccessibility(View host) {
+            super(host);
+        }
+
+        @Override
+        protected int getVirtualViewAt(float x, float y) {
+            for (int i = 0; i < SLOT_COUNT; i++) {
+                Slot s = mSlots[i];
+                if (!s.shown) {
+                    continue;
+                }
+                if (i == SLOT_NETWORK && mNetworkClickable) {
+                    touchBounds(s, mHitRect);
+                } else {
+                    mHitRect.set(s.bounds);
+                }
+                if (mHitRect.contains((int) x, (int) y)) {
+                    return i;
+                }
+            }
+            return INVALID_ID;
+        }
+
+        @Override
+        protected void getVisibleVirtualViews(List<Integer> virtualViewIds) {
+            // SLOT_* ids already follow the start-to-end reading order
+            for (int i = 0; i < SLOT_COUNT; i++) {
+                if (mSlots[i].shown) {
+                    virtualViewIds.add(i);
+                }
+            }
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        protected void onPopulateNodeForVirtualView(int virtualViewId, @NonNull AccessibilityNodeInfoCompat node) {
+            Slot s = mSlots[virtualViewId];
+            CharSequence text = s.shown ? describe(virtualViewId) : null;
+            // ExploreByTouchHelper requires a description and bounds for every node it is asked about
+            node.setContentDescription(text != null ? text : "");
+            if (virtualViewId == SLOT_NETWORK && mNetworkClickable) {
+                touchBounds(s, mHitRect);
+                node.setClassName("android.widget.Button");
+                node.setClickable(true);
+                node.addAction(AccessibilityNodeInfoCompat.ACTION_CLICK);
+            } else {
+                mHitRect.set(s.bounds);
+            }
+            node.setBoundsInParent(mHitRect);
+        }
+
+        @Override
+        protected boolean onPerformActionForVirtualView(int virtualViewId, int action, @Nullable Bundle arguments) {
+            if (virtualViewId == SLOT_NETWORK && action == AccessibilityNodeInfoCompat.ACTION_CLICK
+                    && mNetworkClickable && mSlots[SLOT_NETWORK].shown) {
+                clickNetwork();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private static final class Api29Impl {
+        static void drawSlot(FlatStatusRenderer renderer, Canvas canvas, Slot slot, int index) {
+            RenderNode node = (RenderNode) slot.node;
+            if (node == null) {
+                node = new RenderNode("StatusSlot");
+                slot.node = node;
+                slot.dirty = true;
+            }
+            if (slot.dirty || !node.hasDisplayList()) {
+                node.setPosition(slot.bounds);
+                RecordingCanvas recording = node.beginRecording();
+                try {
+                    renderer.drawContent(recording, index);
+                } finally {
+                    node.endRecording();
+                }
+            }
+            canvas.drawRenderNode(node);
+        }
+    }
+}
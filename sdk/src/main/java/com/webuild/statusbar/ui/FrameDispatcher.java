@@ -0,0 +1,110 @@
+package com.webuild.statusbar.ui;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * 帧合并分发器
+ * 各控件只记录最新状态并标记为脏，每个 vsync 统一应用一次。
+ * 每个 Looper 同一时刻最多只有一个待执行的帧回调，与控件数量无关。
+ */
+public final class FrameDispatcher {
+    private static final HashMap<Looper, FrameDispatcher> sDispatchers = new HashMap<>();
+
+    private final Looper mLooper;
+    private final Handler mHandler;
+    private final Object mLock = new Object();
+    private ArrayList<Target> mPending = new ArrayList<>();
+    private ArrayList<Target> mRunning = new ArrayList<>();
+    private boolean mScheduled;
+    private Choreographer mChoreographer;
+
+    public interface Target {
+        /**
+         * 在 Looper 线程上每帧最多调用一次，用于应用最新状态
+         */
+        void onFrame();
+    }
+
+    public static FrameDispatcher getInstance() {
+        return forLooper(Looper.getMainLooper());
+    }
+
+    public static FrameDispatcher forLooper(@NonNull Looper looper) {
+        synchronized (sDispatchers) {
+            FrameDispatcher dispatcher = sDispatchers.get(looper);
+            if (dispatcher == null) {
+                dispatcher = new FrameDispatcher(looper);
+                sDispatchers.put(looper, dispatcher);
+            }
+            return dispatcher;
+        }
+    }
+
+    private FrameDispatcher(Looper looper) {
+        mLooper = looper;
+        mHandler = new Handler(looper);
+    }
+
+    /**
+     * 标记目标为脏，可在任意线程调用；同一帧内重复调用只会应用一次
+     */
+    public void requestFrame(@NonNull Target target) {
+        boolean schedule = false;
+        synchronized (mLock) {
+            if (!mPending.contains(target)) {
+                mPending.add(target);
+            }
+            if (!mScheduled) {
+                mScheduled = true;
+                schedule = true;
+            }
+        }
+        if (schedule) {
+            if (Looper.myLooper() == mLooper) {
+                postFrameCallback();
+            } else {
+                mHandler.post(mScheduleRunnable);
+            }
+        }
+    }
+
+    /**
+     * 移除尚未应用的请求，控件 detach 时调用
+     */
+    public void cancel(@NonNull Target target) {
+        synchronized (mLock) {
+            mPending.remove(target);
+        }
+    }
+
+    private final Runnable mScheduleRunnable = this::postFrameCallback;
+
+    private void postFrameCallback() {
+        if (mChoreographer == null) {
+            // Choreographer is thread-local, so it is only fetched on the looper thread
+            mChoreographer = Choreographer.getInstance();
+        }
+        mChoreographer.postFrameCallback(mFrameCallback);
+    }
+
+    private final Choreographer.FrameCallback mFrameCallback = frameTimeNanos -> {
+        ArrayList<Target> running;
+        synchronized (mLock) {
+            running = mPending;
+            mPending = mRunning;
+            mRunning = running;
+            mScheduled = false;
+        }
+        for (int i = 0; i < running.size(); i++) {
+            running.get(i).onFrame();
+        }
+        running.clear();
+    };
+}
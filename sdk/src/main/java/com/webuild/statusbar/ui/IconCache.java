@@ -0,0 +1,229 @@
+package com.webuild.statusbar.ui;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.LevelListDrawable;
+import android.util.SparseLongArray;
+
+import androidx.annotation.DrawableRes;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.appcompat.content.res.AppCompatResources;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 进程内共享的状态图标位图缓存
+ * 每个矢量图标按（资源、像素尺寸、着色）只解析和栅格化一次，之后各控件拿到的是共享同一位图的 BitmapDrawable。
+ * 按最近最少使用淘汰，总大小有上限，onTrimMemory 时按内存压力缩减或清空。
+ */
+public final class IconCache implements ComponentCallbacks2 {
+    private static final int MAX_BYTES = 1024 * 1024;
+
+    private static volatile IconCache sInstance;
+
+    private final Context mAppContext;
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<Key, Bitmap> mBitmaps = new LinkedHashMap<>(16, 0.75f, true);
+    // resId -> (intrinsic width << 32 | intrinsic height), so scaled lookups need no inflation;
+    // pixel sizes, so only valid for mSizesDensity
+    private final SparseLongArray mIntrinsicSizes = new SparseLongArray();
+    private int mSizesDensity;
+    private final Key mLookupKey = new Key();
+    private int mBytes;
+
+    public static IconCache getInstance(Context context) {
+        if (sInstance == null) {
+            synchronized (IconCache.class) {
+                if (sInstance == null) {
+                    sInstance = new IconCache(context.getApplicationContext());
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    private IconCache(Context context) {
+        mAppContext = context;
+        mAppContext.registerComponentCallbacks(this);
+    }
+
+    /**
+     * 按固有尺寸乘以 scale 取图标，返回的 Drawable 已设置好 bounds
+     */
+    @Nullable
+    public Drawable get(@NonNull Context context, @DrawableRes int resId, float scale) {
+        int density = context.getResources().getConfiguration().densityDpi;
+        long size;
+        synchronized (this) {
+            if (density != mSizesDensity) {
+                mIntrinsicSizes.clear();
+                mSizesDensity = density;
+            }
+            size = mIntrinsicSizes.get(resId, -1L);
+        }
+        if (size == -1L) {
+            Drawable source = AppCompatResources.getDrawable(context, resId);
+            if (source == null) {
+                return null;
+            }
+            size = ((long) source.getIntrinsicWidth() << 32) | (source.getIntrinsicHeight() & 0xFFFFFFFFL);
+            synchronized (this) {
+                if (density == mSizesDensity) {
+                    mIntrinsicSizes.put(resId, size);
+                }
+            }
+        }
+        int width = Math.max(1, Math.round((int) (size >> 32) * scale));
+        int height = Math.max(1, Math.round((int) size * scale));
+        return get(context, resId, width, height, 0);
+    }
+
+    /**
+     * 由缓存位图组成的等级图标，level i 显示 resIds[i]，之后只需 setImageLevel 切换、无需重新加载
+     */
+    @Nullable
+    public Drawable getLevels(@NonNull Context context, float scale, @DrawableRes int... resIds) {
+        LevelListDrawable levels = new LevelListDrawable();
+        for (int i = 0; i < resIds.length; i++) {
+            Drawable item = get(context, resIds[i], scale);
+            if (item == null) {
+                return null;
+            }
+            levels.addLevel(i, i, item);
+        }
+        return levels;
+    }
+
+    /**
+     * @param tint 着色，0 表示保持原色
+     */
+    @Nullable
+    public Drawable get(@NonNull Context context, @DrawableRes int resId, int widthPx, int heightPx, int tint) {
+        Bitmap bitmap;
+        synchronized (this) {
+            mLookupKey.set(resId, widthPx, heightPx, tint);
+            bitmap = mBitmaps.get(mLookupKey);
+        }
+        if (bitmap == null) {
+            bitmap = rasterize(context, resId, widthPx, heightPx, tint);
+            if (bitmap == null) {
+                return null;
+            }
+            synchronized (this) {
+                Key key = new Key();
+                key.set(resId, widthPx, heightPx, tint);
+                Bitmap previous = mBitmaps.put(key, bitmap);
+                if (previous != null) {
+                    mBytes -= previous.getByteCount();
+                }
+                mBytes += bitmap.getByteCount();
+                trimToSize(MAX_BYTES);
+            }
+        }
+        BitmapDrawable drawable = new BitmapDrawable(context.getResources(), bitmap);
+        drawable.setBounds(0, 0, widthPx, heightPx);
+        return drawable;
+    }
+
+    public synchronized void clear() {
+        mBitmaps.clear();
+        mIntrinsicSizes.clear();
+        mBytes = 0;
+    }
+
+    @Nullable
+    private static Bitmap rasterize(Context context, int resId, int width, int height, int tint) {
+        Drawable source;
+        try {
+            source = AppCompatResources.getDrawable(context, resId);
+        } catch (Resources.NotFoundException e) {
+            return null;
+        }
+        if (source == null || width <= 0 || height <= 0) {
+            return null;
+        }
+        source = source.mutate();
+        if (tint != 0) {
+            source.setTint(tint);
+        }
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        source.setBounds(0, 0, width, height);
+        source.draw(new Canvas(bitmap));
+        return bitmap;
+    }
+
+    private void trimToSize(int maxBytes) {
+        Iterator<Map.Entry<Key, Bitmap>> it = mBitmaps.entrySet().iterator();
+        while (mBytes > maxBytes && it.hasNext()) {
+            mBytes -= it.next().getValue().getByteCount();
+            it.remove();
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        synchronized (this) {
+            if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+                mBitmaps.clear();
+                mBytes = 0;
+            } else if (level >= TRIM_MEMORY_UI_HIDDEN || level == TRIM_MEMORY_RUNNING_LOW) {
+                // Bitmaps still referenced by visible views stay alive; only the cache lets go
+                trimToSize(mBytes / 2);
+            }
+        }
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+        // Bitmaps are keyed by pixel size and stay valid; intrinsic sizes are per density
+        synchronized (this) {
+            if (newConfig.densityDpi != mSizesDensity) {
+                mIntrinsicSizes.clear();
+                mSizesDensity = newConfig.densityDpi;
+            }
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    private static final class Key {
+        int resId;
+        int width;
+        int height;
+        int tint;
+
+        void set(int resId, int width, int height, int tint) {
+            this.resId = resId;
+            this.width = width;
+            this.height = height;
+            this.tint = tint;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return resId == other.resId && width == other.width && height == other.height && tint == other.tint;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = resId;
+            result = 31 * result + width;
+            result = 31 * result + height;
+            return 31 * result + tint;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.webuild.statusbar.ui;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.wifi.WifiManager;
+import android.os.Build;
+import android.os.Looper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.CompoundButton;
+import android.widget.Switch;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AlertDialog;
+
+import com.webuild.statusbar.R;
+import com.webuild.statusbar.state.StatusWord;
+import com.webuild.statusbar.ui.observers.NetworkObserver;
+
+/**
+ * 网络信息对话框
+ * 每个窗口只创建一次内容视图和 AlertDialog 并复用，可在主线程空闲时预先创建。
+ * 显示的内容全部来自 {@link NetworkObserver} 的缓存，点击到显示之间没有跨进程调用；
+ * 显示期间订阅 NetworkObserver，网络变化时实时刷新。只能在主线程调用。
+ */
+final class NetworkInfoDialog implements NetworkObserver.Listener {
+    private final Context mContext;
+    private final NetworkObserver mObserver;
+    private AlertDialog mDialog;
+    private TextView mTypeText;
+    private TextView mWifiText;
+    private Switch mWifiSwitch;
+    private boolean mPrefetchQueued;
+    // Set while the switch is updated from cached state, so the change listener ignores it
+    private boolean mBinding;
+    // Transport in the high 32 bits, signal level in the low 32 bits, written together
+    private volatile long mPendingState;
+    private final FrameDispatcher.Target mFrameTarget = () -> {
+        long state = mPendingState;
+        bind((int) (state >> 32), (int) state);
+    };
+
+    /**
+     * 取 anchor 所在窗口的对话框，没有时创建（不会立即加载布局）
+     */
+    static NetworkInfoDialog obtain(View anchor) {
+        View root = anchor.getRootView();
+        Object tag = root.getTag(R.id.sdk_network_dialog);
+        if (tag instanceof NetworkInfoDialog) {
+            return (NetworkInfoDialog) tag;
+        }
+        NetworkInfoDialog dialog = new NetworkInfoDialog(anchor.getContext());
+        root.setTag(R.id.sdk_network_dialog, dialog);
+        return dialog;
+    }
+
+    /**
+     * 取 anchor 所在窗口已有的对话框，没有时返回 null
+     */
+    static NetworkInfoDialog peek(View anchor) {
+        Object tag = anchor.getRootView().getTag(R.id.sdk_network_dialog);
+        return tag instanceof NetworkInfoDialog ? (NetworkInfoDialog) tag : null;
+    }
+
+    private NetworkInfoDialog(Context context) {
+        mContext = context;
+        mObserver = NetworkObserver.getInstance(context);
+    }
+
+    /**
+     * 在主线程空闲时加载布局并创建对话框，之后点击只需 show
+     */
+    void prefetch() {
+        if (mDialog != null || mPrefetchQueued) {
+            return;
+        }
+        mPrefetchQueued = true;
+        Looper.myQueue().addIdleHandler(() -> {
+            mPrefetchQueued = false;
+            ensureCreated();
+            return false;
+        });
+    }
+
+    void show() {
+        ensureCreated();
+        bind(mObserver.getTransport(), mObserver.getSignalLevel());
+        if (!mDialog.isShowing()) {
+            mObserver.addObserver(this);
+            mDialog.show();
+        }
+    }
+
+    void dismiss() {
+        if (mDialog != null && mDialog.isShowing()) {
+            mDialog.dismiss();
+        }
+    }
+
+    @Override
+    public void onNetworkStateChanged(int transport, int signalLevel) {
+        mPendingState = ((long) transport << 32) | (signalLevel & 0xFFFFFFFFL);
+        FrameDispatcher.getInstance().requestFrame(mFrameTarget);
+    }
+
+    @Override
+    public void onWifiDetailsChanged() {
+        onNetworkStateChanged(mObserver.getTransport(), mObserver.getSignalLevel());
+    }
+
+    private void ensureCreated() {
+        if (mDialog != null) {
+            return;
+        }
+        View content = LayoutInflater.from(mContext).inflate(R.layout.dialog_network_info, null);
+        mTypeText = content.findViewById(R.id.tv_network_type);
+        mWifiText = content.findViewById(R.id.tv_wifi_info);
+        mWifiSwitch = content.findViewById(R.id.sw_wifi_toggle);
+        mWifiSwitch.setOnCheckedChangeListener(this::onWifiSwitchChanged);
+        mDialog = new AlertDialog.Builder(mContext)
+                .setTitle("网络状态")
+                .setView(content)
+                .setPositiveButton("关闭", (d, w) -> d.dismiss())
+                .create();
+        mDialog.setOnDismissListener(d -> {
+            mObserver.removeObserver(this);
+            FrameDispatcher.getInstance().cancel(mFrameTarget);
+        });
+    }
+
+    private void bind(int transport, int signalLevel) {
+        if (mDialog == null) {
+            return;
+        }
+        String type;
+        switch (transport) {
+            case StatusWord.TRANSPORT_ETHERNET:
+                type = "以太网";
+                break;
+            case StatusWord.TRANSPORT_WIFI:
+                type = "Wi‑Fi";
+                break;
+            case StatusWord.TRANSPORT_CELLULAR:
+                type = "蜂窝";
+                break;
+            default:
+                type = "未连接";
+                break;
+        }
+        mTypeText.setText("网络类型：" + type);
+
+        boolean wifiEnabled = mObserver.isWifiEnabled();
+        String wifiInfoText = "Wi‑Fi：";
+        if (transport == StatusWord.TRANSPORT_WIFI) {
+            String ssid = mObserver.getWifiSsid();
+            wifiInfoText += "已连接 " + (ssid != null ? ssid : "") + "，强度 " + signalLevel + "/5";
+        } else {
+            wifiInfoText += wifiEnabled ? "未连接" : "已关闭";
+        }
+        mWifiText.setText(wifiInfoText);
+
+        mBinding = true;
+        mWifiSwitch.setChecked(wifiEnabled);
+        mBinding = false;
+    }
+
+    private void onWifiSwitchChanged(CompoundButton buttonView, boolean isChecked) {
+        if (mBinding) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            // Apps can no longer toggle Wi-Fi; open the system panel and leave the switch on the real state
+            Intent intent = new Intent(android.provider.Settings.Panel.ACTION_WIFI);
+            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+            try {
+                mContext.startActivity(intent);
+            } catch (Exception e) {
+            }
+            mBinding = true;
+            buttonView.setChecked(mObserver.isWifiEnabled());
+            mBinding = false;
+        } else {
+            WifiManager wifiManager = (WifiManager) mContext.getApplicationContext().getSystemService(Context.WIFI_SERVICE);
+            if (wifiManager == null) return;
+            try {
+                wifiManager.setWifiEnabled(isChecked);
+            } catch (SecurityException se) {
+            }
+        }
+    }
+}
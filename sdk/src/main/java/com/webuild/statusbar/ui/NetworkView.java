@@ -1,30 +1,42 @@
 package com.webuild.statusbar.ui;
 
 import android.content.Context;
-import android.content.Intent;
-import android.net.ConnectivityManager;
-import android.net.Network;
-import android.net.NetworkCapabilities;
-import android.net.wifi.WifiInfo;
-import android.net.wifi.WifiManager;
-import android.os.Build;
+import android.content.res.Configuration;
 import android.util.AttributeSet;
-import android.view.LayoutInflater;
-import android.view.View;
 import android.widget.ImageView;
-import android.widget.Switch;
-import android.widget.TextView;
 
 import androidx.appcompat.widget.AppCompatImageView;
 
+import com.webuild.statusbar.R;
+import com.webuild.statusbar.metrics.StatusMetrics;
+import com.webuild.statusbar.state.StatusSnapshot;
+import com.webuild.statusbar.state.StatusWord;
 import com.webuild.statusbar.ui.observers.NetworkObserver;
 
 /**
  * 网络状态显示控件
  * 显示WiFi、以太网、移动网络等状态
  */
-public class NetworkView extends AppCompatImageView implements NetworkObserver.Listener {
+public class NetworkView extends AppCompatImageView implements NetworkObserver.Listener, StatusSlot {
+    // Wi-Fi icon for each signal level 0-4
+    private static final int[] WIFI_LEVEL_ICONS = {
+            R.drawable.ic_wifi_weak, R.drawable.ic_wifi_low, R.drawable.ic_wifi_medium,
+            R.drawable.ic_wifi_high, R.drawable.ic_wifi_full};
+
     private boolean clickEnabled = false;
+    private boolean mReserveSpace;
+    // Largest fitted icon size over all transports, computed on first reserved measure
+    private int mReservedWidth = -1;
+    private int mReservedHeight;
+    private StatusBarView mHost;
+    private int mTransport = StatusWord.TRANSPORT_UNKNOWN;
+    // Transport in the high 32 bits, signal level in the low 32 bits, written together
+    private volatile long mPendingState;
+    private final FrameDispatcher.Target mFrameTarget = () -> {
+        long state = mPendingState;
+        changeStatusIcon((int) (state >> 32), (int) state);
+        StatusMetrics.getInstance().recordApplied(StatusSnapshot.FIELD_NETWORK);
+    };
 
     public NetworkView(Context context) {
         super(context);
@@ -53,17 +65,127 @@ public class NetworkView extends AppCompatImageView implements NetworkObserver.L
     }
 
     @Override
-    public void onNetworkStateChanged(int iconResId) {
-        post(() -> changeStatusIcon(iconResId));
+    public void onNetworkStateChanged(int transport, int signalLevel) {
+        mPendingState = ((long) transport << 32) | (signalLevel & 0xFFFFFFFFL);
+        FrameDispatcher.getInstance().requestFrame(mFrameTarget);
     }
 
-    private void changeStatusIcon(int i) {
-        if (i <= 0) {
-            setVisibility(GONE);
-        } else {
-            setImageResource(i);
+    @Override
+    public void applyStatus(StatusSnapshot snapshot, int changedFields) {
+        if ((changedFields & StatusSnapshot.FIELD_NETWORK) != 0 && snapshot.hasNetwork()) {
+            changeStatusIcon(snapshot.transport, snapshot.signalLevel);
+        }
+    }
+
+    /**
+     * 每种网络类型一个等级图标，只在类型变化时更换 Drawable，信号变化只调用 setImageLevel
+     */
+    private void changeStatusIcon(int transport, int signalLevel) {
+        if (transport != mTransport) {
+            mTransport = transport;
+            android.graphics.drawable.Drawable icon = iconFor(getContext(), transport);
+            if (icon == null) {
+                setImageDrawable(null);
+                setVisibility(mReserveSpace ? INVISIBLE : GONE);
+                return;
+            }
+            setImageDrawable(icon);
             setVisibility(VISIBLE);
         }
+        if (transport == StatusWord.TRANSPORT_WIFI) {
+            setImageLevel(wifiLevel(signalLevel));
+        }
+    }
+
+    /**
+     * 网络类型对应的图标，Wi-Fi 为按格数切换的等级图标，未连接时返回 null
+     */
+    static android.graphics.drawable.Drawable iconFor(Context context, int transport) {
+        IconCache cache = IconCache.getInstance(context);
+        switch (transport) {
+            case StatusWord.TRANSPORT_WIFI:
+                return cache.getLevels(context, 1f, WIFI_LEVEL_ICONS);
+            case StatusWord.TRANSPORT_ETHERNET:
+                return cache.get(context, R.drawable.ic_status_ethernet, 1f);
+            case StatusWord.TRANSPORT_CELLULAR:
+                return cache.get(context, R.drawable.ic_status_cellular, 1f);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 开启后按所有网络类型中最大的图标固定控件尺寸，未连接时改为 INVISIBLE 并保留位置，
+     * 网络类型切换和显示/隐藏都不会改变控件大小
+     */
+    public void setReserveSpace(boolean reserve) {
+        if (reserve == mReserveSpace) {
+            return;
+        }
+        mReserveSpace = reserve;
+        if (getVisibility() != VISIBLE) {
+            setVisibility(reserve ? INVISIBLE : GONE);
+        }
+        requestLayout();
+    }
+
+    public boolean isReserveSpace() {
+        return mReserveSpace;
+    }
+
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        // The density may have changed; every pixel size below was taken at the old one
+        setMaxHeight(dpToPx(30));
+        mReservedWidth = -1;
+        if (getDrawable() != null) {
+            int level = getDrawable().getLevel();
+            int transport = mTransport;
+            mTransport = StatusWord.TRANSPORT_UNKNOWN;
+            changeStatusIcon(transport, level);
+        }
+        requestLayout();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        if (!mReserveSpace) {
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+            return;
+        }
+        if (mReservedWidth < 0) {
+            computeReservedSize();
+        }
+        int width = mReservedWidth + getPaddingLeft() + getPaddingRight();
+        int height = mReservedHeight + getPaddingTop() + getPaddingBottom();
+        setMeasuredDimension(resolveSize(width, widthMeasureSpec), resolveSize(height, heightMeasureSpec));
+    }
+
+    // Same fit as adjustViewBounds + maxHeight, taken over every icon this view can show
+    private void computeReservedSize() {
+        int maxHeight = dpToPx(30);
+        int[] transports = {StatusWord.TRANSPORT_WIFI, StatusWord.TRANSPORT_ETHERNET, StatusWord.TRANSPORT_CELLULAR};
+        mReservedWidth = 0;
+        mReservedHeight = 0;
+        for (int transport : transports) {
+            android.graphics.drawable.Drawable icon = iconFor(getContext(), transport);
+            if (icon == null) {
+                continue;
+            }
+            int width = icon.getIntrinsicWidth();
+            int height = icon.getIntrinsicHeight();
+            if (height > maxHeight) {
+                width = Math.round(width * (float) maxHeight / height);
+                height = maxHeight;
+            }
+            mReservedWidth = Math.max(mReservedWidth, width);
+            mReservedHeight = Math.max(mReservedHeight, height);
+        }
+    }
+
+    static int wifiLevel(int signalLevel) {
+        return Math.max(0, Math.min(WIFI_LEVEL_ICONS.length - 1, signalLevel));
     }
 
     private int dpToPx(int dp) {
@@ -74,80 +196,43 @@ public class NetworkView extends AppCompatImageView implements NetworkObserver.L
     public void setClickEnabled(boolean enabled) {
         this.clickEnabled = enabled;
         setClickable(enabled);
+        if (enabled && isAttachedToWindow()) {
+            NetworkInfoDialog.obtain(this).prefetch();
+        }
     }
 
     private void showNetworkDialog() {
-        Context ctx = getContext();
-        LayoutInflater inflater = LayoutInflater.from(ctx);
-        View content = inflater.inflate(com.webuild.statusbar.R.layout.dialog_network_info, null);
-        TextView tvType = content.findViewById(com.webuild.statusbar.R.id.tv_network_type);
-        TextView tvWifi = content.findViewById(com.webuild.statusbar.R.id.tv_wifi_info);
-        Switch swWifi = content.findViewById(com.webuild.statusbar.R.id.sw_wifi_toggle);
-
-        ConnectivityManager cm = (ConnectivityManager) ctx.getSystemService(android.content.Context.CONNECTIVITY_SERVICE);
-        WifiManager wifiManager = (WifiManager) ctx.getApplicationContext().getSystemService(android.content.Context.WIFI_SERVICE);
-        Network active = cm != null ? cm.getActiveNetwork() : null;
-        NetworkCapabilities caps = cm != null ? cm.getNetworkCapabilities(active) : null;
-        boolean wifiEnabled = wifiManager != null && wifiManager.isWifiEnabled();
-        boolean wifiTransport = caps != null && caps.hasTransport(NetworkCapabilities.TRANSPORT_WIFI);
-        boolean ethernet = caps != null && caps.hasTransport(NetworkCapabilities.TRANSPORT_ETHERNET);
-        boolean cellular = caps != null && caps.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR);
-
-        String type = ethernet ? "以太网" : (wifiTransport ? "Wi‑Fi" : (cellular ? "蜂窝" : "未连接"));
-        tvType.setText("网络类型：" + type);
-
-        String wifiInfoText = "Wi‑Fi：";
-        if (wifiManager != null) {
-            WifiInfo wifiInfo = wifiManager.getConnectionInfo();
-            if (wifiInfo != null && wifiInfo.getNetworkId() != -1) {
-                int rssi = wifiInfo.getRssi();
-                int level = WifiManager.calculateSignalLevel(rssi, 5);
-                String ssid = wifiInfo.getSSID();
-                wifiInfoText += "已连接 " + ssid + "，强度 " + level + "/5";
-            } else {
-                wifiInfoText += wifiEnabled ? "未连接" : "已关闭";
-            }
-        } else {
-            wifiInfoText += "不可用";
-        }
-        tvWifi.setText(wifiInfoText);
-
-        swWifi.setChecked(wifiEnabled);
-        swWifi.setOnCheckedChangeListener((buttonView, isChecked) -> {
-            if (wifiManager == null) return;
-            if (Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.Q) {
-                Intent intent = new Intent(android.provider.Settings.Panel.ACTION_WIFI);
-                intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-                try {
-                    ctx.startActivity(intent);
-                } catch (Exception e) {
-                }
-                buttonView.setChecked(wifiManager.isWifiEnabled());
-            } else {
-                try {
-                    wifiManager.setWifiEnabled(isChecked);
-                } catch (SecurityException se) {
-                }
-            }
-        });
-
-        androidx.appcompat.app.AlertDialog dialog = new androidx.appcompat.app.AlertDialog.Builder(ctx)
-                .setTitle("网络状态")
-                .setView(content)
-                .setPositiveButton("关闭", (d, w) -> d.dismiss())
-                .create();
-        dialog.show();
+        NetworkInfoDialog.obtain(this).show();
     }
 
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
-        NetworkObserver.getInstance(getContext()).addObserver(this);
+        mHost = StatusBarView.findHost(this);
+        if (mHost != null) {
+            mHost.attachSlot(this);
+        } else {
+            NetworkObserver.getInstance(getContext()).addObserver(this);
+        }
+        if (clickEnabled) {
+            // Build the dialog while the main thread is idle, so the tap only has to show it
+            NetworkInfoDialog.obtain(this).prefetch();
+        }
     }
 
     @Override
     protected void onDetachedFromWindow() {
-        NetworkObserver.getInstance(getContext()).removeObserver(this);
+        NetworkInfoDialog dialog = NetworkInfoDialog.peek(this);
+        if (dialog != null) {
+            dialog.dismiss();
+        }
+        if (mHost != null) {
+            mHost.detachSlot(this);
+            mHost = null;
+        } else {
+            NetworkObserver.getInstance(getContext()).removeObserver(this);
+            FrameDispatcher.getInstance().cancel(mFrameTarget);
+        }
         super.onDetachedFromWindow();
     }
 }
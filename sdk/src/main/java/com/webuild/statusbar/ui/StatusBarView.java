@@ -1,19 +1,64 @@
 package com.webuild.statusbar.ui;
 
 import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Canvas;
+import android.graphics.Rect;
 import android.util.AttributeSet;
+import android.view.KeyEvent;
 import android.view.MotionEvent;
+import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.view.ViewTreeObserver;
 import android.widget.FrameLayout;
 
+import androidx.annotation.Nullable;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
+import com.webuild.statusbar.metrics.StatusMetrics;
+import com.webuild.statusbar.state.StatusSnapshot;
+import com.webuild.statusbar.ui.observers.StatusHub;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class StatusBarView extends FrameLayout {
     private boolean interceptTouch = false;
     private int fallbackHeight = -1;
     private int fixedHeightPx = 0;
     private boolean useSystemInsets = true;
+    // Non-null in flat mode, where this view draws every slot itself and has no children
+    private FlatStatusRenderer mFlat;
+    // Reserved-slot mode: child layout requests stop here while this view's own size is fixed
+    private boolean mReservedSlots;
+    private boolean mLocalLayoutPending;
+    private final ViewTreeObserver.OnPreDrawListener mLocalLayout = this::layoutLocally;
+
+    // 子控件共享同一个 StatusHub 订阅，每帧最多应用一次
+    private final ArrayList<StatusSlot> mSlots = new ArrayList<>();
+    private final AtomicInteger mPendingFields = new AtomicInteger();
+    private volatile StatusSnapshot mPendingSnapshot = StatusSnapshot.EMPTY;
+    private final StatusHub.Listener mHubListener = (snapshot, changedFields) -> {
+        mPendingSnapshot = snapshot;
+        int prev;
+        do {
+            prev = mPendingFields.get();
+        } while (!mPendingFields.compareAndSet(prev, prev | changedFields));
+        FrameDispatcher.getInstance().requestFrame(this.mFrameTarget);
+    };
+    private final FrameDispatcher.Target mFrameTarget = () -> {
+        int changed = mPendingFields.getAndSet(0);
+        if (changed == 0) {
+            return;
+        }
+        StatusSnapshot snapshot = mPendingSnapshot;
+        for (int i = 0; i < mSlots.size(); i++) {
+            mSlots.get(i).applyStatus(snapshot, changed);
+        }
+        StatusMetrics.getInstance().recordApplied(changed);
+    };
 
     public StatusBarView(Context context) {
         super(context);
@@ -56,12 +101,180 @@ public class StatusBarView extends FrameLayout {
         });
     }
 
+    /**
+     * 开启扁平模式：移除所有子控件，时间、标题、蓝牙、网络、电池由本控件直接绘制，
+     * 通过 {@link #getFlatRenderer()} 设置各槽位；各槽位以虚拟节点的形式提供给无障碍服务
+     */
+    public void setFlatRendering(boolean flat) {
+        if (flat == (mFlat != null)) {
+            return;
+        }
+        if (flat) {
+            removeAllViews();
+            mFlat = new FlatStatusRenderer(this);
+            ViewCompat.setAccessibilityDelegate(this, mFlat.getAccessibilityHelper());
+            setWillNotDraw(false);
+            if (isAttachedToWindow()) {
+                mFlat.onAttached();
+            }
+        } else {
+            if (isAttachedToWindow()) {
+                mFlat.onDetached();
+            }
+            mFlat = null;
+            ViewCompat.setAccessibilityDelegate(this, null);
+            invalidate();
+        }
+    }
+
+    public boolean isFlatRendering() {
+        return mFlat != null;
+    }
+
+    /**
+     * 扁平模式下的渲染器，非扁平模式返回 null
+     */
+    @Nullable
+    public FlatStatusRenderer getFlatRenderer() {
+        return mFlat;
+    }
+
+    /**
+     * 开启预留槽位模式，配合各控件的 setReserveSpace / setFixedWidthDigits 使用，槽位尺寸固定，状态变化只重绘。
+     * 本控件的宽度随父容器、高度由 insets 决定，都与内容无关，因此子控件仍然发起的 requestLayout（如更换电池图标）
+     * 在本控件内部完成 measure/layout，不再传给 DecorView，也不会触发内容区的 padding 更新；
+     * 只有本控件自身高度需要变化时才向上请求布局
+     */
+    public void setReservedSlots(boolean reserved) {
+        mReservedSlots = reserved;
+    }
+
+    public boolean isReservedSlots() {
+        return mReservedSlots;
+    }
+
+    @Override
+    public void requestLayout() {
+        if (mReservedSlots && isSizeFixed()) {
+            // A pending full pass reaches the children anyway
+            if (!isLayoutRequested() && !mLocalLayoutPending) {
+                mLocalLayoutPending = true;
+                getViewTreeObserver().addOnPreDrawListener(mLocalLayout);
+                // Makes sure a traversal is scheduled to run the listener
+                invalidate();
+            }
+            return;
+        }
+        super.requestLayout();
+    }
+
+    // Laid out at the size the parent will keep giving us, whatever the children want
+    private boolean isSizeFixed() {
+        ViewGroup.LayoutParams lp = getLayoutParams();
+        return isAttachedToWindow() && isLaidOut() && lp != null
+                && lp.width == ViewGroup.LayoutParams.MATCH_PARENT && lp.height == getHeight();
+    }
+
+    // Pre-draw of the same traversal, after the window's layout pass and before anything draws
+    private boolean layoutLocally() {
+        getViewTreeObserver().removeOnPreDrawListener(mLocalLayout);
+        mLocalLayoutPending = false;
+        if (!isAttachedToWindow() || isLayoutRequested()) {
+            return true;
+        }
+        if (!mReservedSlots || !isSizeFixed()) {
+            super.requestLayout();
+            return true;
+        }
+        forceLayout();
+        measure(MeasureSpec.makeMeasureSpec(getWidth(), MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(getHeight(), MeasureSpec.EXACTLY));
+        layout(getLeft(), getTop(), getRight(), getBottom());
+        return true;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (mFlat != null) {
+            mFlat.draw(canvas);
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        if (mFlat != null) {
+            mFlat.onSizeChanged();
+        }
+    }
+
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        if (mFlat != null) {
+            mFlat.onConfigurationChanged();
+        }
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        if (mFlat != null) {
+            mFlat.syncClock();
+        }
+    }
+
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
+        StatusHub.getInstance(getContext()).addObserver(mHubListener);
+        if (mFlat != null) {
+            mFlat.onAttached();
+        }
         ViewCompat.requestApplyInsets(this);
     }
 
+    @Override
+    protected void onDetachedFromWindow() {
+        if (mFlat != null) {
+            mFlat.onDetached();
+        }
+        StatusHub.getInstance(getContext()).removeObserver(mHubListener);
+        FrameDispatcher.getInstance().cancel(mFrameTarget);
+        if (mLocalLayoutPending) {
+            mLocalLayoutPending = false;
+            getViewTreeObserver().removeOnPreDrawListener(mLocalLayout);
+        }
+        mPendingFields.set(0);
+        super.onDetachedFromWindow();
+    }
+
+    /**
+     * 查找承载该控件的 StatusBarView，不在状态栏内时返回 null
+     */
+    static StatusBarView findHost(View view) {
+        ViewParent parent = view.getParent();
+        while (parent instanceof View) {
+            if (parent instanceof StatusBarView) {
+                return (StatusBarView) parent;
+            }
+            parent = parent.getParent();
+        }
+        return null;
+    }
+
+    void attachSlot(StatusSlot slot) {
+        if (!mSlots.contains(slot)) {
+            mSlots.add(slot);
+            slot.applyStatus(StatusHub.getInstance(getContext()).getSnapshot(), StatusSnapshot.FIELD_ALL);
+        }
+    }
+
+    void detachSlot(StatusSlot slot) {
+        mSlots.remove(slot);
+    }
+
     public void setInterceptTouch(boolean intercept) {
         this.interceptTouch = intercept;
         setClickable(intercept);
@@ -74,9 +287,37 @@ public class StatusBarView extends FrameLayout {
 
     @Override
     public boolean onTouchEvent(MotionEvent event) {
+        if (mFlat != null && mFlat.onTouchEvent(event)) {
+            return true;
+        }
         return interceptTouch;
     }
 
+    // Flat mode: explore-by-touch and keyboard navigation over the virtual slot nodes
+    @Override
+    protected boolean dispatchHoverEvent(MotionEvent event) {
+        if (mFlat != null && mFlat.getAccessibilityHelper().dispatchHoverEvent(event)) {
+            return true;
+        }
+        return super.dispatchHoverEvent(event);
+    }
+
+    @Override
+    public boolean dispatchKeyEvent(KeyEvent event) {
+        if (mFlat != null && mFlat.getAccessibilityHelper().dispatchKeyEvent(event)) {
+            return true;
+        }
+        return super.dispatchKeyEvent(event);
+    }
+
+    @Override
+    protected void onFocusChanged(boolean gainFocus, int direction, @Nullable Rect previouslyFocusedRect) {
+        super.onFocusChanged(gainFocus, direction, previouslyFocusedRect);
+        if (mFlat != null) {
+            mFlat.getAccessibilityHelper().onFocusChanged(gainFocus, direction, previouslyFocusedRect);
+        }
+    }
+
     public void setFixedHeightPx(int px) {
         this.fixedHeightPx = Math.max(0, px);
         ViewCompat.requestApplyInsets(this);
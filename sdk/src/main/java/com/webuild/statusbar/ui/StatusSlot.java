@@ -0,0 +1,14 @@
+package com.webuild.statusbar.ui;
+
+import com.webuild.statusbar.state.StatusSnapshot;
+
+/**
+ * 由 {@link StatusBarView} 统一驱动的子控件
+ * 位于 StatusBarView 内时不再各自订阅观察者，而是在主线程接收合并后的快照。
+ */
+interface StatusSlot {
+    /**
+     * @param changedFields StatusSnapshot.FIELD_* 组合，只需处理自己关心的字段
+     */
+    void applyStatus(StatusSnapshot snapshot, int changedFields);
+}
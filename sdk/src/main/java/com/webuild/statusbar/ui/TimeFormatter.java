@@ -0,0 +1,223 @@
+package com.webuild.statusbar.ui;
+
+import android.content.Context;
+import android.content.res.Configuration;
+
+import com.webuild.statusbar.R;
+
+import java.text.DateFormatSymbols;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 进程内共享的时间格式化器
+ * 把当前时间按 wb_time_format_* 资源中的模式写入复用的 char[]，使用查表生成数字，不产生对象。
+ * 同一分钟（秒模式下为同一秒）、同一模式只格式化一次，所有 TimeView 直接复用结果。
+ * 支持的模式字符：H/HH、h/hh、k/kk、K/KK、m/mm、s/ss、a，以及单引号包围的文字。
+ * 除 {@link #invalidate()} 外只能在主线程调用。
+ */
+public final class TimeFormatter {
+    public static final int MAX_LENGTH = 32;
+
+    private static final long SECOND_MS = 1000L;
+    private static final long MINUTE_MS = 60_000L;
+    private static final long DAY_MS = 86_400_000L;
+    private static final int[] PATTERN_RES = {
+            R.string.wb_time_format_12, R.string.wb_time_format_24,
+            R.string.wb_time_format_12_seconds, R.string.wb_time_format_24_seconds};
+
+    private static final char[] DIGIT_TENS = (
+            "0000000000" + "1111111111" + "2222222222" + "3333333333" + "4444444444"
+            + "5555555555" + "6666666666" + "7777777777" + "8888888888" + "9999999999").toCharArray();
+    private static final char[] DIGIT_ONES = (
+            "0123456789" + "0123456789" + "0123456789" + "0123456789" + "0123456789"
+            + "0123456789" + "0123456789" + "0123456789" + "0123456789" + "0123456789").toCharArray();
+
+    // Compiled pattern op codes; the low 16 bits carry the field width or the literal char
+    private static final int OP_HOUR_0_23 = 1 << 16;
+    private static final int OP_HOUR_1_12 = 2 << 16;
+    private static final int OP_HOUR_1_24 = 3 << 16;
+    private static final int OP_HOUR_0_11 = 4 << 16;
+    private static final int OP_MINUTE = 5 << 16;
+    private static final int OP_AM_PM = 6 << 16;
+    private static final int OP_SECOND = 7 << 16;
+    private static final int OP_LITERAL = 8 << 16;
+    private static final int OP_MASK = 0xFFFF0000;
+
+    private static final TimeFormatter sInstance = new TimeFormatter();
+
+    private final char[] mChars = new char[MAX_LENGTH];
+    private int mLength;
+    private final int[][] mOps = new int[PATTERN_RES.length][];
+    private Locale mLocale;
+    private String[] mAmPm;
+    private TimeZone mTimeZone;
+    private long mPeriodIndex = Long.MIN_VALUE;
+    private int mPatternIndex = -1;
+    // Bumped from any thread; the main thread compares it with the generation it last rebuilt for
+    private final AtomicInteger mGeneration = new AtomicInteger();
+    private int mSeenGeneration;
+
+    public static TimeFormatter getInstance() {
+        return sInstance;
+    }
+
+    private TimeFormatter() {}
+
+    /**
+     * 时区或系统时间被修改后调用，可在任意线程调用，下一次格式化时生效
+     */
+    public void invalidate() {
+        mGeneration.incrementAndGet();
+    }
+
+    /**
+     * 格式化当前时间，结果通过 {@link #getChars()} 和 {@link #getLength()} 读取
+     */
+    public void format(Context context, boolean is24Hour, long nowMs) {
+        format(context, is24Hour, false, nowMs);
+    }
+
+    public void format(Context context, boolean is24Hour, boolean withSeconds, long nowMs) {
+        Configuration config = context.getResources().getConfiguration();
+        @SuppressWarnings("deprecation")
+        Locale locale = config.locale;
+        int generation = mGeneration.get();
+        if (generation != mSeenGeneration || locale != mLocale && (locale == null || !locale.equals(mLocale))) {
+            mSeenGeneration = generation;
+            mLocale = locale;
+            for (int i = 0; i < mOps.length; i++) {
+                mOps[i] = null;
+            }
+            mAmPm = null;
+            mTimeZone = TimeZone.getDefault();
+            mPeriodIndex = Long.MIN_VALUE;
+        }
+        int patternIndex = (is24Hour ? 1 : 0) | (withSeconds ? 2 : 0);
+        if (mOps[patternIndex] == null) {
+            mOps[patternIndex] = compile(context.getString(PATTERN_RES[patternIndex]));
+        }
+        long periodIndex = nowMs / (withSeconds ? SECOND_MS : MINUTE_MS);
+        if (periodIndex == mPeriodIndex && patternIndex == mPatternIndex) {
+            return;
+        }
+        mPeriodIndex = periodIndex;
+        mPatternIndex = patternIndex;
+        if (mTimeZone == null) {
+            mTimeZone = TimeZone.getDefault();
+        }
+        long local = nowMs + mTimeZone.getOffset(nowMs);
+        int secondOfDay = (int) ((local % DAY_MS + DAY_MS) % DAY_MS / SECOND_MS);
+        render(mOps[patternIndex], secondOfDay / 3600, secondOfDay / 60 % 60, secondOfDay % 60);
+    }
+
+    public char[] getChars() {
+        return mChars;
+    }
+
+    public int getLength() {
+        return mLength;
+    }
+
+    private void render(int[] ops, int hour, int minute, int second) {
+        int n = 0;
+        for (int op : ops) {
+            int arg = op & ~OP_MASK;
+            switch (op & OP_MASK) {
+                case OP_HOUR_0_23:
+                    n = putNumber(hour, arg, n);
+                    break;
+                case OP_HOUR_1_12:
+                    n = putNumber(hour % 12 == 0 ? 12 : hour % 12, arg, n);
+                    break;
+                case OP_HOUR_1_24:
+                    n = putNumber(hour == 0 ? 24 : hour, arg, n);
+                    break;
+                case OP_HOUR_0_11:
+                    n = putNumber(hour % 12, arg, n);
+                    break;
+                case OP_MINUTE:
+                    n = putNumber(minute, arg, n);
+                    break;
+                case OP_SECOND:
+                    n = putNumber(second, arg, n);
+                    break;
+                case OP_AM_PM: {
+                    if (mAmPm == null) {
+                        mAmPm = DateFormatSymbols.getInstance(mLocale != null ? mLocale : Locale.getDefault()).getAmPmStrings();
+                    }
+                    String marker = mAmPm[hour < 12 ? 0 : 1];
+                    int count = Math.min(marker.length(), MAX_LENGTH - n);
+                    marker.getChars(0, count, mChars, n);
+                    n += count;
+                    break;
+                }
+                default:
+                    if (n < MAX_LENGTH) {
+                        mChars[n++] = (char) arg;
+                    }
+                    break;
+            }
+        }
+        mLength = n;
+    }
+
+    private int putNumber(int value, int width, int n) {
+        if (n + 2 > MAX_LENGTH) {
+            return n;
+        }
+        if (value >= 10 || width >= 2) {
+            mChars[n++] = DIGIT_TENS[value];
+        }
+        mChars[n++] = DIGIT_ONES[value];
+        return n;
+    }
+
+    private static int[] compile(String pattern) {
+        int[] ops = new int[pattern.length()];
+        int count = 0;
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                int end = pattern.indexOf('\'', i + 1);
+                if (end < 0) end = pattern.length();
+                if (end == i + 1) {
+                    ops[count++] = OP_LITERAL | '\'';
+                }
+                for (int j = i + 1; j < end; j++) {
+                    ops[count++] = OP_LITERAL | pattern.charAt(j);
+                }
+                i = end + 1;
+                continue;
+            }
+            int run = 1;
+            while (i + run < pattern.length() && pattern.charAt(i + run) == c) {
+                run++;
+            }
+            int op;
+            switch (c) {
+                case 'H': op = OP_HOUR_0_23; break;
+                case 'h': op = OP_HOUR_1_12; break;
+                case 'k': op = OP_HOUR_1_24; break;
+                case 'K': op = OP_HOUR_0_11; break;
+                case 'm': op = OP_MINUTE; break;
+                case 's': op = OP_SECOND; break;
+                case 'a': op = OP_AM_PM; break;
+                default: op = 0; break;
+            }
+            if (op == 0) {
+                for (int j = 0; j < run; j++) {
+                    ops[count++] = OP_LITERAL | c;
+                }
+            } else {
+                ops[count++] = op | Math.min(run, 2);
+            }
+            i += run;
+        }
+        int[] result = new int[count];
+        System.arraycopy(ops, 0, result, 0, count);
+        return result;
+    }
+}
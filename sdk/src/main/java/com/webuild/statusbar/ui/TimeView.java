@@ -3,29 +3,59 @@ package com.webuild.statusbar.ui;
 import android.content.Context;
 import android.content.res.Configuration;
 import android.graphics.Typeface;
+import android.text.TextPaint;
 import android.text.format.DateFormat;
 import android.util.AttributeSet;
 import android.util.TypedValue;
+import android.view.View;
 import androidx.appcompat.widget.AppCompatTextView;
-import com.webuild.statusbar.R;
+import com.webuild.statusbar.metrics.StatusMetrics;
+import com.webuild.statusbar.state.StatusSnapshot;
 import com.webuild.statusbar.ui.observers.TimeObserver;
 
-public class TimeView extends AppCompatTextView implements TimeObserver.Listener {
-    private int mFormatResId;
+public class TimeView extends AppCompatTextView implements TimeObserver.Listener, StatusSlot {
+    /** 跟随系统 TIME_TICK，每分钟更新一次 */
+    public static final int CLOCK_MODE_SYSTEM = 0;
+    /** 对齐整分钟翻转，不受 TIME_TICK 广播延迟影响 */
+    public static final int CLOCK_MODE_MINUTE = 1;
+    /** 显示秒，对齐整秒更新 */
+    public static final int CLOCK_MODE_SECONDS = 2;
+
+    private int mClockMode = CLOCK_MODE_SYSTEM;
+    private boolean mClockRegistered;
+    private boolean mIs24Hour = true;
+    // Owned copy of the shared formatter output; TextView keeps a reference to it after setText
+    private final char[] mTimeChars = new char[TimeFormatter.MAX_LENGTH];
+    private int mTimeLength = -1;
+    private boolean mFixedWidthDigits;
+    // Text width reserved for the widest digits at the paint it was measured with
+    private float mLockedTextWidth;
+    private float mLockedTextSize;
+    private Typeface mLockedTypeface;
+    private float mWidestDigit;
+    private StatusBarView mHost;
+    private volatile boolean mPendingIs24Hour;
+    private volatile boolean mFormatDirty;
+    private final AlignedClock.Target mClockTarget = nowMs -> updateTime();
+    private final FrameDispatcher.Target mFrameTarget = () -> {
+        if (mFormatDirty) {
+            mFormatDirty = false;
+            updateFormat(mPendingIs24Hour);
+        }
+        updateTime();
+        StatusMetrics.getInstance().recordApplied(StatusSnapshot.FIELD_TIME);
+    };
 
     public TimeView(Context context) {
         super(context);
-        this.mFormatResId = R.string.wb_time_format_24;
     }
 
     public TimeView(Context context, AttributeSet attributeSet) {
         super(context, attributeSet);
-        this.mFormatResId = R.string.wb_time_format_24;
     }
 
     public TimeView(Context context, AttributeSet attributeSet, int i) {
         super(context, attributeSet, i);
-        this.mFormatResId = R.string.wb_time_format_24;
         setTextColor(0xFF000000);
         setTextSize(TypedValue.COMPLEX_UNIT_SP, 22);
         setTypeface(getTypeface(), Typeface.BOLD);
@@ -34,41 +64,181 @@ public class TimeView extends AppCompatTextView implements TimeObserver.Listener
     @Override
     protected void onConfigurationChanged(Configuration newConfig) {
         super.onConfigurationChanged(newConfig);
+        // The locale may have changed; force a re-render even if the characters happen to match
+        mTimeLength = -1;
+        mLockedTextWidth = 0;
+        updateTime();
+    }
+
+    /**
+     * @param mode CLOCK_MODE_*
+     */
+    public void setClockMode(int mode) {
+        if (mode == mClockMode) {
+            return;
+        }
+        mClockMode = mode;
+        mLockedTextWidth = 0;
+        mClockRegistered = false;
+        AlignedClock.getInstance(getContext()).remove(mClockTarget);
+        syncClock();
         updateTime();
     }
 
+    public int getClockMode() {
+        return mClockMode;
+    }
+
+    /**
+     * 开启后使用等宽数字并按最宽数字锁定控件宽度（min == max），
+     * 时间变化时 TextView 只重绘、不再触发整个窗口的 measure/layout
+     */
+    public void setFixedWidthDigits(boolean fixed) {
+        if (fixed == mFixedWidthDigits) {
+            return;
+        }
+        mFixedWidthDigits = fixed;
+        setFontFeatureSettings(fixed ? FixedWidthText.FEATURE_TABULAR : null);
+        mLockedTextWidth = 0;
+        mLockedTextSize = 0;
+        if (fixed) {
+            lockWidth();
+        } else {
+            setMinWidth(0);
+            setMaxWidth(Integer.MAX_VALUE);
+        }
+    }
+
+    public boolean isFixedWidthDigits() {
+        return mFixedWidthDigits;
+    }
+
+    // Only grows the reservation; a format, mode or paint change starts over from zero
+    private void lockWidth() {
+        if (!mFixedWidthDigits || mTimeLength <= 0) {
+            return;
+        }
+        TextPaint paint = getPaint();
+        if (paint.getTextSize() != mLockedTextSize || paint.getTypeface() != mLockedTypeface) {
+            mLockedTextSize = paint.getTextSize();
+            mLockedTypeface = paint.getTypeface();
+            mWidestDigit = FixedWidthText.widestDigit(paint);
+            mLockedTextWidth = 0;
+        }
+        float textWidth = FixedWidthText.measure(paint, mTimeChars, mTimeLength, mWidestDigit);
+        if (textWidth > mLockedTextWidth) {
+            mLockedTextWidth = textWidth;
+            int width = getCompoundPaddingLeft() + getCompoundPaddingRight() + (int) Math.ceil(textWidth);
+            setMinWidth(width);
+            setMaxWidth(width);
+        }
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        syncClock();
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        syncClock();
+    }
+
+    // Aligned ticking runs only while this view can actually be seen
+    private void syncClock() {
+        boolean wanted = mClockMode != CLOCK_MODE_SYSTEM && isAttachedToWindow()
+                && getWindowVisibility() == VISIBLE && isShown();
+        if (wanted == mClockRegistered) {
+            return;
+        }
+        mClockRegistered = wanted;
+        if (wanted) {
+            AlignedClock.getInstance(getContext()).add(mClockTarget, mClockMode == CLOCK_MODE_SECONDS);
+            updateTime();
+        } else {
+            AlignedClock.getInstance(getContext()).remove(mClockTarget);
+        }
+    }
+
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
-        TimeObserver.getInstance(getContext()).addObserver(this);
         updateFormat(DateFormat.is24HourFormat(getContext()));
         updateTime();
+        mHost = StatusBarView.findHost(this);
+        if (mHost != null) {
+            mHost.attachSlot(this);
+        } else {
+            TimeObserver.getInstance(getContext()).addObserver(this);
+        }
+        syncClock();
     }
 
     @Override
     protected void onDetachedFromWindow() {
-        TimeObserver.getInstance(getContext()).removeObserver(this);
+        if (mClockRegistered) {
+            mClockRegistered = false;
+            AlignedClock.getInstance(getContext()).remove(mClockTarget);
+        }
+        if (mHost != null) {
+            mHost.detachSlot(this);
+            mHost = null;
+        } else {
+            TimeObserver.getInstance(getContext()).removeObserver(this);
+            FrameDispatcher.getInstance().cancel(mFrameTarget);
+        }
         super.onDetachedFromWindow();
     }
 
+    @Override
+    public void applyStatus(StatusSnapshot snapshot, int changedFields) {
+        if ((changedFields & StatusSnapshot.FIELD_TIME_FORMAT) != 0 && snapshot.hasTime()) {
+            updateFormat(snapshot.is24HourFormat);
+        }
+        if ((changedFields & StatusSnapshot.FIELD_TIME) != 0) {
+            updateTime();
+        }
+    }
+
     @Override
     public void onTimeTick() {
-        post(this::updateTime);
+        FrameDispatcher.getInstance().requestFrame(mFrameTarget);
     }
 
     @Override
     public void onTimeFormatChanged(boolean is24Hour) {
-        post(() -> {
-            updateFormat(is24Hour);
-            updateTime();
-        });
+        mPendingIs24Hour = is24Hour;
+        mFormatDirty = true;
+        FrameDispatcher.getInstance().requestFrame(mFrameTarget);
     }
 
     private void updateFormat(boolean is24Hour) {
-        this.mFormatResId = is24Hour ? R.string.wb_time_format_24 : R.string.wb_time_format_12;
+        if (is24Hour != mIs24Hour) {
+            mIs24Hour = is24Hour;
+            mLockedTextWidth = 0;
+        }
     }
 
     private void updateTime() {
-        setText(DateFormat.format(getContext().getText(this.mFormatResId), System.currentTimeMillis()));
+        TimeFormatter formatter = TimeFormatter.getInstance();
+        formatter.format(getContext(), mIs24Hour, mClockMode == CLOCK_MODE_SECONDS, System.currentTimeMillis());
+        char[] chars = formatter.getChars();
+        int length = formatter.getLength();
+        if (length == mTimeLength && regionEquals(chars, mTimeChars, length)) {
+            return;
+        }
+        System.arraycopy(chars, 0, mTimeChars, 0, length);
+        mTimeLength = length;
+        lockWidth();
+        setText(mTimeChars, 0, length);
+    }
+
+    private static boolean regionEquals(char[] a, char[] b, int length) {
+        for (int i = 0; i < length; i++) {
+            if (a[i] != b[i]) return false;
+        }
+        return true;
     }
 }
@@ -5,13 +5,24 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.os.BatteryManager;
-import android.os.Build;
 
+import com.webuild.statusbar.metrics.FlightRecorder;
+import com.webuild.statusbar.metrics.StatusMetrics;
+import com.webuild.statusbar.state.BatteryFilter;
+import com.webuild.statusbar.state.BatteryGate;
+import com.webuild.statusbar.util.ListenerRegistry;
+
+/**
+ * 电池状态观察者
+ * 原始广播经过 {@link BatteryGate}（{@link BatteryFilter} 的量化、滞回和限流）后才通知监听器。
+ */
 public class BatteryObserver extends StateObserver<BatteryObserver.Listener> {
+    private static final ListenerRegistry.IntIntNotifier<Listener> BATTERY_CHANGED =
+            (listener, charging, level) -> listener.onBatteryChanged(charging != 0, level);
     private static volatile BatteryObserver sInstance;
     private BroadcastReceiver mReceiver;
-    private boolean mLastCharging;
-    private int mLastLevel = -1;
+    // Only touched on the observer thread; outcomes carry the raw extras for the flight record
+    private final BatteryGate mGate = new BatteryGate(mScheduler, this::onOutcome);
 
     public interface Listener {
         void onBatteryChanged(boolean charging, int level);
@@ -32,6 +43,25 @@ public class BatteryObserver extends StateObserver<BatteryObserver.Listener> {
         super(context);
     }
 
+    /**
+     * 设置上报规则，进程内全局生效，可在任意线程调用
+     * @param step 量化步长（百分比），1 表示每 1% 上报一次
+     * @param maxPerMinute 每分钟最多上报次数，0 表示不限
+     */
+    public void setReportPolicy(int step, int maxPerMinute) {
+        mHandler.post(() -> {
+            mGate.getFilter().setStep(step);
+            mGate.getFilter().setMaxPerMinute(maxPerMinute);
+        });
+    }
+
+    /**
+     * @param hysteresis 退出低电量需要高出阈值的百分比，默认 {@link BatteryFilter#DEFAULT_HYSTERESIS}
+     */
+    public void setLowHysteresis(int hysteresis) {
+        mHandler.post(() -> mGate.getFilter().setHysteresis(hysteresis));
+    }
+
     @Override
     protected void onActive() {
         mReceiver = new BroadcastReceiver() {
@@ -43,11 +73,7 @@ public class BatteryObserver extends StateObserver<BatteryObserver.Listener> {
             }
         };
         IntentFilter filter = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE) {
-            mAppContext.registerReceiver(mReceiver, filter, Context.RECEIVER_NOT_EXPORTED);
-        } else {
-            mAppContext.registerReceiver(mReceiver, filter);
-        }
+        registerReceiver(mReceiver, filter);
 
         // Get initial state
         Intent sticky = mAppContext.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
@@ -59,17 +85,17 @@ public class BatteryObserver extends StateObserver<BatteryObserver.Listener> {
     @Override
     protected void onInactive() {
         if (mReceiver != null) {
-            try {
-                mAppContext.unregisterReceiver(mReceiver);
-            } catch (Exception e) {}
+            unregisterReceiver(mReceiver);
             mReceiver = null;
         }
+        // The sticky intent read in onActive supersedes anything deferred
+        mGate.cancel();
     }
 
     @Override
     protected void onNotify(Listener listener) {
-        if (mLastLevel != -1) {
-            listener.onBatteryChanged(mLastCharging, mLastLevel);
+        if (mGate.getLevel() != -1) {
+            listener.onBatteryChanged(mGate.isCharging(), mGate.getLevel());
         }
     }
 
@@ -83,11 +109,18 @@ public class BatteryObserver extends StateObserver<BatteryObserver.Listener> {
         boolean charging = (status == BatteryManager.BATTERY_STATUS_CHARGING) ||
                 (status == BatteryManager.BATTERY_STATUS_FULL) ||
                 (plugged != 0);
+        // Raw extras: level/scale in value1, status/plugged in value2
+        int raw1 = (level << 16) | (scale & 0xFFFF);
+        int raw2 = (status << 16) | (plugged & 0xFFFF);
+        recordOutcome(StatusMetrics.SOURCE_BATTERY, FlightRecorder.OUTCOME_RECEIVED, raw1, raw2);
+
+        mGate.offer(percentage, charging, raw1, raw2);
+    }
 
-        if (charging != mLastCharging || percentage != mLastLevel) {
-            mLastCharging = charging;
-            mLastLevel = percentage;
-            notifyObservers(listener -> listener.onBatteryChanged(charging, percentage));
+    private void onOutcome(int outcome, int raw1, int raw2) {
+        if (outcome == FlightRecorder.OUTCOME_DISPATCHED) {
+            notifyObservers(BATTERY_CHANGED, mGate.isCharging() ? 1 : 0, mGate.getLevel());
         }
+        recordOutcome(StatusMetrics.SOURCE_BATTERY, outcome, raw1, raw2);
     }
 }
@@ -1,22 +1,61 @@
 package com.webuild.statusbar.ui.observers;
 
+import android.bluetooth.BluetoothA2dp;
 import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothHeadset;
+import android.bluetooth.BluetoothProfile;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.os.Build;
 
-import java.lang.reflect.Method;
+import com.webuild.statusbar.metrics.FlightRecorder;
+import com.webuild.statusbar.metrics.StatusMetrics;
+import com.webuild.statusbar.state.ValueGate;
+import com.webuild.statusbar.util.ListenerRegistry;
 
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 蓝牙状态观察者
+ * 按设备记录 A2DP、HEADSET、助听器（API 29+）、LE Audio（API 33+）各 profile 的连接状态，
+ * 只由 ACTION_STATE_CHANGED 和各 profile 的 ACTION_CONNECTION_STATE_CHANGED 携带的数据增量更新，
+ * 计算状态只需读表，不使用反射，也不做跨进程查询。激活时通过 profile 代理读取一次已连接设备完成同步，
+ * 同步结果晚于某设备的连接事件到达时，以事件为准。
+ * 只统计音频 profile：仅通过 HID（键盘、鼠标）、PAN、GATT（手表、手环等 BLE 设备）连接的设备不计入，
+ * 也不会使状态变为已连接。
+ */
 public class BluetoothObserver extends StateObserver<BluetoothObserver.Listener> {
+    private static final ListenerRegistry.IntIntNotifier<Listener> STATE_CHANGED =
+            Listener::onBluetoothStateChanged;
+    // Public values of BluetoothProfile.HEARING_AID (API 29) and LE_AUDIO (API 33)
+    private static final int PROFILE_HEARING_AID = 21;
+    private static final int PROFILE_LE_AUDIO = 22;
+    private static final String ACTION_HEARING_AID_CONNECTION_STATE_CHANGED =
+            "android.bluetooth.hearingaid.profile.action.CONNECTION_STATE_CHANGED";
+    private static final String ACTION_LE_AUDIO_CONNECTION_STATE_CHANGED =
+            "android.bluetooth.action.LE_AUDIO_CONNECTION_STATE_CHANGED";
+
     private static volatile BluetoothObserver sInstance;
     private BroadcastReceiver mReceiver;
-    private int mLastState = -1;
+    // Last dispatched (state, devices)
+    private final ValueGate mGate = new ValueGate(ValueGate.pack(-1, 0));
+    // Only touched on the observer thread
+    private boolean mEnabled;
+    private int mActivation;
+    private final ArrayList<DeviceEntry> mDevices = new ArrayList<>();
+    // Count of connection events handled; written on the observer thread only, read by proxy snapshots
+    private volatile int mEventCount;
 
     public interface Listener {
-        // -1: off, 0: on/disconnected, 2: connected
-        void onBluetoothStateChanged(int state);
+        /**
+         * @param state            -1: 关闭, 0: 开启未连接, 2: 已连接
+         * @param connectedDevices 至少连接了一个音频 profile 的设备数
+         */
+        void onBluetoothStateChanged(int state, int connectedDevices);
     }
 
     public static BluetoothObserver getInstance(Context context) {
@@ -39,22 +78,29 @@ public class BluetoothObserver extends StateObserver<BluetoothObserver.Listener>
         mReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                String action = intent.getAction();
-                if (BluetoothAdapter.ACTION_STATE_CHANGED.equals(action)) {
-                    updateState();
-                } else if (BluetoothAdapter.ACTION_CONNECTION_STATE_CHANGED.equals(action)) {
-                    updateState();
-                }
+                handleIntent(intent);
+                updateState();
             }
         };
         IntentFilter filter = new IntentFilter();
         filter.addAction(BluetoothAdapter.ACTION_STATE_CHANGED);
-        filter.addAction(BluetoothAdapter.ACTION_CONNECTION_STATE_CHANGED);
+        filter.addAction(BluetoothA2dp.ACTION_CONNECTION_STATE_CHANGED);
+        filter.addAction(BluetoothHeadset.ACTION_CONNECTION_STATE_CHANGED);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            filter.addAction(ACTION_HEARING_AID_CONNECTION_STATE_CHANGED);
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            filter.addAction(ACTION_LE_AUDIO_CONNECTION_STATE_CHANGED);
+        }
+        registerReceiver(mReceiver, filter);
 
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE) {
-            mAppContext.registerReceiver(mReceiver, filter, Context.RECEIVER_NOT_EXPORTED);
-        } else {
-            mAppContext.registerReceiver(mReceiver, filter);
+        // Events were missed while inactive; start from the adapter and the profiles' current devices
+        mActivation++;
+        mDevices.clear();
+        BluetoothAdapter adapter = BluetoothAdapter.getDefaultAdapter();
+        mEnabled = adapter != null && adapter.isEnabled();
+        if (mEnabled) {
+            seedProfiles(adapter);
         }
         updateState();
     }
@@ -62,46 +108,176 @@ public class BluetoothObserver extends StateObserver<BluetoothObserver.Listener>
     @Override
     protected void onInactive() {
         if (mReceiver != null) {
-            try {
-                mAppContext.unregisterReceiver(mReceiver);
-            } catch (Exception e) {
-                // ignore
-            }
+            unregisterReceiver(mReceiver);
             mReceiver = null;
         }
     }
 
     @Override
     protected void onNotify(Listener listener) {
-        listener.onBluetoothStateChanged(mLastState);
+        int last = mGate.getValue();
+        listener.onBluetoothStateChanged(ValueGate.high(last), ValueGate.low(last));
+    }
+
+    private void handleIntent(Intent intent) {
+        String action = intent.getAction();
+        if (BluetoothAdapter.ACTION_STATE_CHANGED.equals(action)) {
+            int state = intent.getIntExtra(BluetoothAdapter.EXTRA_STATE, BluetoothAdapter.ERROR);
+            recordOutcome(StatusMetrics.SOURCE_BLUETOOTH, FlightRecorder.OUTCOME_RECEIVED, -1, state);
+            mEnabled = state == BluetoothAdapter.STATE_ON;
+            if (!mEnabled) {
+                mDevices.clear();
+            }
+            return;
+        }
+        int profile = profileForAction(action);
+        if (profile < 0) {
+            return;
+        }
+        int state = intent.getIntExtra(BluetoothProfile.EXTRA_STATE, BluetoothProfile.STATE_DISCONNECTED);
+        recordOutcome(StatusMetrics.SOURCE_BLUETOOTH, FlightRecorder.OUTCOME_RECEIVED, profile, state);
+        @SuppressWarnings("deprecation")
+        BluetoothDevice device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
+        if (device == null) {
+            return;
+        }
+        DeviceEntry entry = obtainDevice(device.getAddress());
+        // Single writer, so the non-atomic increment is safe
+        int event = mEventCount + 1;
+        mEventCount = event;
+        entry.lastEvent = event;
+        entry.setProfile(profile, state == BluetoothProfile.STATE_CONNECTED);
+    }
+
+    private static int profileForAction(String action) {
+        if (BluetoothA2dp.ACTION_CONNECTION_STATE_CHANGED.equals(action)) return BluetoothProfile.A2DP;
+        if (BluetoothHeadset.ACTION_CONNECTION_STATE_CHANGED.equals(action)) return BluetoothProfile.HEADSET;
+        if (ACTION_HEARING_AID_CONNECTION_STATE_CHANGED.equals(action)) return PROFILE_HEARING_AID;
+        if (ACTION_LE_AUDIO_CONNECTION_STATE_CHANGED.equals(action)) return PROFILE_LE_AUDIO;
+        return -1;
+    }
+
+    /**
+     * 断开的设备也保留条目（profiles 为 0），用于记录最近一次事件的序号，直到下次激活或蓝牙关闭
+     */
+    private DeviceEntry obtainDevice(String address) {
+        for (int i = 0; i < mDevices.size(); i++) {
+            DeviceEntry entry = mDevices.get(i);
+            if (entry.address.equals(address)) {
+                return entry;
+            }
+        }
+        DeviceEntry entry = new DeviceEntry(address);
+        mDevices.add(entry);
+        return entry;
+    }
+
+    private int connectedDevices() {
+        int count = 0;
+        for (int i = 0; i < mDevices.size(); i++) {
+            if (mDevices.get(i).profiles != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void seedProfiles(BluetoothAdapter adapter) {
+        int[] profiles;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            profiles = new int[]{BluetoothProfile.A2DP, BluetoothProfile.HEADSET, PROFILE_HEARING_AID, PROFILE_LE_AUDIO};
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            profiles = new int[]{BluetoothProfile.A2DP, BluetoothProfile.HEADSET, PROFILE_HEARING_AID};
+        } else {
+            profiles = new int[]{BluetoothProfile.A2DP, BluetoothProfile.HEADSET};
+        }
+        for (int profile : profiles) {
+            try {
+                // Only bind a proxy when the profile actually has a connection
+                if (adapter.getProfileConnectionState(profile) == BluetoothProfile.STATE_CONNECTED) {
+                    adapter.getProfileProxy(mAppContext, new ProxyListener(mActivation), profile);
+                }
+            } catch (SecurityException e) {
+                // BLUETOOTH_CONNECT not granted; connection events will not arrive either
+            }
+        }
+    }
+
+    /**
+     * 读取一次 profile 的已连接设备，回调在主线程
+     * 结果只对发起它的那次激活有效；读取前已处理的事件数随结果一起带回，
+     * 读取之后才处理的事件（例如断开）比这份快照新，对应设备不再被快照覆盖。
+     */
+    private final class ProxyListener implements BluetoothProfile.ServiceListener {
+        private final int mActivationId;
+
+        ProxyListener(int activation) {
+            mActivationId = activation;
+        }
+
+        @Override
+        public void onServiceConnected(int profile, BluetoothProfile proxy) {
+            // Read before the snapshot: any event handled after this is newer than the snapshot
+            int seenEvents = mEventCount;
+            String[] addresses;
+            try {
+                List<BluetoothDevice> devices = proxy.getConnectedDevices();
+                addresses = new String[devices.size()];
+                for (int i = 0; i < addresses.length; i++) {
+                    addresses[i] = devices.get(i).getAddress();
+                }
+            } catch (SecurityException e) {
+                addresses = new String[0];
+            }
+            BluetoothAdapter adapter = BluetoothAdapter.getDefaultAdapter();
+            if (adapter != null) {
+                adapter.closeProfileProxy(profile, proxy);
+            }
+            String[] connected = addresses;
+            mHandler.post(() -> {
+                if (mReceiver == null || !mEnabled || mActivationId != mActivation) {
+                    return;
+                }
+                for (String address : connected) {
+                    DeviceEntry entry = obtainDevice(address);
+                    if (entry.lastEvent <= seenEvents) {
+                        entry.setProfile(profile, true);
+                    }
+                }
+                updateState();
+            });
+        }
+
+        @Override
+        public void onServiceDisconnected(int profile) {
+        }
     }
 
     private void updateState() {
-        int newState = getBluetoothState();
-        if (newState != mLastState) {
-            mLastState = newState;
-            notifyObservers(listener -> listener.onBluetoothStateChanged(newState));
+        int devices = mEnabled ? connectedDevices() : 0;
+        int newState = !mEnabled ? -1 : (devices > 0 ? 2 : 0);
+        if (mGate.offer(ValueGate.pack(newState, devices))) {
+            notifyObservers(STATE_CHANGED, newState, devices);
+            recordOutcome(StatusMetrics.SOURCE_BLUETOOTH, FlightRecorder.OUTCOME_DISPATCHED, newState, devices);
+        } else {
+            recordOutcome(StatusMetrics.SOURCE_BLUETOOTH, FlightRecorder.OUTCOME_DROPPED, newState, devices);
         }
     }
 
-    private int getBluetoothState() {
-        BluetoothAdapter adapter = BluetoothAdapter.getDefaultAdapter();
-        if (adapter == null) return -1;
-        if (!adapter.isEnabled()) return -1;
+    private static final class DeviceEntry {
+        final String address;
+        // Bit per connected BluetoothProfile id
+        int profiles;
+        // mEventCount after this device's latest connection event, 0 if none yet
+        int lastEvent;
 
-        int connState = 0;
-        try {
-            // Using reflection as getConnectionState() might be hidden or unavailable in some SDKs
-            Method method = BluetoothAdapter.class.getMethod("getConnectionState");
-            connState = (Integer) method.invoke(adapter);
-        } catch (Exception e) {
-            // fallback
-            connState = BluetoothAdapter.STATE_DISCONNECTED;
+        DeviceEntry(String address) {
+            this.address = address;
         }
 
-        if (connState == BluetoothAdapter.STATE_CONNECTED || connState == BluetoothAdapter.STATE_CONNECTING) {
-            return 2;
+        void setProfile(int profile, boolean connected) {
+            int bit = 1 << profile;
+            profiles = connected ? profiles | bit : profiles & ~bit;
         }
-        return 0;
     }
 }
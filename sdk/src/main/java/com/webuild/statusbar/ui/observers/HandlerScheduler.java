@@ -0,0 +1,33 @@
+package com.webuild.statusbar.ui.observers;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import com.webuild.statusbar.state.Scheduler;
+
+/**
+ * 基于 Handler 的 {@link Scheduler}，时间基准为 uptime
+ */
+final class HandlerScheduler implements Scheduler {
+    private final Handler mHandler;
+
+    HandlerScheduler(Handler handler) {
+        mHandler = handler;
+    }
+
+    @Override
+    public long now() {
+        return SystemClock.uptimeMillis();
+    }
+
+    @Override
+    public void postAt(Runnable task, long atMs) {
+        mHandler.removeCallbacks(task);
+        mHandler.postAtTime(task, atMs);
+    }
+
+    @Override
+    public void cancel(Runnable task) {
+        mHandler.removeCallbacks(task);
+    }
+}
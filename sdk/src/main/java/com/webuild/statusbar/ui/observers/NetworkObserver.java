@@ -8,25 +8,63 @@ import android.net.ConnectivityManager;
 import android.net.Network;
 import android.net.NetworkCapabilities;
 import android.net.NetworkRequest;
+import android.net.TransportInfo;
 import android.net.wifi.WifiInfo;
 import android.net.wifi.WifiManager;
 import android.os.Build;
-import android.os.Handler;
-import android.os.Looper;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
 
-import com.webuild.statusbar.R;
+import com.webuild.statusbar.metrics.FlightRecorder;
+import com.webuild.statusbar.metrics.StatusMetrics;
+import com.webuild.statusbar.state.AdaptiveDebounce;
+import com.webuild.statusbar.state.NetworkGate;
+import com.webuild.statusbar.state.NetworkTable;
+import com.webuild.statusbar.state.SignalFilter;
+import com.webuild.statusbar.state.StatusWord;
+import com.webuild.statusbar.util.ListenerRegistry;
 
+import java.util.Objects;
+
+/**
+ * 网络状态观察者
+ * 按 Network 维护一张 {@link NetworkTable}，只由 onAvailable、onCapabilitiesChanged、onLost 和 RSSI 广播携带的数据更新，
+ * Wi-Fi、蜂窝、以太网可以同时在表中。防抖后的计算只查这张表，不再调用 ConnectivityManager/WifiManager。
+ * API 29 及以上 Wi-Fi 信号取自 NetworkCapabilities 的 signalStrength 或 TransportInfo。
+ * SSID 在 API 31 及以上取自带位置信息的 TransportInfo，更早的版本每个 Wi-Fi 网络在回调中查询一次，
+ * 均需要应用已获得位置权限。
+ * 信号格数经 {@link SignalFilter} 平滑和滞回；何时通知由 {@link NetworkGate} 决定：
+ * 网络类型变化立即通知，格数变化按 {@link AdaptiveDebounce} 合并。
+ */
 public class NetworkObserver extends StateObserver<NetworkObserver.Listener> {
+    private static final ListenerRegistry.IntIntNotifier<Listener> STATE_CHANGED =
+            Listener::onNetworkStateChanged;
+    private static final ListenerRegistry.Notifier<Listener> WIFI_DETAILS_CHANGED =
+            Listener::onWifiDetailsChanged;
+    private static final int INVALID_RSSI = NetworkTable.INVALID_RSSI;
     private static volatile NetworkObserver sInstance;
-    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
     private ConnectivityManager.NetworkCallback mNetworkCallback;
     private BroadcastReceiver mWifiReceiver;
-    private int mLastIconRes = -1;
+    // Networks currently satisfying the request, keyed by Network; only touched on the observer thread
+    private final NetworkTable mNetworks = new NetworkTable();
+    private final NetworkGate mGate = new NetworkGate(mNetworks, mScheduler, this::onOutcome);
+    // Details for the info dialog, published from the observer thread
+    private volatile boolean mWifiEnabled;
+    private volatile String mWifiSsid;
 
     public interface Listener {
-        void onNetworkStateChanged(int iconResId);
+        /**
+         * @param transport   StatusWord.TRANSPORT_*，TRANSPORT_NONE 表示无网络
+         * @param signalLevel 0-4，仅 Wi-Fi 有意义
+         */
+        void onNetworkStateChanged(int transport, int signalLevel);
+
+        /**
+         * Wi-Fi 开关或 SSID 变化，通过 {@link #isWifiEnabled()}、{@link #getWifiSsid()} 读取
+         */
+        default void onWifiDetailsChanged() {
+        }
     }
 
     public static NetworkObserver getInstance(Context context) {
@@ -44,6 +82,15 @@ public class NetworkObserver extends StateObserver<NetworkObserver.Listener> {
         super(context);
     }
 
+    /**
+     * 设置 Wi-Fi 信号过滤参数，进程内全局生效，可在任意线程调用
+     * @param marginDb 跨越格数边界需要超出的 dB 数，0 表示不做滞回
+     * @param smoothing 新样本的权重，(0, 1]，1 表示不平滑
+     */
+    public void setSignalFilter(int marginDb, float smoothing) {
+        mHandler.post(() -> mNetworks.setSignalFilter(marginDb, smoothing));
+    }
+
     @Override
     protected void onActive() {
         startMonitoring();
@@ -56,60 +103,197 @@ public class NetworkObserver extends StateObserver<NetworkObserver.Listener> {
 
     @Override
     protected void onNotify(Listener listener) {
-        if (mLastIconRes != -1) {
-            listener.onNetworkStateChanged(mLastIconRes);
-        } else {
-            // Calculate current state immediately if not yet cached
-            int icon = getCurrentNetworkIcon();
-            listener.onNetworkStateChanged(icon);
+        // Until the first update the table may still be filling; that update notifies everyone
+        if (mGate.getTransport() != StatusWord.TRANSPORT_UNKNOWN) {
+            listener.onNetworkStateChanged(mGate.getTransport(), mGate.getSignalLevel());
         }
     }
 
     private void startMonitoring() {
         ConnectivityManager cm = (ConnectivityManager) mAppContext.getSystemService(Context.CONNECTIVITY_SERVICE);
         if (cm != null) {
-            mNetworkCallback = new ConnectivityManager.NetworkCallback() {
-                @Override
-                public void onAvailable(@NonNull Network network) {
-                    postUpdate();
-                }
-
-                @Override
-                public void onLost(@NonNull Network network) {
-                    postUpdate();
-                }
-
-                @Override
-                public void onCapabilitiesChanged(@NonNull Network network, @NonNull NetworkCapabilities networkCapabilities) {
-                    postUpdate();
-                }
-            };
+            // From S the framework redacts the SSID from WifiInfo unless the callback asks for it
+            mNetworkCallback = Build.VERSION.SDK_INT >= Build.VERSION_CODES.S
+                    ? new Callback(ConnectivityManager.NetworkCallback.FLAG_INCLUDE_LOCATION_INFO)
+                    : new Callback();
             NetworkRequest request = new NetworkRequest.Builder()
                     .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
                     .build();
-            cm.registerNetworkCallback(request, mNetworkCallback);
+            // Registration replays onAvailable/onCapabilitiesChanged for every network already up
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                cm.registerNetworkCallback(request, mNetworkCallback, mHandler);
+            } else {
+                cm.registerNetworkCallback(request, mNetworkCallback);
+            }
         }
 
+        // Wi-Fi agents don't push every RSSI change through the capabilities; the broadcast carries it
         mWifiReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
+                if (WifiManager.WIFI_STATE_CHANGED_ACTION.equals(intent.getAction())) {
+                    // Sticky, so the current state arrives right after registration
+                    int state = intent.getIntExtra(WifiManager.EXTRA_WIFI_STATE, WifiManager.WIFI_STATE_UNKNOWN);
+                    boolean enabled = state == WifiManager.WIFI_STATE_ENABLED;
+                    if (enabled != mWifiEnabled) {
+                        mWifiEnabled = enabled;
+                        notifyObservers(WIFI_DETAILS_CHANGED);
+                    }
+                    return;
+                }
+                mNetworks.offerWifiRssi(intent.getIntExtra(WifiManager.EXTRA_NEW_RSSI, INVALID_RSSI));
                 postUpdate();
             }
         };
-        IntentFilter filter = new IntentFilter();
-        filter.addAction(WifiManager.RSSI_CHANGED_ACTION);
+        IntentFilter filter = new IntentFilter(WifiManager.RSSI_CHANGED_ACTION);
         filter.addAction(WifiManager.WIFI_STATE_CHANGED_ACTION);
-        filter.addAction(WifiManager.NETWORK_STATE_CHANGED_ACTION);
-        
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE) {
-            mAppContext.registerReceiver(mWifiReceiver, filter, Context.RECEIVER_NOT_EXPORTED);
-        } else {
-            mAppContext.registerReceiver(mWifiReceiver, filter);
+        registerReceiver(mWifiReceiver, filter);
+
+        mGate.start(NetworkGate.DEFAULT_SETTLE_MS);
+    }
+
+    // Before O callbacks arrive on a framework thread and are handed over, dropping stale ones
+    private final class Callback extends ConnectivityManager.NetworkCallback {
+        Callback() {
+        }
+
+        @RequiresApi(Build.VERSION_CODES.S)
+        Callback(int flags) {
+            super(flags);
         }
 
+        @Override
+        public void onAvailable(@NonNull Network network) {
+            if (ObserverThread.isCurrentThread()) {
+                onNetworkAvailable(network);
+            } else {
+                mHandler.post(() -> {
+                    if (mNetworkCallback == this) {
+                        onNetworkAvailable(network);
+                    }
+                });
+            }
+        }
+
+        @Override
+        public void onLost(@NonNull Network network) {
+            if (ObserverThread.isCurrentThread()) {
+                onNetworkLost(network);
+            } else {
+                mHandler.post(() -> {
+                    if (mNetworkCallback == this) {
+                        onNetworkLost(network);
+                    }
+                });
+            }
+        }
+
+        @Override
+        public void onCapabilitiesChanged(@NonNull Network network, @NonNull NetworkCapabilities networkCapabilities) {
+            if (ObserverThread.isCurrentThread()) {
+                onNetworkCapabilities(network, networkCapabilities);
+            } else {
+                mHandler.post(() -> {
+                    if (mNetworkCallback == this) {
+                        onNetworkCapabilities(network, networkCapabilities);
+                    }
+                });
+            }
+        }
+    }
+
+    private void onNetworkAvailable(Network network) {
+        NetworkTable.Entry entry = mNetworks.obtain(network);
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O && entry.transport == StatusWord.TRANSPORT_NONE) {
+            // Before O, onAvailable is not guaranteed to be followed by onCapabilitiesChanged
+            ConnectivityManager cm = (ConnectivityManager) mAppContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+            NetworkCapabilities caps = cm != null ? cm.getNetworkCapabilities(network) : null;
+            if (caps != null) {
+                updateEntry(entry, caps);
+            }
+        }
         postUpdate();
     }
 
+    private void onNetworkCapabilities(Network network, NetworkCapabilities caps) {
+        updateEntry(mNetworks.obtain(network), caps);
+        postUpdate();
+    }
+
+    private void onNetworkLost(Network network) {
+        mNetworks.remove(network);
+        postUpdate();
+    }
+
+    private void updateEntry(NetworkTable.Entry entry, NetworkCapabilities caps) {
+        if (caps.hasTransport(NetworkCapabilities.TRANSPORT_ETHERNET)) {
+            entry.transport = StatusWord.TRANSPORT_ETHERNET;
+        } else if (caps.hasTransport(NetworkCapabilities.TRANSPORT_WIFI)) {
+            entry.transport = StatusWord.TRANSPORT_WIFI;
+        } else if (caps.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR)) {
+            entry.transport = StatusWord.TRANSPORT_CELLULAR;
+        } else {
+            // VPN and other overlays are represented by their underlying networks
+            entry.transport = StatusWord.TRANSPORT_NONE;
+        }
+        entry.validated = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M
+                && caps.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED);
+        if (entry.transport != StatusWord.TRANSPORT_WIFI) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            entry.offerRssi(wifiRssiOf(caps));
+            TransportInfo info = caps.getTransportInfo();
+            if (info instanceof WifiInfo) {
+                entry.ssid = ssidOf((WifiInfo) info);
+            } else if (!entry.ssidQueried) {
+                // Before S the capabilities carry no WifiInfo; look the SSID up once per network
+                entry.ssidQueried = true;
+                WifiManager wm = (WifiManager) mAppContext.getSystemService(Context.WIFI_SERVICE);
+                WifiInfo connection = wm != null ? wm.getConnectionInfo() : null;
+                if (connection != null) {
+                    entry.ssid = ssidOf(connection);
+                }
+            }
+        } else if (entry.getRssi() == INVALID_RSSI) {
+            // Older capabilities carry no signal; seed once, then RSSI_CHANGED_ACTION keeps it current
+            WifiManager wm = (WifiManager) mAppContext.getSystemService(Context.WIFI_SERVICE);
+            WifiInfo info = wm != null ? wm.getConnectionInfo() : null;
+            if (info != null) {
+                entry.offerRssi(info.getRssi());
+                entry.ssid = ssidOf(info);
+            }
+        }
+    }
+
+    // The framework quotes SSIDs and reports "<unknown ssid>" when location access is missing
+    private static String ssidOf(WifiInfo info) {
+        String ssid = info.getSSID();
+        if (ssid == null || ssid.isEmpty() || "<unknown ssid>".equals(ssid)) {
+            return null;
+        }
+        if (ssid.length() >= 2 && ssid.charAt(0) == '"' && ssid.charAt(ssid.length() - 1) == '"') {
+            return ssid.substring(1, ssid.length() - 1);
+        }
+        return ssid;
+    }
+
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private static int wifiRssiOf(NetworkCapabilities caps) {
+        int strength = caps.getSignalStrength();
+        if (strength != NetworkCapabilities.SIGNAL_STRENGTH_UNSPECIFIED) {
+            return strength;
+        }
+        TransportInfo info = caps.getTransportInfo();
+        if (info instanceof WifiInfo) {
+            int rssi = ((WifiInfo) info).getRssi();
+            if (rssi > INVALID_RSSI) {
+                return rssi;
+            }
+        }
+        return INVALID_RSSI;
+    }
+
     private void stopMonitoring() {
         if (mNetworkCallback != null) {
             ConnectivityManager cm = (ConnectivityManager) mAppContext.getSystemService(Context.CONNECTIVITY_SERVICE);
@@ -123,66 +307,54 @@ public class NetworkObserver extends StateObserver<NetworkObserver.Listener> {
             mNetworkCallback = null;
         }
         if (mWifiReceiver != null) {
-            try {
-                mAppContext.unregisterReceiver(mWifiReceiver);
-            } catch (Exception e) {
-                // Ignore
-            }
+            unregisterReceiver(mWifiReceiver);
             mWifiReceiver = null;
         }
-        mMainHandler.removeCallbacksAndMessages(null);
+        mGate.stop();
+        // The callback replays every live network on the next registration
+        mNetworks.clear();
     }
 
     private void postUpdate() {
-        mMainHandler.removeCallbacks(mUpdateRunnable);
-        mMainHandler.postDelayed(mUpdateRunnable, 200);
+        recordOutcome(StatusMetrics.SOURCE_NETWORK, FlightRecorder.OUTCOME_RECEIVED, 0, 0);
+        mGate.post();
     }
 
-    private final Runnable mUpdateRunnable = () -> {
-        int icon = getCurrentNetworkIcon();
-        if (icon != mLastIconRes) {
-            mLastIconRes = icon;
-            notifyObservers(listener -> listener.onNetworkStateChanged(icon));
+    private void onOutcome(int outcome, int transport, int level) {
+        boolean ssidChanged = false;
+        if (outcome != FlightRecorder.OUTCOME_COALESCED) {
+            String ssid = transport == StatusWord.TRANSPORT_WIFI ? mNetworks.currentSsid() : null;
+            ssidChanged = !Objects.equals(ssid, mWifiSsid);
+            mWifiSsid = ssid;
         }
-    };
-
-    private int getCurrentNetworkIcon() {
-        ConnectivityManager cm = (ConnectivityManager) mAppContext.getSystemService(Context.CONNECTIVITY_SERVICE);
-        if (cm == null) return 0;
-
-        Network activeNetwork = cm.getActiveNetwork();
-        if (activeNetwork == null) return 0;
+        if (outcome == FlightRecorder.OUTCOME_DISPATCHED) {
+            notifyObservers(STATE_CHANGED, transport, level);
+        }
+        if (ssidChanged) {
+            notifyObservers(WIFI_DETAILS_CHANGED);
+        }
+        recordOutcome(StatusMetrics.SOURCE_NETWORK, outcome, transport, level);
+    }
 
-        NetworkCapabilities caps = cm.getNetworkCapabilities(activeNetwork);
-        if (caps == null) return 0;
+    /**
+     * Wi-Fi 开关状态，来自 WIFI_STATE_CHANGED 广播的缓存，不做跨进程查询
+     */
+    public boolean isWifiEnabled() {
+        return mWifiEnabled;
+    }
 
-        if (caps.hasTransport(NetworkCapabilities.TRANSPORT_WIFI)) {
-            return getWifiIcon();
-        } else if (caps.hasTransport(NetworkCapabilities.TRANSPORT_ETHERNET)) {
-            return R.drawable.ic_status_ethernet;
-        } else if (caps.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR)) {
-            return R.drawable.ic_status_cellular;
-        }
+    /**
+     * 当前 Wi-Fi 网络的 SSID，未连接或无权限读取时为 null
+     */
+    public String getWifiSsid() {
+        return mWifiSsid;
+    }
 
-        return 0;
+    public int getTransport() {
+        return mGate.getTransport();
     }
 
-    private int getWifiIcon() {
-        WifiManager wm = (WifiManager) mAppContext.getSystemService(Context.WIFI_SERVICE);
-        if (wm != null && wm.isWifiEnabled()) {
-            WifiInfo info = wm.getConnectionInfo();
-            int level = 0;
-            if (info != null) {
-                level = WifiManager.calculateSignalLevel(info.getRssi(), 5);
-            }
-            switch (level) {
-                case 4: return R.drawable.ic_wifi_full;
-                case 3: return R.drawable.ic_wifi_high;
-                case 2: return R.drawable.ic_wifi_medium;
-                case 1: return R.drawable.ic_wifi_low;
-                default: return R.drawable.ic_wifi_weak;
-            }
-        }
-        return 0;
+    public int getSignalLevel() {
+        return mGate.getSignalLevel();
     }
 }
@@ -0,0 +1,76 @@
+package com.webuild.statusbar.ui.observers;
+
+import android.content.Context;
+
+import com.webuild.statusbar.source.StatusSink;
+import com.webuild.statusbar.source.StatusSource;
+
+/**
+ * 基于系统观察者的默认状态源
+ * 订阅电池、网络、蓝牙、时间四个 StateObserver，把回调转成原始值上报给引擎。
+ */
+public class ObserverStatusSource implements StatusSource {
+    private final Context mAppContext;
+    private volatile StatusSink mSink;
+
+    public ObserverStatusSource(Context context) {
+        mAppContext = context.getApplicationContext();
+    }
+
+    @Override
+    public void start(StatusSink sink) {
+        mSink = sink;
+        BatteryObserver.getInstance(mAppContext).addObserver(mBatteryListener);
+        NetworkObserver.getInstance(mAppContext).addObserver(mNetworkListener);
+        BluetoothObserver.getInstance(mAppContext).addObserver(mBluetoothListener);
+        TimeObserver.getInstance(mAppContext).addObserver(mTimeListener);
+    }
+
+    @Override
+    public void stop() {
+        BatteryObserver.getInstance(mAppContext).removeObserver(mBatteryListener);
+        NetworkObserver.getInstance(mAppContext).removeObserver(mNetworkListener);
+        BluetoothObserver.getInstance(mAppContext).removeObserver(mBluetoothListener);
+        TimeObserver.getInstance(mAppContext).removeObserver(mTimeListener);
+        mSink = null;
+    }
+
+    private final BatteryObserver.Listener mBatteryListener = (charging, level) -> {
+        StatusSink sink = mSink;
+        if (sink != null) {
+            sink.onBatteryChanged(level, charging);
+        }
+    };
+
+    private final NetworkObserver.Listener mNetworkListener = (transport, signalLevel) -> {
+        StatusSink sink = mSink;
+        if (sink != null) {
+            sink.onNetworkChanged(transport, signalLevel);
+        }
+    };
+
+    private final BluetoothObserver.Listener mBluetoothListener = (state, connectedDevices) -> {
+        StatusSink sink = mSink;
+        if (sink != null) {
+            sink.onBluetoothChanged(state, connectedDevices);
+        }
+    };
+
+    private final TimeObserver.Listener mTimeListener = new TimeObserver.Listener() {
+        @Override
+        public void onTimeTick() {
+            StatusSink sink = mSink;
+            if (sink != null) {
+                sink.onTimeTick();
+            }
+        }
+
+        @Override
+        public void onTimeFormatChanged(boolean is24Hour) {
+            StatusSink sink = mSink;
+            if (sink != null) {
+                sink.onTimeFormatChanged(is24Hour);
+            }
+        }
+    };
+}
@@ -0,0 +1,42 @@
+package com.webuild.statusbar.ui.observers;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+
+/**
+ * SDK 内部的后台线程
+ * 所有广播接收器、网络回调和 ContentObserver 都在此线程注册和回调，
+ * 状态计算（包括 binder 调用）也在此完成，主线程只接收最终结果。
+ */
+public final class ObserverThread {
+    private static volatile Handler sHandler;
+
+    private ObserverThread() {}
+
+    public static Handler getHandler() {
+        if (sHandler == null) {
+            synchronized (ObserverThread.class) {
+                if (sHandler == null) {
+                    HandlerThread thread = new HandlerThread("statusbar-observer", Process.THREAD_PRIORITY_BACKGROUND);
+                    thread.start();
+                    sHandler = new Handler(thread.getLooper());
+                }
+            }
+        }
+        return sHandler;
+    }
+
+    public static Looper getLooper() {
+        return getHandler().getLooper();
+    }
+
+    public static boolean isCurrentThread() {
+        return Looper.myLooper() == getLooper();
+    }
+
+    public static void post(Runnable r) {
+        getHandler().post(r);
+    }
+}
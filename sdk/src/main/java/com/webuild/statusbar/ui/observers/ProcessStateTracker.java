@@ -0,0 +1,126 @@
+package com.webuild.statusbar.ui.observers;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.webuild.statusbar.util.ListenerRegistry;
+
+import java.util.HashSet;
+
+/**
+ * 进程前后台状态跟踪
+ * 通过 ActivityLifecycleCallbacks 统计已 start 的 Activity，全部 stop 后延迟判定为后台，
+ * 避免旋转屏幕等配置变更造成的短暂抖动。注册前已启动的 Activity 默认视为前台。
+ */
+public final class ProcessStateTracker implements Application.ActivityLifecycleCallbacks {
+    // Same grace period ProcessLifecycleOwner uses for configuration changes
+    private static final long BACKGROUND_DELAY_MS = 700;
+    private static final ListenerRegistry.IntNotifier<Listener> FOREGROUND_CHANGED =
+            (listener, foreground) -> listener.onForegroundChanged(foreground != 0);
+    private static volatile ProcessStateTracker sInstance;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ListenerRegistry<Listener> mListeners = new ListenerRegistry<>();
+    private final HashSet<Activity> mStarted = new HashSet<>();
+    private volatile boolean mForeground = true;
+
+    public interface Listener {
+        void onForegroundChanged(boolean foreground);
+    }
+
+    public static ProcessStateTracker getInstance(Context context) {
+        if (sInstance == null) {
+            synchronized (ProcessStateTracker.class) {
+                if (sInstance == null) {
+                    sInstance = new ProcessStateTracker(context);
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    private ProcessStateTracker(Context context) {
+        Context app = context.getApplicationContext();
+        if (app instanceof Application) {
+            ((Application) app).registerActivityLifecycleCallbacks(this);
+        }
+    }
+
+    public boolean isForeground() {
+        return mForeground;
+    }
+
+    public void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    private void setForeground(boolean foreground) {
+        if (mForeground != foreground) {
+            mForeground = foreground;
+            mListeners.dispatch(FOREGROUND_CHANGED, foreground ? 1 : 0);
+        }
+    }
+
+    private final Runnable mEnterBackground = () -> {
+        if (mStarted.isEmpty()) {
+            setForeground(false);
+        }
+    };
+
+    private void onVisible(Activity activity) {
+        mStarted.add(activity);
+        mMainHandler.removeCallbacks(mEnterBackground);
+        setForeground(true);
+    }
+
+    private void onHidden(Activity activity) {
+        mStarted.remove(activity);
+        if (mStarted.isEmpty()) {
+            mMainHandler.removeCallbacks(mEnterBackground);
+            mMainHandler.postDelayed(mEnterBackground, BACKGROUND_DELAY_MS);
+        }
+    }
+
+    @Override
+    public void onActivityStarted(@NonNull Activity activity) {
+        onVisible(activity);
+    }
+
+    @Override
+    public void onActivityResumed(@NonNull Activity activity) {
+        onVisible(activity);
+    }
+
+    @Override
+    public void onActivityStopped(@NonNull Activity activity) {
+        onHidden(activity);
+    }
+
+    @Override
+    public void onActivityDestroyed(@NonNull Activity activity) {
+        onHidden(activity);
+    }
+
+    @Override
+    public void onActivityCreated(@NonNull Activity activity, @Nullable Bundle savedInstanceState) {
+    }
+
+    @Override
+    public void onActivityPaused(@NonNull Activity activity) {
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(@NonNull Activity activity, @NonNull Bundle outState) {
+    }
+}
@@ -0,0 +1,158 @@
+package com.webuild.statusbar.ui.observers;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Build;
+import android.os.Handler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * 共享广播接收器
+ * 每种 action 集合只有一个系统注册，请求相同集合的接收器共用它，收到广播后直接分发给该集合的接收器。
+ * 已有的注册不会因为其他集合的加入或退出而重建，因此不会在重建间隙丢失广播，也不会重复收到粘性广播；
+ * 集合最后一个接收器退出后，注销推迟到下一条消息，同一轮里重新加入的接收器继续使用原注册。
+ * 所有方法都必须在 {@link ObserverThread} 上调用。
+ */
+public final class ReceiverHub {
+    private static final BroadcastReceiver[] NONE = new BroadcastReceiver[0];
+    private static volatile ReceiverHub sInstance;
+
+    private final Context mAppContext;
+    private final Handler mHandler = ObserverThread.getHandler();
+    // Sorted action set -> its registration
+    private final HashMap<String, Registration> mRegistrations = new HashMap<>();
+    // Source -> the registration it joined
+    private final HashMap<BroadcastReceiver, Registration> mSources = new HashMap<>();
+    private boolean mSweepPending;
+
+    public static ReceiverHub getInstance(Context context) {
+        if (sInstance == null) {
+            synchronized (ReceiverHub.class) {
+                if (sInstance == null) {
+                    sInstance = new ReceiverHub(context);
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    private ReceiverHub(Context context) {
+        mAppContext = context.getApplicationContext();
+    }
+
+    public void register(BroadcastReceiver receiver, IntentFilter filter) {
+        String[] actions = new String[filter.countActions()];
+        for (int i = 0; i < actions.length; i++) {
+            actions[i] = filter.getAction(i);
+        }
+        Arrays.sort(actions);
+        String key = keyOf(actions);
+        Registration registration = mSources.get(receiver);
+        if (registration != null) {
+            if (registration.key.equals(key)) {
+                return;
+            }
+            unregister(receiver);
+        }
+        registration = mRegistrations.get(key);
+        if (registration == null) {
+            registration = new Registration(key);
+            registration.register(actions);
+            mRegistrations.put(key, registration);
+        }
+        registration.add(receiver);
+        mSources.put(receiver, registration);
+    }
+
+    public void unregister(BroadcastReceiver receiver) {
+        Registration registration = mSources.remove(receiver);
+        if (registration != null && registration.remove(receiver)) {
+            // Sources usually (de)activate together; keep the registration if one comes straight back
+            if (!mSweepPending) {
+                mSweepPending = true;
+                mHandler.post(mSweep);
+            }
+        }
+    }
+
+    private final Runnable mSweep = () -> {
+        mSweepPending = false;
+        Iterator<Registration> it = mRegistrations.values().iterator();
+        while (it.hasNext()) {
+            Registration registration = it.next();
+            if (registration.targets.length == 0) {
+                it.remove();
+                registration.unregister();
+            }
+        }
+    };
+
+    private final class Registration extends BroadcastReceiver {
+        final String key;
+        // Copied on change so a delivery can run while sources come and go
+        BroadcastReceiver[] targets = NONE;
+
+        Registration(String key) {
+            this.key = key;
+        }
+
+        void register(String[] actions) {
+            IntentFilter filter = new IntentFilter();
+            for (String action : actions) {
+                filter.addAction(action);
+            }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE) {
+                mAppContext.registerReceiver(this, filter, null, mHandler, Context.RECEIVER_NOT_EXPORTED);
+            } else {
+                mAppContext.registerReceiver(this, filter, null, mHandler);
+            }
+        }
+
+        void add(BroadcastReceiver receiver) {
+            BroadcastReceiver[] grown = Arrays.copyOf(targets, targets.length + 1);
+            grown[targets.length] = receiver;
+            targets = grown;
+        }
+
+        // Returns true when the last source left
+        boolean remove(BroadcastReceiver receiver) {
+            ArrayList<BroadcastReceiver> kept = new ArrayList<>(targets.length);
+            for (BroadcastReceiver target : targets) {
+                if (target != receiver) {
+                    kept.add(target);
+                }
+            }
+            targets = kept.toArray(NONE);
+            return targets.length == 0;
+        }
+
+        void unregister() {
+            try {
+                mAppContext.unregisterReceiver(this);
+            } catch (Exception e) {
+                // ignore
+            }
+        }
+
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            for (BroadcastReceiver target : targets) {
+                target.onReceive(context, intent);
+            }
+        }
+    }
+
+    private static String keyOf(String[] sortedActions) {
+        StringBuilder key = new StringBuilder();
+        for (String action : sortedActions) {
+            key.append(action).append('\n');
+        }
+        return key.toString();
+    }
+}
@@ -1,44 +1,71 @@
 package com.webuild.statusbar.ui.observers;
 
+import android.content.BroadcastReceiver;
 import android.content.Context;
-import java.util.ArrayList;
-import java.util.List;
+import android.content.IntentFilter;
+import android.os.Handler;
 
+import com.webuild.statusbar.metrics.FlightRecorder;
+import com.webuild.statusbar.metrics.StatusMetrics;
+import com.webuild.statusbar.state.Scheduler;
+import com.webuild.statusbar.util.ListenerRegistry;
+
+/**
+ * 状态观察者基类
+ * onActive/onInactive/onNotify 以及子类的状态计算都运行在 {@link ObserverThread} 上，
+ * 监听器回调同样在该线程触发，界面层需要自行切回主线程。
+ * 进程进入后台时自动 onInactive 暂停所有系统回调，回到前台再 onActive，
+ * 子类应在 onActive 中读取一次当前状态完成同步，而不是补发错过的事件。
+ */
 public abstract class StateObserver<T> {
     protected final Context mAppContext;
-    private final List<T> mListeners = new ArrayList<>();
+    protected final Handler mHandler = ObserverThread.getHandler();
+    protected final Scheduler mScheduler = new HandlerScheduler(mHandler);
+    private final ListenerRegistry<T> mListeners = new ListenerRegistry<>();
+    private final ProcessStateTracker mProcessState;
+    // Only touched on the observer thread
     private boolean mIsActive = false;
 
     public StateObserver(Context context) {
         this.mAppContext = context.getApplicationContext();
+        this.mProcessState = ProcessStateTracker.getInstance(mAppContext);
+        // Observers are process-wide singletons, so this registration is never removed
+        mProcessState.addListener(foreground -> mHandler.post(mSyncActivation));
     }
 
     public void addObserver(T listener) {
-        synchronized (mListeners) {
-            if (!mListeners.contains(listener)) {
-                mListeners.add(listener);
-                if (mListeners.size() == 1) {
-                    onActive();
-                    mIsActive = true;
-                } else if (mIsActive) {
-                    // If already active, maybe trigger an immediate update for the new listener
-                    onNotify(listener);
-                }
-            }
+        int size = mListeners.add(listener);
+        if (size < 0) {
+            return;
+        }
+        if (size == 1) {
+            mHandler.post(mSyncActivation);
         }
+        // Runs after activation, so the new listener always gets the current state
+        mHandler.post(() -> {
+            if (mIsActive && mListeners.contains(listener)) {
+                onNotify(listener);
+            }
+        });
     }
 
     public void removeObserver(T listener) {
-        synchronized (mListeners) {
-            if (mListeners.remove(listener)) {
-                if (mListeners.isEmpty()) {
-                    onInactive();
-                    mIsActive = false;
-                }
-            }
+        if (mListeners.remove(listener) == 0) {
+            mHandler.post(mSyncActivation);
         }
     }
 
+    private final Runnable mSyncActivation = () -> {
+        boolean shouldBeActive = !mListeners.isEmpty() && mProcessState.isForeground();
+        if (shouldBeActive && !mIsActive) {
+            onActive();
+            mIsActive = true;
+        } else if (!shouldBeActive && mIsActive) {
+            onInactive();
+            mIsActive = false;
+        }
+    };
+
     protected abstract void onActive();
 
     protected abstract void onInactive();
@@ -47,19 +74,57 @@ public abstract class StateObserver<T> {
     protected void onNotify(T listener) {
     }
 
-    protected void notifyObservers(Notifier<T> notifier) {
-        List<T> snapshot;
-        synchronized (mListeners) {
-            snapshot = new ArrayList<>(mListeners);
-        }
-        for (T listener : snapshot) {
-            if (listener != null) {
-                notifier.notify(listener);
-            }
+    /**
+     * 通过 {@link ReceiverHub} 接收广播，action 集合相同的接收器共享一个系统注册；
+     * 集合已注册时不会再收到粘性广播，初始状态应在 onActive 中自行读取
+     */
+    protected void registerReceiver(BroadcastReceiver receiver, IntentFilter filter) {
+        ReceiverHub.getInstance(mAppContext).register(receiver, filter);
+    }
+
+    protected void unregisterReceiver(BroadcastReceiver receiver) {
+        ReceiverHub.getInstance(mAppContext).unregister(receiver);
+    }
+
+    protected void notifyObservers(ListenerRegistry.Notifier<T> notifier) {
+        mListeners.dispatch(notifier);
+    }
+
+    // Primitive paths: pass the values through so the notifier can be a non-capturing constant
+    protected void notifyObservers(ListenerRegistry.IntNotifier<T> notifier, int value) {
+        mListeners.dispatch(notifier, value);
+    }
+
+    protected void notifyObservers(ListenerRegistry.IntIntNotifier<T> notifier, int first, int second) {
+        mListeners.dispatch(notifier, first, second);
+    }
+
+    /**
+     * 把收到的原始事件或规则对象的处理结果写入 StatusMetrics 和 FlightRecorder
+     * @param source  StatusMetrics.SOURCE_*
+     * @param outcome FlightRecorder.OUTCOME_*
+     */
+    protected static void recordOutcome(int source, int outcome, int value1, int value2) {
+        StatusMetrics metrics = StatusMetrics.getInstance();
+        switch (outcome) {
+            case FlightRecorder.OUTCOME_RECEIVED:
+                metrics.recordReceived(source);
+                break;
+            case FlightRecorder.OUTCOME_DISPATCHED:
+                metrics.recordDispatched(source);
+                break;
+            case FlightRecorder.OUTCOME_COALESCED:
+                metrics.recordCoalesced(source);
+                break;
+            case FlightRecorder.OUTCOME_DROPPED:
+                metrics.recordDropped(source);
+                break;
+            default:
+                break;
         }
+        FlightRecorder.getInstance().record(source, outcome, value1, value2);
     }
 
-    public interface Notifier<T> {
-        void notify(T listener);
+    public interface Notifier<T> extends ListenerRegistry.Notifier<T> {
     }
 }
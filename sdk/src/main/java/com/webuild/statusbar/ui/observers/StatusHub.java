@@ -0,0 +1,174 @@
+package com.webuild.statusbar.ui.observers;
+
+import android.content.Context;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import com.webuild.statusbar.core.StatusCache;
+import com.webuild.statusbar.source.StatusSource;
+import com.webuild.statusbar.state.StatusEngine;
+import com.webuild.statusbar.state.StatusSnapshot;
+import com.webuild.statusbar.state.StatusWord;
+import com.webuild.statusbar.util.ListenerRegistry;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 状态汇总中心
+ * 通过 {@link StatusEngine} 合并各状态源，发布一个带版本号的 {@link StatusSnapshot}。
+ * 一次订阅即可覆盖全部状态源，回调携带变化字段掩码，未变化的字段可直接跳过。
+ * 同时以 {@link StatusWord} 形式发布一个 volatile long，供不想订阅的调用方直接轮询。
+ * 默认状态源为 {@link ObserverStatusSource}，可用 {@link #setSource(StatusSource)} 替换。
+ */
+public class StatusHub extends StateObserver<StatusHub.Listener> {
+    private static final long SAVE_DELAY_MS = 2000;
+    // Bound on how long the first install waits for the cache; the read itself is one 16-byte mmap
+    private static final long WARM_START_WAIT_MS = 50;
+    private static volatile StatusHub sInstance;
+    private final StatusEngine mEngine = new StatusEngine();
+    private StatusSource mSource;
+    private final Object mSnapshotLock = new Object();
+    private volatile StatusSnapshot mSnapshot = StatusSnapshot.EMPTY;
+    // Set once per process, from the first install
+    private final AtomicBoolean mWarmStarted = new AtomicBoolean();
+    private final CountDownLatch mWarmStartDone = new CountDownLatch(1);
+    private final ListenerRegistry.IntNotifier<Listener> mChanged =
+            (listener, changedFields) -> listener.onStatusChanged(mSnapshot, changedFields);
+
+    public interface Listener {
+        /**
+         * 在状态源的上报线程（默认为 {@link ObserverThread}）上回调
+         * @param changedFields StatusSnapshot.FIELD_* 组合
+         */
+        void onStatusChanged(StatusSnapshot snapshot, int changedFields);
+    }
+
+    public static StatusHub getInstance(Context context) {
+        if (sInstance == null) {
+            synchronized (StatusHub.class) {
+                if (sInstance == null) {
+                    sInstance = new StatusHub(context);
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    private StatusHub(Context context) {
+        super(context);
+        mSource = new ObserverStatusSource(mAppContext);
+        mEngine.addSource(mSource);
+        mEngine.addListener(mEngineListener);
+    }
+
+    public StatusSnapshot getSnapshot() {
+        return mSnapshot;
+    }
+
+    /**
+     * 无锁、无分配地读取当前状态，可在任意线程（包括渲染线程）轮询。
+     * 用 {@link StatusWord#changedFields(long, long)} 与上次读取的值比较即可得到变化字段。
+     */
+    public long getStatusWord() {
+        return mEngine.getWord();
+    }
+
+    /**
+     * 替换默认的系统状态源，例如演示或自动化测试时使用 Fake 状态源
+     */
+    public synchronized void setSource(@NonNull StatusSource source) {
+        mEngine.removeSource(mSource);
+        mSource = source;
+        mEngine.addSource(source);
+    }
+
+    /**
+     * 从 {@link StatusCache} 读取上次的状态作为初始快照（version 为 0），每个进程只读一次。
+     * 读取在 {@link ObserverThread} 上进行，排在首个 StatusBarView 激活观察者之前；首次调用最多等待
+     * 50 毫秒直到读取完成，因此随后创建的状态栏 attach 时即可拿到缓存的快照。
+     * 观察者线程繁忙导致超时时不再等待，缓存的状态晚一帧到达。
+     * 之后真实状态到达时只会发布真正变化的字段；已有真实状态时缓存被丢弃。可在任意线程调用。
+     */
+    public void warmStart() {
+        if (!mWarmStarted.compareAndSet(false, true)) {
+            return;
+        }
+        mHandler.post(mWarmStartRunnable);
+        if (Looper.myLooper() == mHandler.getLooper()) {
+            // Waiting here would only block the load itself
+            return;
+        }
+        try {
+            mWarmStartDone.await(WARM_START_WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private final Runnable mWarmStartRunnable = () -> {
+        try {
+            seedFromCache();
+        } finally {
+            mWarmStartDone.countDown();
+        }
+    };
+
+    private void seedFromCache() {
+        long word = StatusCache.load(mAppContext);
+        if (word == StatusWord.EMPTY) {
+            return;
+        }
+        int changed;
+        synchronized (mSnapshotLock) {
+            // Both checks fail once any source has reported, so a live value is never replaced
+            if (mSnapshot.version != 0 || !mEngine.seed(word)) {
+                return;
+            }
+            mSnapshot = new StatusSnapshot(0, word);
+            changed = StatusWord.changedFields(StatusWord.EMPTY, word);
+        }
+        // Only a bar attached after a timed-out wait is subscribed by now; it gets the cached icons here
+        notifyObservers(mChanged, changed);
+    }
+
+    @Override
+    protected void onActive() {
+        mEngine.start();
+    }
+
+    @Override
+    protected void onInactive() {
+        mEngine.stop();
+    }
+
+    @Override
+    protected void onNotify(Listener listener) {
+        listener.onStatusChanged(mSnapshot, StatusSnapshot.FIELD_ALL);
+    }
+
+    private final StatusEngine.Listener mEngineListener = (word, changedFields) -> {
+        int changed;
+        synchronized (mSnapshotLock) {
+            // Sources may report from several threads; always publish the engine's latest word
+            StatusSnapshot old = mSnapshot;
+            long latest = mEngine.getWord();
+            changed = StatusWord.changedFields(old.word, latest);
+            if (changed == 0) {
+                return;
+            }
+            mSnapshot = new StatusSnapshot(old.version + 1, latest);
+        }
+        // Outside the lock: listeners always read the newest snapshot, so a notification overtaken
+        // by a concurrent publish only repeats fields that snapshot already carries
+        notifyObservers(mChanged, changed);
+        if ((changed & ~StatusSnapshot.FIELD_TIME) != 0) {
+            mHandler.removeCallbacks(mSaveRunnable);
+            mHandler.postDelayed(mSaveRunnable, SAVE_DELAY_MS);
+        }
+    };
+
+    private final Runnable mSaveRunnable = () -> StatusCache.save(mAppContext, mEngine.getWord());
+}
@@ -5,17 +5,24 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.database.ContentObserver;
-import android.os.Build;
-import android.os.Handler;
-import android.os.Looper;
 import android.provider.Settings;
 import android.text.format.DateFormat;
 
+import com.webuild.statusbar.metrics.FlightRecorder;
+import com.webuild.statusbar.metrics.StatusMetrics;
+import com.webuild.statusbar.state.ValueGate;
+import com.webuild.statusbar.ui.TimeFormatter;
+import com.webuild.statusbar.util.ListenerRegistry;
+
 public class TimeObserver extends StateObserver<TimeObserver.Listener> {
+    private static final ListenerRegistry.Notifier<Listener> TIME_TICK = Listener::onTimeTick;
+    private static final ListenerRegistry.IntNotifier<Listener> FORMAT_CHANGED =
+            (listener, is24) -> listener.onTimeFormatChanged(is24 != 0);
     private static volatile TimeObserver sInstance;
     private BroadcastReceiver mTimeReceiver;
     private ContentObserver mFormatObserver;
-    private boolean mIs24HourFormat;
+    // Last dispatched format, 1 for 24-hour
+    private final ValueGate mFormat = new ValueGate(0);
 
     public interface Listener {
         void onTimeTick();
@@ -42,7 +49,15 @@ public class TimeObserver extends StateObserver<TimeObserver.Listener> {
         mTimeReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                notifyObservers(Listener::onTimeTick);
+                // value1 = 0 for a tick, value2 = UTC minute of day to spot missed ticks
+                int minute = (int) ((System.currentTimeMillis() / 60000L) % 1440);
+                recordOutcome(StatusMetrics.SOURCE_TIME, FlightRecorder.OUTCOME_RECEIVED, 0, minute);
+                if (!Intent.ACTION_TIME_TICK.equals(intent.getAction())) {
+                    // Clock or zone was changed; the shared formatter must not reuse this minute
+                    TimeFormatter.getInstance().invalidate();
+                }
+                notifyObservers(TIME_TICK);
+                recordOutcome(StatusMetrics.SOURCE_TIME, FlightRecorder.OUTCOME_DISPATCHED, 0, minute);
             }
         };
         IntentFilter filter = new IntentFilter();
@@ -50,13 +65,9 @@ public class TimeObserver extends StateObserver<TimeObserver.Listener> {
         filter.addAction(Intent.ACTION_TIME_CHANGED);
         filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
         
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE) {
-            mAppContext.registerReceiver(mTimeReceiver, filter, Context.RECEIVER_NOT_EXPORTED);
-        } else {
-            mAppContext.registerReceiver(mTimeReceiver, filter);
-        }
+        registerReceiver(mTimeReceiver, filter);
 
-        mFormatObserver = new ContentObserver(new Handler(Looper.getMainLooper())) {
+        mFormatObserver = new ContentObserver(mHandler) {
             @Override
             public void onChange(boolean selfChange) {
                 checkFormat();
@@ -66,14 +77,14 @@ public class TimeObserver extends StateObserver<TimeObserver.Listener> {
                 Settings.System.getUriFor(Settings.System.TIME_12_24), false, mFormatObserver);
         
         checkFormat();
+        // Minutes may have passed while inactive
+        notifyObservers(TIME_TICK);
     }
 
     @Override
     protected void onInactive() {
         if (mTimeReceiver != null) {
-            try {
-                mAppContext.unregisterReceiver(mTimeReceiver);
-            } catch (Exception e) {}
+            unregisterReceiver(mTimeReceiver);
             mTimeReceiver = null;
         }
         if (mFormatObserver != null) {
@@ -84,15 +95,18 @@ public class TimeObserver extends StateObserver<TimeObserver.Listener> {
 
     @Override
     protected void onNotify(Listener listener) {
-        listener.onTimeFormatChanged(mIs24HourFormat);
+        listener.onTimeFormatChanged(mFormat.getValue() != 0);
         listener.onTimeTick();
     }
 
     private void checkFormat() {
         boolean is24 = DateFormat.is24HourFormat(mAppContext);
-        if (is24 != mIs24HourFormat) {
-            mIs24HourFormat = is24;
-            notifyObservers(listener -> listener.onTimeFormatChanged(is24));
+        recordOutcome(StatusMetrics.SOURCE_TIME, FlightRecorder.OUTCOME_RECEIVED, 1, is24 ? 1 : 0);
+        if (mFormat.offer(is24 ? 1 : 0)) {
+            notifyObservers(FORMAT_CHANGED, is24 ? 1 : 0);
+            recordOutcome(StatusMetrics.SOURCE_TIME, FlightRecorder.OUTCOME_DISPATCHED, 1, is24 ? 1 : 0);
+        } else {
+            recordOutcome(StatusMetrics.SOURCE_TIME, FlightRecorder.OUTCOME_DROPPED, 1, is24 ? 1 : 0);
         }
     }
 }
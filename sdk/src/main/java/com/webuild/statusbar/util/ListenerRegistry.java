@@ -0,0 +1,157 @@
+package com.webuild.statusbar.util;
+
+import java.util.IdentityHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 监听器注册表
+ * 写入（add/remove）在锁内完成，均摊 O(1)；分发无锁、不拷贝，直接遍历槽位数组。
+ * 移除只把槽位置空并回收下标，因此并发分发中的监听器最多多收到一次事件。
+ */
+public final class ListenerRegistry<T> {
+    private static final int INITIAL_CAPACITY = 4;
+
+    private final Object mLock = new Object();
+    private final IdentityHashMap<T, Integer> mIndex = new IdentityHashMap<>();
+    private volatile AtomicReferenceArray<T> mSlots = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+    // Slots in [0, mEnd) may be occupied; dispatch never looks beyond it
+    private volatile int mEnd;
+    private int[] mFree = new int[INITIAL_CAPACITY];
+    private int mFreeCount;
+
+    public interface Notifier<T> {
+        void notify(T listener);
+    }
+
+    public interface IntNotifier<T> {
+        void notify(T listener, int value);
+    }
+
+    public interface IntIntNotifier<T> {
+        void notify(T listener, int first, int second);
+    }
+
+    public interface LongIntNotifier<T> {
+        void notify(T listener, long first, int second);
+    }
+
+    /**
+     * @return 添加后的监听器数量；已存在时返回 -1
+     */
+    public int add(T listener) {
+        if (listener == null) return -1;
+        synchronized (mLock) {
+            if (mIndex.containsKey(listener)) {
+                return -1;
+            }
+            int slot;
+            if (mFreeCount > 0) {
+                slot = mFree[--mFreeCount];
+            } else {
+                slot = mEnd;
+                AtomicReferenceArray<T> slots = mSlots;
+                if (slot == slots.length()) {
+                    AtomicReferenceArray<T> grown = new AtomicReferenceArray<>(slots.length() * 2);
+                    for (int i = 0; i < slot; i++) {
+                        grown.lazySet(i, slots.get(i));
+                    }
+                    mSlots = grown;
+                }
+            }
+            mSlots.set(slot, listener);
+            mIndex.put(listener, slot);
+            if (slot == mEnd) {
+                mEnd = slot + 1;
+            }
+            return mIndex.size();
+        }
+    }
+
+    /**
+     * @return 移除后的监听器数量；不存在时返回 -1
+     */
+    public int remove(T listener) {
+        if (listener == null) return -1;
+        synchronized (mLock) {
+            Integer slot = mIndex.remove(listener);
+            if (slot == null) {
+                return -1;
+            }
+            mSlots.set(slot, null);
+            if (mIndex.isEmpty()) {
+                // Reset so an idle registry does not keep a sparse tail around
+                mEnd = 0;
+                mFreeCount = 0;
+            } else {
+                if (mFreeCount == mFree.length) {
+                    int[] grown = new int[mFree.length * 2];
+                    System.arraycopy(mFree, 0, grown, 0, mFreeCount);
+                    mFree = grown;
+                }
+                mFree[mFreeCount++] = slot;
+            }
+            return mIndex.size();
+        }
+    }
+
+    public int size() {
+        synchronized (mLock) {
+            return mIndex.size();
+        }
+    }
+
+    public boolean contains(T listener) {
+        synchronized (mLock) {
+            return mIndex.containsKey(listener);
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void dispatch(Notifier<T> notifier) {
+        int end = mEnd;
+        AtomicReferenceArray<T> slots = mSlots;
+        for (int i = 0; i < end && i < slots.length(); i++) {
+            T listener = slots.get(i);
+            if (listener != null) {
+                notifier.notify(listener);
+            }
+        }
+    }
+
+    public void dispatch(IntNotifier<T> notifier, int value) {
+        int end = mEnd;
+        AtomicReferenceArray<T> slots = mSlots;
+        for (int i = 0; i < end && i < slots.length(); i++) {
+            T listener = slots.get(i);
+            if (listener != null) {
+                notifier.notify(listener, value);
+            }
+        }
+    }
+
+    public void dispatch(IntIntNotifier<T> notifier, int first, int second) {
+        int end = mEnd;
+        AtomicReferenceArray<T> slots = mSlots;
+        for (int i = 0; i < end && i < slots.length(); i++) {
+            T listener = slots.get(i);
+            if (listener != null) {
+                notifier.notify(listener, first, second);
+            }
+        }
+    }
+
+    // Named apart from dispatch(IntIntNotifier, int, int): int arguments would fit both overloads
+    public void dispatchLong(LongIntNotifier<T> notifier, long first, int second) {
+        int end = mEnd;
+        AtomicReferenceArray<T> slots = mSlots;
+        for (int i = 0; i < end && i < slots.length(); i++) {
+            T listener = slots.get(i);
+            if (listener != null) {
+                notifier.notify(listener, first, second);
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.webuild.statusbar.replay;
+
+import java.lang.reflect.Method;
+
+/**
+ * 当前线程已分配字节数
+ * 通过反射使用 HotSpot 的 com.sun.management.ThreadMXBean，Android 等不支持的环境返回 -1。
+ */
+final class AllocationCounter {
+    private static final Object sBean;
+    private static final Method sAllocatedBytes;
+
+    static {
+        Object bean = null;
+        Method method = null;
+        try {
+            Class<?> factory = Class.forName("java.lang.management.ManagementFactory");
+            bean = factory.getMethod("getThreadMXBean").invoke(null);
+            Class<?> sunBean = Class.forName("com.sun.management.ThreadMXBean");
+            if (sunBean.isInstance(bean)) {
+                method = sunBean.getMethod("getCurrentThreadAllocatedBytes");
+            }
+        } catch (Throwable ignored) {
+            // Not available on this runtime
+        }
+        sBean = bean;
+        sAllocatedBytes = method;
+    }
+
+    private AllocationCounter() {}
+
+    static long currentThreadBytes() {
+        if (sAllocatedBytes == null) {
+            return -1;
+        }
+        try {
+            return (Long) sAllocatedBytes.invoke(sBean);
+        } catch (Throwable e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package com.webuild.statusbar.replay;
+
+import com.webuild.statusbar.metrics.FlightRecorder;
+import com.webuild.statusbar.metrics.StatusMetrics;
+import com.webuild.statusbar.source.StatusSink;
+import com.webuild.statusbar.source.StatusSource;
+import com.webuild.statusbar.state.AdaptiveDebounce;
+import com.webuild.statusbar.state.BatteryGate;
+import com.webuild.statusbar.state.NetworkGate;
+import com.webuild.statusbar.state.NetworkTable;
+import com.webuild.statusbar.state.SignalFilter;
+import com.webuild.statusbar.state.StatusEngine;
+import com.webuild.statusbar.state.StatusSnapshot;
+import com.webuild.statusbar.state.StatusWord;
+import com.webuild.statusbar.state.ValueGate;
+
+import java.util.Arrays;
+
+/**
+ * 状态事件回放引擎
+ * 把 {@link StatusTrace} 按真实或加速的节奏，经观察者层使用的同一批规则对象，
+ * 作为 {@link StatusSource} 送入 {@link StatusEngine}：电量经 {@link BatteryGate}，
+ * 网络经 {@link NetworkTable}（含 {@link SignalFilter}）和 {@link NetworkGate}，
+ * 蓝牙和时间格式经 {@link ValueGate} 去重，分钟 tick 按整分钟产生。
+ * 所有定时都由 {@link VirtualClock} 驱动，结果可复现，可在 JVM 上比较不同的分发策略。
+ */
+public class ReplayEngine {
+    private static final long MINUTE_MS = 60_000L;
+
+    private final StatusTrace mTrace;
+    private final StatusEngine mEngine;
+    private final VirtualClock mClock = new VirtualClock();
+    private final TraceSource mSource = new TraceSource();
+    private float mSpeed;
+    private long mNetworkDebounceMinMs = AdaptiveDebounce.DEFAULT_MIN_MS;
+    private long mNetworkDebounceMaxMs = AdaptiveDebounce.DEFAULT_MAX_MS;
+    private boolean mClockTicks = true;
+
+    // The rule objects the observers run, on the virtual clock
+    private final BatteryGate mBattery = new BatteryGate(mClock, this::onBatteryOutcome);
+    // One entry per transport, keyed by the transport itself
+    private final NetworkTable mNetworks = new NetworkTable();
+    private NetworkGate mNetwork;
+    private final ValueGate mBluetooth = new ValueGate(ValueGate.pack(-1, 0));
+    private final ValueGate mFormat = new ValueGate(0);
+
+    private final long[] mReceived = new long[StatusMetrics.SOURCE_COUNT];
+    private final long[] mCoalesced = new long[StatusMetrics.SOURCE_COUNT];
+    private final long[] mDispatched = new long[StatusMetrics.SOURCE_COUNT];
+    private final long[] mDropped = new long[StatusMetrics.SOURCE_COUNT];
+    private final long[] mPendingWallNanos = new long[StatusMetrics.SOURCE_COUNT];
+    private final long[] mPendingVirtualMs = new long[StatusMetrics.SOURCE_COUNT];
+    private final long[][] mWallLatency = new long[StatusMetrics.SOURCE_COUNT][];
+    private final long[][] mVirtualLatency = new long[StatusMetrics.SOURCE_COUNT][];
+    private final int[] mLatencyCount = new int[StatusMetrics.SOURCE_COUNT];
+    private long mNotifications;
+
+    public ReplayEngine(StatusTrace trace) {
+        this(trace, new StatusEngine());
+    }
+
+    /**
+     * @param engine 被测的分发引擎，可传入已挂好监听器的实例以比较不同的下游策略
+     */
+    public ReplayEngine(StatusTrace trace, StatusEngine engine) {
+        mTrace = trace;
+        mEngine = engine;
+    }
+
+    /**
+     * @param speed 回放倍速，1 为按轨迹的真实间隔，0（默认）为不等待、尽可能快
+     */
+    public void setSpeed(float speed) {
+        mSpeed = Math.max(0f, speed);
+    }
+
+    /**
+     * 固定的网络防抖时长，0 表示不防抖；默认使用与 NetworkObserver 相同的自适应窗口
+     */
+    public void setNetworkDebounceMs(long debounceMs) {
+        setNetworkDebounceMs(debounceMs, debounceMs);
+    }
+
+    /**
+     * 自适应网络防抖窗口的上下限
+     */
+    public void setNetworkDebounceMs(long minMs, long maxMs) {
+        mNetworkDebounceMinMs = minMs;
+        mNetworkDebounceMaxMs = Math.max(0, Math.max(minMs, maxMs));
+    }
+
+    /**
+     * Wi-Fi 信号过滤参数，含义同 NetworkObserver#setSignalFilter
+     */
+    public void setSignalFilter(int marginDb, float smoothing) {
+        mNetworks.setSignalFilter(marginDb, smoothing);
+    }
+
+    /**
+     * 电量上报规则，含义同 BatteryObserver#setReportPolicy
+     */
+    public void setBatteryPolicy(int step, int maxPerMinute) {
+        mBattery.getFilter().setStep(step);
+        mBattery.getFilter().setMaxPerMinute(maxPerMinute);
+    }
+
+    /**
+     * 是否由虚拟时钟产生分钟 tick，回放录制的轨迹（自带 tick）时应关闭
+     */
+    public void setClockTicks(boolean clockTicks) {
+        mClockTicks = clockTicks;
+    }
+
+    public ReplayReport run() {
+        reset();
+        mEngine.addListener(mEngineListener);
+        mEngine.addSource(mSource);
+        mEngine.start();
+        try {
+            return replay();
+        } finally {
+            mEngine.removeSource(mSource);
+            mEngine.removeListener(mEngineListener);
+        }
+    }
+
+    private ReplayReport replay() {
+        int size = mTrace.size();
+        long end = mTrace.durationMs() + Math.max(mNetworkDebounceMaxMs, NetworkGate.DEFAULT_SETTLE_MS);
+        if (mClockTicks) {
+            mClock.postAt(mTickRunnable, MINUTE_MS);
+        }
+        mNetwork.start(NetworkGate.DEFAULT_SETTLE_MS);
+        long allocatedBefore = AllocationCounter.currentThreadBytes();
+        long wallStart = System.nanoTime();
+        for (int i = 0; i < size; i++) {
+            long t = mTrace.timeAt(i);
+            if (mSpeed > 0 && !sleepUntil(wallStart + (long) (t * 1_000_000L / mSpeed))) {
+                break;
+            }
+            mClock.advanceTo(t);
+            feed(mTrace.typeAt(i), mTrace.value1At(i), mTrace.value2At(i));
+        }
+        mClock.advanceTo(end);
+        long wallNanos = System.nanoTime() - wallStart;
+        long allocatedAfter = AllocationCounter.currentThreadBytes();
+        mClock.cancel(mTickRunnable);
+        mBattery.cancel();
+        mNetwork.stop();
+
+        long[][] wall = new long[StatusMetrics.SOURCE_COUNT][];
+        long[][] virtual = new long[StatusMetrics.SOURCE_COUNT][];
+        for (int s = 0; s < StatusMetrics.SOURCE_COUNT; s++) {
+            wall[s] = Arrays.copyOf(mWallLatency[s], mLatencyCount[s]);
+            virtual[s] = Arrays.copyOf(mVirtualLatency[s], mLatencyCount[s]);
+            Arrays.sort(wall[s]);
+            Arrays.sort(virtual[s]);
+        }
+        long allocated = allocatedBefore < 0 || allocatedAfter < 0 ? -1 : allocatedAfter - allocatedBefore;
+        return new ReplayReport(size, mClock.now(), wallNanos, mNotifications, allocated,
+                mReceived.clone(), mCoalesced.clone(), mDispatched.clone(), mDropped.clone(), wall, virtual);
+    }
+
+    private void reset() {
+        int capacity = mTrace.size() + (int) (mTrace.durationMs() / MINUTE_MS) + 2;
+        for (int s = 0; s < StatusMetrics.SOURCE_COUNT; s++) {
+            mReceived[s] = 0;
+            mCoalesced[s] = 0;
+            mDispatched[s] = 0;
+            mDropped[s] = 0;
+            mPendingWallNanos[s] = 0;
+            mPendingVirtualMs[s] = -1;
+            mLatencyCount[s] = 0;
+            if (mWallLatency[s] == null || mWallLatency[s].length < capacity) {
+                mWallLatency[s] = new long[capacity];
+                mVirtualLatency[s] = new long[capacity];
+            }
+        }
+        mNotifications = 0;
+        mClock.reset();
+        mBattery.reset();
+        mNetworks.clear();
+        // The gate keeps its last dispatched state, so every run starts from a fresh one
+        mNetwork = new NetworkGate(mNetworks, mClock, this::onNetworkOutcome);
+        mNetwork.setDebounce(mNetworkDebounceMinMs, mNetworkDebounceMaxMs);
+        mBluetooth.reset();
+        mFormat.reset();
+    }
+
+    private void feed(int type, int value1, int value2) {
+        switch (type) {
+            case StatusTrace.EVENT_BATTERY:
+                receive(StatusMetrics.SOURCE_BATTERY);
+                mBattery.offer(value1, value2 != 0, value1, value2);
+                break;
+            case StatusTrace.EVENT_NETWORK:
+                setDefaultNetwork(value1, value2);
+                receive(StatusMetrics.SOURCE_NETWORK);
+                mNetwork.post();
+                break;
+            case StatusTrace.EVENT_RSSI:
+                mNetworks.offerWifiRssi(value1);
+                receive(StatusMetrics.SOURCE_NETWORK);
+                mNetwork.post();
+                break;
+            case StatusTrace.EVENT_BLUETOOTH:
+                receive(StatusMetrics.SOURCE_BLUETOOTH);
+                if (mBluetooth.offer(ValueGate.pack(value1, value2))) {
+                    mSource.sink().onBluetoothChanged(value1, value2);
+                    count(StatusMetrics.SOURCE_BLUETOOTH, FlightRecorder.OUTCOME_DISPATCHED);
+                } else {
+                    count(StatusMetrics.SOURCE_BLUETOOTH, FlightRecorder.OUTCOME_DROPPED);
+                }
+                break;
+            case StatusTrace.EVENT_TIME_TICK:
+                tick();
+                break;
+            case StatusTrace.EVENT_TIME_FORMAT:
+                receive(StatusMetrics.SOURCE_TIME);
+                if (mFormat.offer(value1)) {
+                    mSource.sink().onTimeFormatChanged(value1 != 0);
+                    count(StatusMetrics.SOURCE_TIME, FlightRecorder.OUTCOME_DISPATCHED);
+                } else {
+                    count(StatusMetrics.SOURCE_TIME, FlightRecorder.OUTCOME_DROPPED);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    // The trace names the default network only; other transports are treated as gone
+    private void setDefaultNetwork(int transport, int rssi) {
+        for (int i = mNetworks.size() - 1; i >= 0; i--) {
+            NetworkTable.Entry entry = mNetworks.get(i);
+            if (entry.transport != transport) {
+                mNetworks.remove(entry.key);
+            }
+        }
+        if (transport == StatusWord.TRANSPORT_NONE) {
+            return;
+        }
+        NetworkTable.Entry entry = mNetworks.obtain(transport);
+        entry.transport = transport;
+        entry.validated = true;
+        if (transport == StatusWord.TRANSPORT_WIFI) {
+            entry.offerRssi(rssi);
+        }
+    }
+
+    private void onBatteryOutcome(int outcome, int raw1, int raw2) {
+        if (outcome == FlightRecorder.OUTCOME_DISPATCHED) {
+            mSource.sink().onBatteryChanged(mBattery.getLevel(), mBattery.isCharging());
+        }
+        count(StatusMetrics.SOURCE_BATTERY, outcome);
+    }
+
+    private void onNetworkOutcome(int outcome, int transport, int level) {
+        if (outcome == FlightRecorder.OUTCOME_DISPATCHED) {
+            mSource.sink().onNetworkChanged(transport, level);
+        }
+        count(StatusMetrics.SOURCE_NETWORK, outcome);
+    }
+
+    private void tick() {
+        receive(StatusMetrics.SOURCE_TIME);
+        mSource.sink().onTimeTick();
+        count(StatusMetrics.SOURCE_TIME, FlightRecorder.OUTCOME_DISPATCHED);
+    }
+
+    private void receive(int source) {
+        mReceived[source]++;
+        if (mPendingVirtualMs[source] < 0) {
+            mPendingVirtualMs[source] = mClock.now();
+            mPendingWallNanos[source] = System.nanoTime();
+        }
+    }
+
+    private void count(int source, int outcome) {
+        switch (outcome) {
+            case FlightRecorder.OUTCOME_DISPATCHED:
+                mDispatched[source]++;
+                break;
+            case FlightRecorder.OUTCOME_COALESCED:
+                // Still pending; the latency runs until the merged update lands
+                mCoalesced[source]++;
+                return;
+            default:
+                mDropped[source]++;
+                break;
+        }
+        // The engine may still see no change (e.g. a seeded word); don't carry the receipt time forward
+        mPendingVirtualMs[source] = -1;
+    }
+
+    private void recordLatency(int source, long nowNanos) {
+        long since = mPendingVirtualMs[source];
+        if (since < 0) {
+            return;
+        }
+        int n = mLatencyCount[source];
+        if (n < mWallLatency[source].length) {
+            mWallLatency[source][n] = nowNanos - mPendingWallNanos[source];
+            mVirtualLatency[source][n] = mClock.now() - since;
+            mLatencyCount[source] = n + 1;
+        }
+        mPendingVirtualMs[source] = -1;
+    }
+
+    private final Runnable mTickRunnable = new Runnable() {
+        @Override
+        public void run() {
+            tick();
+            mClock.postAt(this, (mClock.now() / MINUTE_MS + 1) * MINUTE_MS);
+        }
+    };
+
+    private final StatusEngine.Listener mEngineListener = (word, changedFields) -> {
+        long now = System.nanoTime();
+        mNotifications++;
+        if ((changedFields & StatusSnapshot.FIELD_BATTERY) != 0) recordLatency(StatusMetrics.SOURCE_BATTERY, now);
+        if ((changedFields & StatusSnapshot.FIELD_NETWORK) != 0) recordLatency(StatusMetrics.SOURCE_NETWORK, now);
+        if ((changedFields & StatusSnapshot.FIELD_BLUETOOTH) != 0) recordLatency(StatusMetrics.SOURCE_BLUETOOTH, now);
+        if ((changedFields & StatusSnapshot.FIELD_TIME) != 0) recordLatency(StatusMetrics.SOURCE_TIME, now);
+    };
+
+    /**
+     * 轨迹本身就是状态源；启动时没有可上报的当前状态，全部状态随轨迹事件上报
+     */
+    private static final class TraceSource implements StatusSource {
+        private StatusSink mSink;
+
+        @Override
+        public void start(StatusSink sink) {
+            mSink = sink;
+        }
+
+        @Override
+        public void stop() {
+            mSink = null;
+        }
+
+        StatusSink sink() {
+            return mSink;
+        }
+    }
+
+    private static boolean sleepUntil(long deadlineNanos) {
+        long remaining = deadlineNanos - System.nanoTime();
+        if (remaining <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(remaining / 1_000_000L, (int) (remaining % 1_000_000L));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
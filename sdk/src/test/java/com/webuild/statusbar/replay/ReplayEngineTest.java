@@ -0,0 +1,140 @@
+package com.webuild.statusbar.replay;
+
+import com.webuild.statusbar.metrics.FlightRecorder;
+import com.webuild.statusbar.metrics.StatusMetrics;
+import com.webuild.statusbar.state.StatusEngine;
+import com.webuild.statusbar.state.StatusWord;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * ReplayEngine 的确定性回放：同一条轨迹经同一批规则对象，结果必须逐项一致
+ */
+public class ReplayEngineTest {
+
+    @Test
+    public void stormReplaysIdentically() {
+        StatusTrace trace = StatusTrace.storm(42, 20_000, 600_000);
+        StatusEngine firstEngine = new StatusEngine();
+        ReplayReport first = new ReplayEngine(trace, firstEngine).run();
+        StatusEngine secondEngine = new StatusEngine();
+        ReplayReport second = new ReplayEngine(trace, secondEngine).run();
+
+        assertEquals(first.notifications, second.notifications);
+        assertEquals(first.virtualDurationMs, second.virtualDurationMs);
+        for (int s = 0; s < StatusMetrics.SOURCE_COUNT; s++) {
+            assertEquals(first.getReceived(s), second.getReceived(s));
+            assertEquals(first.getCoalesced(s), second.getCoalesced(s));
+            assertEquals(first.getDispatched(s), second.getDispatched(s));
+            assertEquals(first.getDropped(s), second.getDropped(s));
+            assertEquals(first.getVirtualLatencyPercentileMs(s, 99), second.getVirtualLatencyPercentileMs(s, 99));
+        }
+        assertEquals(StatusWord.toString(firstEngine.getWord()), StatusWord.toString(secondEngine.getWord()));
+        // Ten virtual minutes of ticks
+        assertEquals(10, StatusWord.timeTick(firstEngine.getWord()));
+    }
+
+    @Test
+    public void rerunningTheSameEngineStartsFromScratch() {
+        StatusTrace trace = StatusTrace.storm(7, 5_000, 120_000);
+        ReplayEngine replay = new ReplayEngine(trace);
+        ReplayReport first = replay.run();
+        ReplayReport second = replay.run();
+        for (int s = 0; s < StatusMetrics.SOURCE_COUNT; s++) {
+            assertEquals(first.getDispatched(s), second.getDispatched(s));
+            assertEquals(first.getDropped(s), second.getDropped(s));
+        }
+    }
+
+    @Test
+    public void rssiJitterAtAnEdgeIsDroppedAndARealDropIsShown() {
+        StatusTrace trace = new StatusTrace();
+        trace.network(0, StatusWord.TRANSPORT_WIFI, -50);
+        // Either side of the 3/4 edge at -55 dBm, inside the hysteresis margin
+        long t = 1_000;
+        for (int i = 0; i < 40; i++, t += 50) {
+            trace.rssi(t, i % 2 == 0 ? -53 : -57);
+        }
+        for (int i = 0; i < 10; i++, t += 100) {
+            trace.rssi(t, i % 2 == 0 ? -85 : -86);
+        }
+        StatusEngine engine = new StatusEngine();
+        ReplayReport report = new ReplayEngine(trace, engine).run();
+
+        assertTrue(report.getDropped(StatusMetrics.SOURCE_NETWORK) >= 40);
+        assertEquals(StatusWord.TRANSPORT_WIFI, StatusWord.transport(engine.getWord()));
+        assertEquals(1, StatusWord.signalLevel(engine.getWord()));
+    }
+
+    @Test
+    public void transportChangeIsNotDebounced() {
+        StatusTrace trace = new StatusTrace()
+                .network(0, StatusWord.TRANSPORT_WIFI, -60)
+                .network(1_000, StatusWord.TRANSPORT_CELLULAR, -127);
+        ReplayReport report = new ReplayEngine(trace).run();
+        assertEquals(2, report.getDispatched(StatusMetrics.SOURCE_NETWORK));
+        assertEquals(0, report.getVirtualLatencyPercentileMs(StatusMetrics.SOURCE_NETWORK, 0));
+    }
+
+    @Test
+    public void rateLimitedBatteryIsFlushedAtTheDeadline() {
+        StatusTrace trace = new StatusTrace()
+                .battery(0, 80, false)
+                .battery(1_000, 79, false)
+                .timeFormat(61_000, false);
+        StatusEngine engine = new StatusEngine();
+        ReplayEngine replay = new ReplayEngine(trace, engine);
+        replay.setBatteryPolicy(1, 1);
+        ReplayReport report = replay.run();
+
+        assertEquals(1, report.getCoalesced(StatusMetrics.SOURCE_BATTERY));
+        assertEquals(2, report.getDispatched(StatusMetrics.SOURCE_BATTERY));
+        assertEquals(79, StatusWord.batteryLevel(engine.getWord()));
+        // Deferred from t=1s to the end of the first minute
+        assertEquals(59_000, report.getVirtualLatencyPercentileMs(StatusMetrics.SOURCE_BATTERY, 100));
+    }
+
+    @Test
+    public void flightRecordKeepsOutcomesAndSkipsReceipts() throws IOException {
+        FlightRecorder recorder = FlightRecorder.getInstance();
+        // Same raw layout as BatteryObserver: level << 16 | scale, status << 16 | plugged
+        recorder.record(StatusMetrics.SOURCE_BATTERY, FlightRecorder.OUTCOME_RECEIVED, 37 << 16 | 100, 0);
+        recorder.record(StatusMetrics.SOURCE_BATTERY, FlightRecorder.OUTCOME_DROPPED, 37 << 16 | 100, 0);
+        recorder.record(StatusMetrics.SOURCE_BLUETOOTH, FlightRecorder.OUTCOME_RECEIVED, -1, 12);
+        recorder.record(StatusMetrics.SOURCE_BLUETOOTH, FlightRecorder.OUTCOME_DISPATCHED, 0, 0);
+        File file = File.createTempFile("flight", ".bin");
+        try {
+            recorder.dump(file);
+            StatusTrace trace = StatusTrace.fromFlightRecord(file);
+            int last = trace.size() - 1;
+            assertEquals(StatusTrace.EVENT_BLUETOOTH, trace.typeAt(last));
+            assertEquals(0, trace.value1At(last));
+            assertEquals(StatusTrace.EVENT_BATTERY, trace.typeAt(last - 1));
+            // A kept receipt would sit between the two outcomes
+            assertEquals(37, trace.value1At(last - 1));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void repeatedBluetoothAndFormatAreDropped() {
+        StatusTrace trace = new StatusTrace()
+                .bluetooth(0, 2, 1)
+                .bluetooth(10, 2, 1)
+                .bluetooth(20, 2, 2)
+                .timeFormat(30, false)
+                .timeFormat(40, true);
+        ReplayReport report = new ReplayEngine(trace).run();
+        assertEquals(2, report.getDispatched(StatusMetrics.SOURCE_BLUETOOTH));
+        assertEquals(1, report.getDropped(StatusMetrics.SOURCE_BLUETOOTH));
+        // Like TimeObserver, 12-hour is the starting point, so only the switch to 24-hour goes through
+        assertEquals(1, report.getDispatched(StatusMetrics.SOURCE_TIME));
+        assertEquals(1, report.getDropped(StatusMetrics.SOURCE_TIME));
+    }
+}
@@ -0,0 +1,101 @@
+package com.webuild.statusbar.replay;
+
+import com.webuild.statusbar.metrics.StatusMetrics;
+
+import java.util.Locale;
+
+/**
+ * 一次回放的结果
+ * 计数按 StatusMetrics.SOURCE_* 分组；处理延迟为从事件送入到引擎通知的真实耗时，
+ * 虚拟延迟为同一区间的虚拟时间（包含防抖等待）。
+ */
+public final class ReplayReport {
+    public final int events;
+    public final long virtualDurationMs;
+    public final long wallNanos;
+    /** 分发引擎的通知次数 */
+    public final long notifications;
+    /** 回放期间当前线程分配的字节数，运行环境不支持时为 -1 */
+    public final long allocatedBytes;
+
+    private final long[] mReceived;
+    private final long[] mCoalesced;
+    private final long[] mDispatched;
+    private final long[] mDropped;
+    // Sorted per-source latency samples
+    private final long[][] mWallLatencyNanos;
+    private final long[][] mVirtualLatencyMs;
+
+    ReplayReport(int events, long virtualDurationMs, long wallNanos, long notifications, long allocatedBytes,
+                 long[] received, long[] coalesced, long[] dispatched, long[] dropped,
+                 long[][] wallLatencyNanos, long[][] virtualLatencyMs) {
+        this.events = events;
+        this.virtualDurationMs = virtualDurationMs;
+        this.wallNanos = wallNanos;
+        this.notifications = notifications;
+        this.allocatedBytes = allocatedBytes;
+        mReceived = received;
+        mCoalesced = coalesced;
+        mDispatched = dispatched;
+        mDropped = dropped;
+        mWallLatencyNanos = wallLatencyNanos;
+        mVirtualLatencyMs = virtualLatencyMs;
+    }
+
+    public double getEventsPerSecond() {
+        return wallNanos == 0 ? 0 : events * 1e9 / wallNanos;
+    }
+
+    public long getReceived(int source) {
+        return mReceived[source];
+    }
+
+    public long getCoalesced(int source) {
+        return mCoalesced[source];
+    }
+
+    public long getDispatched(int source) {
+        return mDispatched[source];
+    }
+
+    public long getDropped(int source) {
+        return mDropped[source];
+    }
+
+    /**
+     * @param percentile 0-100，没有样本时返回 0
+     */
+    public long getLatencyPercentileNanos(int source, float percentile) {
+        return percentile(mWallLatencyNanos[source], percentile);
+    }
+
+    public long getVirtualLatencyPercentileMs(int source, float percentile) {
+        return percentile(mVirtualLatencyMs[source], percentile);
+    }
+
+    private static long percentile(long[] sorted, float percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(sorted.length * percentile / 100f) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(768);
+        sb.append(String.format(Locale.US, "events=%d virtual=%dms wall=%.2fms throughput=%.0f/s notifications=%d alloc=%s%n",
+                events, virtualDurationMs, wallNanos / 1e6, getEventsPerSecond(), notifications,
+                allocatedBytes < 0 ? "n/a" : allocatedBytes + "B"));
+        sb.append(String.format(Locale.US, "%-10s %8s %8s %8s %8s %9s %9s %9s %8s %8s%n",
+                "source", "recv", "coal", "disp", "drop", "p50(ns)", "p90(ns)", "p99(ns)", "v50(ms)", "v99(ms)"));
+        for (int s = 0; s < StatusMetrics.SOURCE_COUNT; s++) {
+            sb.append(String.format(Locale.US, "%-10s %8d %8d %8d %8d %9d %9d %9d %8d %8d%n",
+                    StatusMetrics.sourceName(s), mReceived[s], mCoalesced[s], mDispatched[s], mDropped[s],
+                    getLatencyPercentileNanos(s, 50), getLatencyPercentileNanos(s, 90),
+                    getLatencyPercentileNanos(s, 99),
+                    getVirtualLatencyPercentileMs(s, 50), getVirtualLatencyPercentileMs(s, 99)));
+        }
+        return sb.toString();
+    }
+}
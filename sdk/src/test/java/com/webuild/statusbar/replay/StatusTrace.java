@@ -0,0 +1,244 @@
+package com.webuild.statusbar.replay;
+
+import com.webuild.statusbar.metrics.FlightRecorder;
+import com.webuild.statusbar.metrics.StatusMetrics;
+import com.webuild.statusbar.state.NetworkTable;
+import com.webuild.statusbar.state.StatusWord;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 状态事件轨迹
+ * 按时间顺序保存的原始事件序列，时间为相对轨迹开始的毫秒数，全部存放在基本类型数组中。
+ * 可以手工构造、用 {@link #storm} 随机生成，或从 {@link FlightRecorder} 导出的文件读取。
+ */
+public final class StatusTrace {
+    public static final int EVENT_BATTERY = 0;     // level, charging (0/1)
+    public static final int EVENT_NETWORK = 1;     // default transport, Wi-Fi RSSI (dBm)
+    public static final int EVENT_RSSI = 2;        // Wi-Fi RSSI (dBm)
+    public static final int EVENT_BLUETOOTH = 3;   // BluetoothObserver state, connected devices
+    public static final int EVENT_TIME_TICK = 4;
+    public static final int EVENT_TIME_FORMAT = 5; // is24Hour (0/1)
+
+    // Raw BluetoothObserver states: off, on, connected
+    private static final int[] BLUETOOTH_STATES = {-1, 0, 2};
+    private static final int FLIGHT_MAGIC = 0x57424652;
+    private static final int FLIGHT_HEADER_BYTES = 16;
+    private static final int FLIGHT_RECORD_BYTES = 24;
+
+    private long[] mTimes;
+    private int[] mTypes;
+    private int[] mValue1;
+    private int[] mValue2;
+    private int mSize;
+
+    public StatusTrace() {
+        this(64);
+    }
+
+    public StatusTrace(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        mTimes = new long[capacity];
+        mTypes = new int[capacity];
+        mValue1 = new int[capacity];
+        mValue2 = new int[capacity];
+    }
+
+    public StatusTrace battery(long timeMs, int level, boolean charging) {
+        return add(timeMs, EVENT_BATTERY, level, charging ? 1 : 0);
+    }
+
+    /**
+     * @param rssi 仅 Wi-Fi 有意义，其他传输类型传 {@link NetworkTable#INVALID_RSSI}
+     */
+    public StatusTrace network(long timeMs, int transport, int rssi) {
+        return add(timeMs, EVENT_NETWORK, transport, rssi);
+    }
+
+    public StatusTrace rssi(long timeMs, int rssi) {
+        return add(timeMs, EVENT_RSSI, rssi, 0);
+    }
+
+    public StatusTrace bluetooth(long timeMs, int state) {
+        return bluetooth(timeMs, state, state == 2 ? 1 : 0);
+    }
+
+    public StatusTrace bluetooth(long timeMs, int state, int connectedDevices) {
+        return add(timeMs, EVENT_BLUETOOTH, state, connectedDevices);
+    }
+
+    public StatusTrace timeTick(long timeMs) {
+        return add(timeMs, EVENT_TIME_TICK, 0, 0);
+    }
+
+    public StatusTrace timeFormat(long timeMs, boolean is24Hour) {
+        return add(timeMs, EVENT_TIME_FORMAT, is24Hour ? 1 : 0, 0);
+    }
+
+    /**
+     * @param timeMs 不得早于上一个事件
+     */
+    public StatusTrace add(long timeMs, int type, int value1, int value2) {
+        if (mSize > 0 && timeMs < mTimes[mSize - 1]) {
+            throw new IllegalArgumentException("Trace events must be in time order: " + timeMs);
+        }
+        if (mSize == mTimes.length) {
+            int capacity = mSize * 2;
+            mTimes = Arrays.copyOf(mTimes, capacity);
+            mTypes = Arrays.copyOf(mTypes, capacity);
+            mValue1 = Arrays.copyOf(mValue1, capacity);
+            mValue2 = Arrays.copyOf(mValue2, capacity);
+        }
+        mTimes[mSize] = timeMs;
+        mTypes[mSize] = type;
+        mValue1[mSize] = value1;
+        mValue2[mSize] = value2;
+        mSize++;
+        return this;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public long durationMs() {
+        return mSize == 0 ? 0 : mTimes[mSize - 1];
+    }
+
+    public long timeAt(int index) {
+        return mTimes[index];
+    }
+
+    public int typeAt(int index) {
+        return mTypes[index];
+    }
+
+    public int value1At(int index) {
+        return mValue1[index];
+    }
+
+    public int value2At(int index) {
+        return mValue2[index];
+    }
+
+    /**
+     * 生成一段可复现的事件风暴：以 RSSI 抖动为主，夹杂网络切换、电量、蓝牙和时间格式变化。
+     * 不含 tick，分钟 tick 由 {@link ReplayEngine} 的虚拟时钟产生。
+     */
+    public static StatusTrace storm(long seed, int events, long durationMs) {
+        Random random = new Random(seed);
+        StatusTrace trace = new StatusTrace(events);
+        int level = 80;
+        for (int i = 0; i < events; i++) {
+            long t = events <= 1 ? 0 : durationMs * i / (events - 1);
+            int roll = random.nextInt(100);
+            if (roll < 55) {
+                trace.rssi(t, -100 + random.nextInt(51));
+            } else if (roll < 70) {
+                if (random.nextBoolean()) {
+                    trace.network(t, StatusWord.TRANSPORT_WIFI, -100 + random.nextInt(51));
+                } else {
+                    trace.network(t, StatusWord.TRANSPORT_CELLULAR, NetworkTable.INVALID_RSSI);
+                }
+            } else if (roll < 88) {
+                level = Math.max(0, Math.min(100, level + random.nextInt(3) - 1));
+                trace.battery(t, level, random.nextInt(10) == 0);
+            } else if (roll < 97) {
+                int state = BLUETOOTH_STATES[random.nextInt(BLUETOOTH_STATES.length)];
+                trace.bluetooth(t, state, state == 2 ? 1 + random.nextInt(2) : 0);
+            } else {
+                trace.timeFormat(t, random.nextBoolean());
+            }
+        }
+        return trace;
+    }
+
+    /**
+     * 读取 {@link FlightRecorder#dump(File)} 导出的文件。
+     * 接收记录和被合并的网络事件不会出现在轨迹中；录制的 Wi-Fi 格数换回该档中间的 RSSI。录制的 tick 保留为 {@link #EVENT_TIME_TICK}，
+     * 回放时应关闭虚拟时钟的分钟 tick。
+     */
+    public static StatusTrace fromFlightRecord(File file) throws IOException {
+        ByteBuffer buffer;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            byte[] bytes = new byte[(int) raf.length()];
+            raf.readFully(bytes);
+            buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        if (buffer.remaining() < FLIGHT_HEADER_BYTES || buffer.getInt() != FLIGHT_MAGIC) {
+            throw new IOException("Not a flight recorder dump: " + file);
+        }
+        buffer.getInt(); // version
+        int count = buffer.getInt();
+        buffer.getInt();
+        if (buffer.remaining() < (long) count * FLIGHT_RECORD_BYTES) {
+            throw new IOException("Truncated flight recorder dump: " + file);
+        }
+        StatusTrace trace = new StatusTrace(count);
+        long start = -1;
+        for (int i = 0; i < count; i++) {
+            long time = buffer.getLong();
+            long tag = buffer.getLong();
+            long values = buffer.getLong();
+            int source = (int) (tag >> 32);
+            int outcome = (int) tag;
+            int value1 = (int) (values >> 32);
+            int value2 = (int) values;
+            // Receipts precede the outcome of the same event; only the outcomes carry the filtered values
+            if (outcome == FlightRecorder.OUTCOME_RECEIVED || outcome == FlightRecorder.OUTCOME_COALESCED
+                    || outcome == FlightRecorder.OUTCOME_INSTALLED) {
+                continue;
+            }
+            if (start < 0) {
+                start = time;
+            }
+            // Wall clock may step backwards between records; keep the trace monotonic
+            long t = Math.max(time - start, trace.durationMs());
+            switch (source) {
+                case StatusMetrics.SOURCE_BATTERY: {
+                    int scale = value1 & 0xFFFF;
+                    int level = scale <= 0 ? 0 : (value1 >>> 16) * 100 / scale;
+                    int status = value2 >> 16;
+                    int plugged = value2 & 0xFFFF;
+                    // BatteryManager.BATTERY_STATUS_CHARGING / BATTERY_STATUS_FULL
+                    trace.battery(t, level, status == 2 || status == 5 || plugged != 0);
+                    break;
+                }
+                case StatusMetrics.SOURCE_NETWORK:
+                    trace.network(t, value1, value1 == StatusWord.TRANSPORT_WIFI
+                            ? rssiForLevel(value2) : NetworkTable.INVALID_RSSI);
+                    break;
+                case StatusMetrics.SOURCE_BLUETOOTH:
+                    trace.bluetooth(t, value1, value2);
+                    break;
+                case StatusMetrics.SOURCE_TIME:
+                    if (value1 == 0) {
+                        trace.timeTick(t);
+                    } else {
+                        trace.timeFormat(t, value2 != 0);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return trace;
+    }
+
+    // Middle of the level's bucket, far enough from the edges for SignalFilter's margin
+    private static int rssiForLevel(int level) {
+        switch (level) {
+            case 0: return -100;
+            case 1: return -83;
+            case 2: return -72;
+            case 3: return -61;
+            default: return -50;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.webuild.statusbar.replay;
+
+import com.webuild.statusbar.state.Scheduler;
+
+/**
+ * 虚拟时钟
+ * {@link Scheduler} 的回放实现，代替 Handler.postDelayed：时间只随 {@link #advanceTo(long)} 前进，到期任务按时间顺序在调用线程执行。
+ * 任务槽位预先分配，调度过程不产生对象，不会干扰回放时的分配统计。
+ */
+public final class VirtualClock implements Scheduler {
+    private static final int MAX_TASKS = 16;
+
+    private final Runnable[] mTasks = new Runnable[MAX_TASKS];
+    private final long[] mDueMs = new long[MAX_TASKS];
+    private long mNowMs;
+
+    /**
+     * 清空全部任务并回到时间 0
+     */
+    public void reset() {
+        for (int i = 0; i < MAX_TASKS; i++) {
+            mTasks[i] = null;
+        }
+        mNowMs = 0;
+    }
+
+    @Override
+    public long now() {
+        return mNowMs;
+    }
+
+    /**
+     * 同一个 Runnable 只保留最近一次调度，与先 removeCallbacks 再 postDelayed 等价
+     */
+    public void postDelayed(Runnable task, long delayMs) {
+        postAt(task, mNowMs + Math.max(0, delayMs));
+    }
+
+    @Override
+    public void postAt(Runnable task, long dueMs) {
+        int free = -1;
+        for (int i = 0; i < MAX_TASKS; i++) {
+            if (mTasks[i] == task) {
+                mDueMs[i] = dueMs;
+                return;
+            }
+            if (free < 0 && mTasks[i] == null) {
+                free = i;
+            }
+        }
+        if (free < 0) {
+            throw new IllegalStateException("Too many pending tasks");
+        }
+        mTasks[free] = task;
+        mDueMs[free] = dueMs;
+    }
+
+    @Override
+    public void cancel(Runnable task) {
+        for (int i = 0; i < MAX_TASKS; i++) {
+            if (mTasks[i] == task) {
+                mTasks[i] = null;
+            }
+        }
+    }
+
+    public boolean hasCallbacks(Runnable task) {
+        for (int i = 0; i < MAX_TASKS; i++) {
+            if (mTasks[i] == task) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 前进到 nowMs，依次执行期间到期的任务；任务内重新调度的任务若也已到期会在本次继续执行
+     */
+    public void advanceTo(long nowMs) {
+        while (true) {
+            int next = -1;
+            for (int i = 0; i < MAX_TASKS; i++) {
+                if (mTasks[i] != null && mDueMs[i] <= nowMs && (next < 0 || mDueMs[i] < mDueMs[next])) {
+                    next = i;
+                }
+            }
+            if (next < 0) {
+                break;
+            }
+            Runnable task = mTasks[next];
+            mTasks[next] = null;
+            mNowMs = Math.max(mNowMs, mDueMs[next]);
+            task.run();
+        }
+        mNowMs = Math.max(mNowMs, nowMs);
+    }
+}
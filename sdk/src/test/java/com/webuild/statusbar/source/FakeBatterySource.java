@@ -0,0 +1,39 @@
+package com.webuild.statusbar.source;
+
+/**
+ * 可编程的电池状态源，用于 JVM 单测和压测
+ */
+public class FakeBatterySource implements StatusSource {
+    private volatile StatusSink mSink;
+    private int mLevel = 100;
+    private boolean mCharging;
+
+    @Override
+    public void start(StatusSink sink) {
+        mSink = sink;
+        sink.onBatteryChanged(mLevel, mCharging);
+    }
+
+    @Override
+    public void stop() {
+        mSink = null;
+    }
+
+    public void set(int level, boolean charging) {
+        mLevel = level;
+        mCharging = charging;
+        StatusSink sink = mSink;
+        if (sink != null) {
+            sink.onBatteryChanged(level, charging);
+        }
+    }
+
+    /**
+     * 依次上报 levels 中的每个电量
+     */
+    public void play(int[] levels, boolean charging) {
+        for (int level : levels) {
+            set(level, charging);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.webuild.statusbar.source;
+
+/**
+ * 可编程的蓝牙状态源，用于 JVM 单测和压测
+ */
+public class FakeBluetoothSource implements StatusSource {
+    private volatile StatusSink mSink;
+    private int mState = -1;
+    private int mDevices;
+
+    @Override
+    public void start(StatusSink sink) {
+        mSink = sink;
+        sink.onBluetoothChanged(mState, mDevices);
+    }
+
+    @Override
+    public void stop() {
+        mSink = null;
+    }
+
+    /**
+     * @param state -1: 关闭, 0: 开启未连接, 2: 已连接
+     */
+    public void set(int state) {
+        set(state, state == 2 ? 1 : 0);
+    }
+
+    /**
+     * @param connectedDevices 已连接设备数
+     */
+    public void set(int state, int connectedDevices) {
+        mState = state;
+        mDevices = connectedDevices;
+        StatusSink sink = mSink;
+        if (sink != null) {
+            sink.onBluetoothChanged(state, connectedDevices);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.webuild.statusbar.source;
+
+/**
+ * 虚拟时钟状态源
+ * 时间只随 {@link #advanceTo(long)} 前进，每跨过一个整分钟上报一次 tick，用于 JVM 单测和压测。
+ */
+public class FakeClockSource implements StatusSource {
+    private static final long MINUTE_MS = 60_000L;
+
+    private volatile StatusSink mSink;
+    private long mNowMs;
+    private boolean mIs24Hour = true;
+
+    public FakeClockSource(long startMs) {
+        mNowMs = startMs;
+    }
+
+    @Override
+    public void start(StatusSink sink) {
+        mSink = sink;
+        sink.onTimeFormatChanged(mIs24Hour);
+        sink.onTimeTick();
+    }
+
+    @Override
+    public void stop() {
+        mSink = null;
+    }
+
+    public long now() {
+        return mNowMs;
+    }
+
+    public void setFormat(boolean is24Hour) {
+        mIs24Hour = is24Hour;
+        StatusSink sink = mSink;
+        if (sink != null) {
+            sink.onTimeFormatChanged(is24Hour);
+        }
+    }
+
+    /**
+     * @return 本次前进触发的 tick 数
+     */
+    public int advanceTo(long nowMs) {
+        if (nowMs <= mNowMs) {
+            return 0;
+        }
+        long ticks = nowMs / MINUTE_MS - mNowMs / MINUTE_MS;
+        mNowMs = nowMs;
+        StatusSink sink = mSink;
+        if (sink != null) {
+            for (long i = 0; i < ticks; i++) {
+                sink.onTimeTick();
+            }
+        }
+        return (int) ticks;
+    }
+
+    public void tick() {
+        StatusSink sink = mSink;
+        if (sink != null) {
+            sink.onTimeTick();
+        }
+    }
+}
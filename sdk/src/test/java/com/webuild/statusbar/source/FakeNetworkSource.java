@@ -0,0 +1,41 @@
+package com.webuild.statusbar.source;
+
+import com.webuild.statusbar.state.StatusWord;
+
+/**
+ * 可编程的网络状态源，用于 JVM 单测和压测
+ */
+public class FakeNetworkSource implements StatusSource {
+    private volatile StatusSink mSink;
+    private int mTransport = StatusWord.TRANSPORT_NONE;
+    private int mSignalLevel;
+
+    @Override
+    public void start(StatusSink sink) {
+        mSink = sink;
+        sink.onNetworkChanged(mTransport, mSignalLevel);
+    }
+
+    @Override
+    public void stop() {
+        mSink = null;
+    }
+
+    public void set(int transport, int signalLevel) {
+        mTransport = transport;
+        mSignalLevel = signalLevel;
+        StatusSink sink = mSink;
+        if (sink != null) {
+            sink.onNetworkChanged(transport, signalLevel);
+        }
+    }
+
+    /**
+     * 以 Wi-Fi 依次上报 levels 中的每个信号等级
+     */
+    public void playWifi(int[] levels) {
+        for (int level : levels) {
+            set(StatusWord.TRANSPORT_WIFI, level);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.webuild.statusbar.state;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * AdaptiveDebounce 的窗口变化
+ */
+public class AdaptiveDebounceTest {
+
+    @Test
+    public void firstEventUsesTheMinimum() {
+        AdaptiveDebounce debounce = new AdaptiveDebounce();
+        assertEquals(AdaptiveDebounce.DEFAULT_MIN_MS, debounce.onEvent(1_000));
+    }
+
+    @Test
+    public void burstDoublesUpToTheMaximum() {
+        AdaptiveDebounce debounce = new AdaptiveDebounce(100, 1_000);
+        long[] expected = {100, 200, 400, 800, 1_000, 1_000};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], debounce.onEvent(i * 50L));
+        }
+    }
+
+    @Test
+    public void gapOfOneWindowDoesNotGrow() {
+        AdaptiveDebounce debounce = new AdaptiveDebounce(100, 1_000);
+        debounce.onEvent(0);
+        // Exactly one window later is not inside it, and shrinking stops at the minimum
+        assertEquals(100, debounce.onEvent(100));
+    }
+
+    @Test
+    public void moderateGapHalves() {
+        AdaptiveDebounce debounce = new AdaptiveDebounce(100, 1_000);
+        debounce.onEvent(0);
+        debounce.onEvent(10);
+        debounce.onEvent(20);
+        assertEquals(400, debounce.getWindowMs());
+        // At least one window but under four
+        assertEquals(200, debounce.onEvent(20 + 400));
+        assertEquals(100, debounce.onEvent(420 + 799));
+    }
+
+    @Test
+    public void quietGapOfFourWindowsResets() {
+        AdaptiveDebounce debounce = new AdaptiveDebounce(100, 1_000);
+        debounce.onEvent(0);
+        debounce.onEvent(10);
+        debounce.onEvent(20);
+        assertEquals(400, debounce.getWindowMs());
+        assertEquals(100, debounce.onEvent(20 + 4 * 400));
+
+        AdaptiveDebounce shorter = new AdaptiveDebounce(100, 1_000);
+        shorter.onEvent(0);
+        shorter.onEvent(10);
+        shorter.onEvent(20);
+        assertEquals(200, shorter.onEvent(20 + 4 * 400 - 1));
+    }
+
+    @Test
+    public void resetForgetsTheBurst() {
+        AdaptiveDebounce debounce = new AdaptiveDebounce(100, 1_000);
+        debounce.onEvent(0);
+        debounce.onEvent(10);
+        debounce.reset();
+        assertEquals(100, debounce.getWindowMs());
+        // No previous event, so this one cannot count as inside a window
+        assertEquals(100, debounce.onEvent(20));
+    }
+
+    @Test
+    public void boundsAreSanitized() {
+        AdaptiveDebounce inverted = new AdaptiveDebounce(300, 100);
+        assertEquals(300, inverted.onEvent(0));
+        assertEquals(300, inverted.onEvent(10));
+
+        // No gap is shorter than an empty window, so a zero minimum never grows
+        AdaptiveDebounce zero = new AdaptiveDebounce(0, 50);
+        assertEquals(0, zero.onEvent(0));
+        assertEquals(0, zero.onEvent(0));
+        assertEquals(0, zero.getWindowMs());
+    }
+}
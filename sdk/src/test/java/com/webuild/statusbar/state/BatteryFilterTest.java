@@ -0,0 +1,178 @@
+package com.webuild.statusbar.state;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * BatteryFilter 的量化、低电量滞回和限流
+ */
+public class BatteryFilterTest {
+
+    @Test
+    public void firstOfferAlwaysDispatches() {
+        BatteryFilter filter = new BatteryFilter();
+        filter.setStep(10);
+        filter.setMaxPerMinute(1);
+        assertEquals(-1, filter.getLevel());
+        assertEquals(BatteryFilter.RESULT_DISPATCH, filter.offer(55, false, 0));
+        assertEquals(55, filter.getLevel());
+        assertFalse(filter.isCharging());
+    }
+
+    @Test
+    public void stepDropsChangesSmallerThanTheStep() {
+        BatteryFilter filter = new BatteryFilter();
+        filter.setStep(5);
+        filter.offer(80, false, 0);
+        assertEquals(BatteryFilter.RESULT_DROP, filter.offer(80, false, 0));
+        assertEquals(BatteryFilter.RESULT_DROP, filter.offer(77, false, 0));
+        assertEquals(BatteryFilter.RESULT_DROP, filter.offer(76, false, 0));
+        assertEquals(80, filter.getLevel());
+        assertEquals(BatteryFilter.RESULT_DISPATCH, filter.offer(75, false, 0));
+        assertEquals(75, filter.getLevel());
+        // Measured from the last report, not from the last offer
+        assertEquals(BatteryFilter.RESULT_DROP, filter.offer(79, false, 0));
+        assertEquals(BatteryFilter.RESULT_DISPATCH, filter.offer(80, false, 0));
+    }
+
+    @Test
+    public void fullAndEmptyBypassTheStep() {
+        BatteryFilter filter = new BatteryFilter();
+        filter.setStep(10);
+        filter.offer(97, true, 0);
+        assertEquals(BatteryFilter.RESULT_DISPATCH, filter.offer(100, true, 0));
+        assertEquals(100, filter.getLevel());
+
+        filter.reset();
+        filter.offer(3, true, 0);
+        assertEquals(BatteryFilter.RESULT_DISPATCH, filter.offer(0, true, 0));
+        assertEquals(0, filter.getLevel());
+    }
+
+    @Test
+    public void stepIsClamped() {
+        BatteryFilter filter = new BatteryFilter();
+        filter.setStep(0);
+        assertEquals(1, filter.getStep());
+        filter.setStep(99);
+        assertEquals(50, filter.getStep());
+    }
+
+    @Test
+    public void lowThresholdEdges() {
+        BatteryFilter filter = new BatteryFilter();
+        filter.setStep(10);
+        filter.offer(BatteryFilter.LOW_THRESHOLD, false, 0);
+        assertEquals(BatteryFilter.LOW_THRESHOLD, filter.getLevel());
+        // Entering low is reported even though it is less than a step
+        assertEquals(BatteryFilter.RESULT_DISPATCH, filter.offer(BatteryFilter.LOW_THRESHOLD - 1, false, 0));
+        assertEquals(BatteryFilter.LOW_THRESHOLD - 1, filter.getLevel());
+        // Every percent counts while low
+        assertEquals(BatteryFilter.RESULT_DISPATCH, filter.offer(BatteryFilter.LOW_THRESHOLD - 2, false, 0));
+        assertEquals(BatteryFilter.LOW_THRESHOLD - 2, filter.getLevel());
+    }
+
+    @Test
+    public void latchedLowHoldsNineteenInsideTheHysteresis() {
+        BatteryFilter filter = new BatteryFilter();
+        filter.offer(19, false, 0);
+        assertEquals(19, filter.getLevel());
+        assertEquals(BatteryFilter.RESULT_DROP, filter.offer(20, false, 0));
+        assertEquals(BatteryFilter.RESULT_DROP, filter.offer(21, false, 0));
+        assertEquals(19, filter.getLevel());
+        assertEquals(BatteryFilter.RESULT_DISPATCH,
+                filter.offer(BatteryFilter.LOW_THRESHOLD + BatteryFilter.DEFAULT_HYSTERESIS, false, 0));
+        assertEquals(22, filter.getLevel());
+        // Out again, so 19 is a fresh entry
+        assertEquals(BatteryFilter.RESULT_DISPATCH, filter.offer(21, false, 0));
+        assertEquals(BatteryFilter.RESULT_DISPATCH, filter.offer(19, false, 0));
+        assertEquals(19, filter.getLevel());
+    }
+
+    @Test
+    public void zeroHysteresisLeavesLowAtTheThreshold() {
+        BatteryFilter filter = new BatteryFilter();
+        filter.setHysteresis(0);
+        filter.offer(19, false, 0);
+        assertEquals(BatteryFilter.RESULT_DISPATCH, filter.offer(20, false, 0));
+        assertEquals(20, filter.getLevel());
+    }
+
+    @Test
+    public void chargingIsNeverLow() {
+        BatteryFilter filter = new BatteryFilter();
+        filter.offer(18, false, 0);
+        assertEquals(BatteryFilter.RESULT_DISPATCH, filter.offer(20, true, 0));
+        assertEquals(20, filter.getLevel());
+        assertTrue(filter.isCharging());
+    }
+
+    @Test
+    public void rateLimitDefersToTheEndOfTheWindow() {
+        BatteryFilter filter = new BatteryFilter();
+        filter.setMaxPerMinute(2);
+        assertEquals(BatteryFilter.RESULT_DISPATCH, filter.offer(80, false, 0));
+        assertEquals(BatteryFilter.RESULT_DISPATCH, filter.offer(79, false, 10_000));
+        assertEquals(BatteryFilter.RESULT_DEFER, filter.offer(78, false, 20_000));
+        assertTrue(filter.hasPending());
+        // The oldest of the two dispatches leaves the window first
+        assertEquals(BatteryFilter.WINDOW_MS, filter.getDeferUntil());
+        // Only the newest deferred value is kept
+        assertEquals(BatteryFilter.RESULT_DEFER, filter.offer(77, false, 30_000));
+        assertEquals(BatteryFilter.WINDOW_MS, filter.getDeferUntil());
+        assertEquals(79, filter.getLevel());
+
+        assertEquals(BatteryFilter.RESULT_DISPATCH, filter.flush(BatteryFilter.WINDOW_MS));
+        assertEquals(77, filter.getLevel());
+        assertFalse(filter.hasPending());
+        assertEquals(BatteryFilter.RESULT_DROP, filter.flush(BatteryFilter.WINDOW_MS));
+        // Next slot frees when the 10s dispatch ages out
+        assertEquals(BatteryFilter.RESULT_DEFER, filter.offer(76, false, BatteryFilter.WINDOW_MS + 1));
+        assertEquals(10_000 + BatteryFilter.WINDOW_MS, filter.getDeferUntil());
+    }
+
+    @Test
+    public void returningToTheReportedValueCancelsThePending() {
+        BatteryFilter filter = new BatteryFilter();
+        filter.setMaxPerMinute(1);
+        filter.offer(80, false, 0);
+        assertEquals(BatteryFilter.RESULT_DEFER, filter.offer(79, false, 1_000));
+        assertEquals(BatteryFilter.RESULT_DROP, filter.offer(80, false, 2_000));
+        assertFalse(filter.hasPending());
+        assertEquals(BatteryFilter.RESULT_DROP, filter.flush(BatteryFilter.WINDOW_MS));
+        assertEquals(80, filter.getLevel());
+    }
+
+    @Test
+    public void urgentChangesBypassTheRateLimit() {
+        BatteryFilter filter = new BatteryFilter();
+        filter.setMaxPerMinute(1);
+        filter.offer(50, false, 0);
+        assertEquals(BatteryFilter.RESULT_DISPATCH, filter.offer(50, true, 1_000));
+        assertTrue(filter.isCharging());
+        assertEquals(BatteryFilter.RESULT_DISPATCH, filter.offer(50, false, 2_000));
+
+        assertEquals(BatteryFilter.RESULT_DEFER, filter.offer(21, false, 3_000));
+        // Crossing into low is never held back
+        assertEquals(BatteryFilter.RESULT_DISPATCH, filter.offer(19, false, 5_000));
+        assertEquals(19, filter.getLevel());
+        assertFalse(filter.hasPending());
+    }
+
+    @Test
+    public void resetForgetsReportsButKeepsSettings() {
+        BatteryFilter filter = new BatteryFilter();
+        filter.setStep(5);
+        filter.setMaxPerMinute(1);
+        filter.offer(80, false, 0);
+        assertEquals(BatteryFilter.RESULT_DEFER, filter.offer(70, false, 1_000));
+        filter.reset();
+        assertFalse(filter.hasPending());
+        assertEquals(-1, filter.getLevel());
+        assertEquals(BatteryFilter.RESULT_DISPATCH, filter.offer(70, false, 2_000));
+        assertEquals(5, filter.getStep());
+        assertEquals(1, filter.getMaxPerMinute());
+        assertEquals(BatteryFilter.RESULT_DEFER, filter.offer(60, false, 3_000));
+    }
+}
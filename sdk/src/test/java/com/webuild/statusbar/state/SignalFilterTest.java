@@ -0,0 +1,111 @@
+package com.webuild.statusbar.state;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * SignalFilter 的分档、滞回和平滑
+ */
+public class SignalFilterTest {
+
+    @Test
+    public void levelsMatchTheLegacyBuckets() {
+        int[][] cases = {
+                {-120, 0}, {-100, 0}, {-89, 0},
+                {-88, 1}, {-78, 1},
+                {-77, 2}, {-67, 2},
+                {-66, 3}, {-56, 3},
+                {-55, 4}, {-30, 4},
+        };
+        for (int[] c : cases) {
+            SignalFilter filter = new SignalFilter();
+            assertEquals("rssi " + c[0], c[1], filter.offer(c[0]));
+        }
+    }
+
+    @Test
+    public void noLevelBeforeTheFirstSample() {
+        SignalFilter filter = new SignalFilter();
+        assertEquals(-1, filter.getLevel());
+        filter.offer(-60);
+        filter.reset();
+        assertEquals(-1, filter.getLevel());
+    }
+
+    @Test
+    public void defaultFollowsASparseJumpAtOnce() {
+        SignalFilter filter = new SignalFilter();
+        assertEquals(1, filter.offer(-80));
+        // One sample after the jump is all an idle link reports
+        assertEquals(4, filter.offer(-50));
+        assertEquals(0, filter.offer(-95));
+    }
+
+    @Test
+    public void marginHoldsTheLevelAroundAnEdge() {
+        SignalFilter filter = new SignalFilter();
+        assertEquals(4, filter.offer(-50));
+        // Edge 3/4 is at -55 dBm; dropping needs more than 3 dB below it
+        assertEquals(4, filter.offer(-56));
+        assertEquals(4, filter.offer(-58));
+        assertEquals(3, filter.offer(-59));
+        // And rising back needs 3 dB above it
+        assertEquals(3, filter.offer(-54));
+        assertEquals(3, filter.offer(-53));
+        assertEquals(4, filter.offer(-52));
+    }
+
+    @Test
+    public void zeroMarginSwitchesRightAtTheEdge() {
+        SignalFilter filter = new SignalFilter();
+        filter.setMargin(0);
+        assertEquals(4, filter.offer(-55));
+        assertEquals(3, filter.offer(-56));
+        assertEquals(4, filter.offer(-55));
+    }
+
+    @Test
+    public void smoothingAveragesWhenEnabled() {
+        SignalFilter filter = new SignalFilter();
+        filter.setSmoothing(0.5f);
+        assertEquals(1, filter.offer(-80));
+        // The average sits at -65 dBm
+        assertEquals(2, filter.offer(-50));
+    }
+
+    @Test
+    public void invalidSmoothingFallsBackToNone() {
+        SignalFilter filter = new SignalFilter();
+        filter.setSmoothing(0f);
+        filter.offer(-80);
+        assertEquals(4, filter.offer(-50));
+        filter.setSmoothing(1.5f);
+        assertEquals(0, filter.offer(-100));
+    }
+
+    @Test
+    public void repeatedReadingsStillConvergeWhenSmoothing() {
+        NetworkTable table = new NetworkTable();
+        table.setSignalFilter(SignalFilter.DEFAULT_MARGIN_DB, 0.5f);
+        NetworkTable.Entry entry = table.obtain("wifi");
+        entry.transport = StatusWord.TRANSPORT_WIFI;
+        entry.offerRssi(-80);
+        // The link settles at -50 dBm and keeps reporting that same value
+        for (int i = 0; i < 5; i++) {
+            entry.offerRssi(-50);
+        }
+        assertEquals(4, (int) table.currentState());
+    }
+
+    @Test
+    public void invalidRssiIsIgnored() {
+        NetworkTable table = new NetworkTable();
+        NetworkTable.Entry entry = table.obtain("wifi");
+        entry.transport = StatusWord.TRANSPORT_WIFI;
+        entry.offerRssi(-50);
+        table.offerWifiRssi(NetworkTable.INVALID_RSSI);
+        assertEquals(-50, entry.getRssi());
+        assertEquals(4, (int) table.currentState());
+    }
+}
@@ -0,0 +1,192 @@
+package com.webuild.statusbar.state;
+
+import com.webuild.statusbar.source.FakeBatterySource;
+import com.webuild.statusbar.source.FakeBluetoothSource;
+import com.webuild.statusbar.source.FakeClockSource;
+import com.webuild.statusbar.source.FakeNetworkSource;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * StatusEngine 在 JVM 上的单测与压测，状态全部来自 Fake 状态源
+ */
+public class StatusEngineTest {
+    private StatusEngine mEngine;
+    private FakeBatterySource mBattery;
+    private FakeNetworkSource mNetwork;
+    private FakeBluetoothSource mBluetooth;
+    private FakeClockSource mClock;
+    private final AtomicInteger mNotifications = new AtomicInteger();
+    private final AtomicInteger mLastChanged = new AtomicInteger();
+
+    @Before
+    public void setUp() {
+        mEngine = new StatusEngine();
+        mBattery = new FakeBatterySource();
+        mNetwork = new FakeNetworkSource();
+        mBluetooth = new FakeBluetoothSource();
+        mClock = new FakeClockSource(0);
+        mEngine.addSource(mBattery);
+        mEngine.addSource(mNetwork);
+        mEngine.addSource(mBluetooth);
+        mEngine.addSource(mClock);
+        mEngine.addListener((word, changedFields) -> {
+            mNotifications.incrementAndGet();
+            mLastChanged.set(changedFields);
+        });
+    }
+
+    @Test
+    public void startReportsEverySource() {
+        mEngine.start();
+        long word = mEngine.getWord();
+        assertEquals(100, StatusWord.batteryLevel(word));
+        assertEquals(StatusWord.TRANSPORT_NONE, StatusWord.transport(word));
+        assertEquals(-1, StatusWord.bluetoothState(word));
+        assertTrue(StatusWord.hasTime(word));
+        assertTrue(StatusWord.is24HourFormat(word));
+    }
+
+    @Test
+    public void unchangedValueDoesNotNotify() {
+        mEngine.start();
+        mBattery.set(50, false);
+        int before = mNotifications.get();
+        mBattery.set(50, false);
+        mNetwork.set(StatusWord.TRANSPORT_NONE, 0);
+        assertEquals(before, mNotifications.get());
+    }
+
+    @Test
+    public void changedFieldsCoverOnlyTheReportedSource() {
+        mEngine.start();
+        mBattery.set(42, false);
+        assertEquals(StatusSnapshot.FIELD_BATTERY_LEVEL, mLastChanged.get());
+        mBattery.set(42, true);
+        assertEquals(StatusSnapshot.FIELD_CHARGING, mLastChanged.get());
+        mNetwork.set(StatusWord.TRANSPORT_WIFI, 3);
+        assertEquals(StatusSnapshot.FIELD_NETWORK, mLastChanged.get());
+        mBluetooth.set(2, 3);
+        assertEquals(StatusSnapshot.FIELD_BLUETOOTH, mLastChanged.get());
+        assertEquals(3, StatusWord.bluetoothDevices(mEngine.getWord()));
+        mClock.setFormat(false);
+        assertEquals(StatusSnapshot.FIELD_TIME_FORMAT, mLastChanged.get());
+    }
+
+    @Test
+    public void clockTicksOncePerMinuteBoundary() {
+        mEngine.start();
+        int tick = StatusWord.timeTick(mEngine.getWord());
+        assertEquals(0, mClock.advanceTo(59_999));
+        assertEquals(3, mClock.advanceTo(180_000));
+        assertEquals(tick + 3, StatusWord.timeTick(mEngine.getWord()));
+        assertEquals(StatusSnapshot.FIELD_TIME_TICK, mLastChanged.get());
+    }
+
+    @Test
+    public void stoppedSourceNoLongerReports() {
+        mEngine.start();
+        mEngine.removeSource(mBattery);
+        int before = mNotifications.get();
+        mBattery.set(10, false);
+        assertEquals(before, mNotifications.get());
+        assertEquals(100, StatusWord.batteryLevel(mEngine.getWord()));
+    }
+
+    @Test
+    public void seedDoesNotNotifyAndLaterChangesDiffAgainstIt() {
+        long cached = StatusWord.withBattery(StatusWord.EMPTY, 77, false);
+        StatusEngine engine = new StatusEngine();
+        AtomicInteger changed = new AtomicInteger(-1);
+        engine.addListener((word, changedFields) -> changed.set(changedFields));
+        assertTrue(engine.seed(cached));
+        assertEquals(-1, changed.get());
+        engine.onBatteryChanged(77, false);
+        assertEquals(-1, changed.get());
+        engine.onBatteryChanged(78, false);
+        assertEquals(StatusSnapshot.FIELD_BATTERY_LEVEL, changed.get());
+    }
+
+    @Test
+    public void seedNeverReplacesALiveReport() {
+        mEngine.start();
+        long live = mEngine.getWord();
+        assertFalse(mEngine.seed(StatusWord.withBattery(StatusWord.EMPTY, 5, true)));
+        assertEquals(live, mEngine.getWord());
+    }
+
+    @Test
+    public void concurrentSourcesKeepTheirLastWrite() throws InterruptedException {
+        mEngine.start();
+        final int rounds = 200_000;
+        CountDownLatch start = new CountDownLatch(1);
+        Thread battery = new Thread(() -> {
+            await(start);
+            for (int i = 0; i < rounds; i++) {
+                mBattery.set(i % 101, false);
+            }
+            mBattery.set(33, true);
+        });
+        Thread network = new Thread(() -> {
+            await(start);
+            for (int i = 0; i < rounds; i++) {
+                mNetwork.set(StatusWord.TRANSPORT_WIFI, i % 5);
+            }
+            mNetwork.set(StatusWord.TRANSPORT_CELLULAR, 0);
+        });
+        Thread bluetooth = new Thread(() -> {
+            await(start);
+            for (int i = 0; i < rounds; i++) {
+                mBluetooth.set(i % 2 == 0 ? 0 : 2, i % 2);
+            }
+            mBluetooth.set(2, 4);
+        });
+        battery.start();
+        network.start();
+        bluetooth.start();
+        start.countDown();
+        battery.join();
+        network.join();
+        bluetooth.join();
+
+        long word = mEngine.getWord();
+        assertEquals(33, StatusWord.batteryLevel(word));
+        assertTrue(StatusWord.isCharging(word));
+        assertEquals(StatusWord.TRANSPORT_CELLULAR, StatusWord.transport(word));
+        assertEquals(2, StatusWord.bluetoothState(word));
+        assertEquals(4, StatusWord.bluetoothDevices(word));
+    }
+
+    /**
+     * 压测：单线程交替上报两个电量，每次都是真实变化，应逐次通知且不丢失
+     */
+    @Test
+    public void sustainsMillionsOfEvents() {
+        mEngine.start();
+        final int events = 4_000_000;
+        AtomicLong checksum = new AtomicLong();
+        mEngine.addListener((word, changedFields) -> checksum.addAndGet(StatusWord.batteryLevel(word)));
+        int before = mNotifications.get();
+        for (int i = 0; i < events; i++) {
+            mBattery.set(i & 1, false);
+        }
+
+        assertEquals(events, mNotifications.get() - before);
+        assertEquals(events / 2, checksum.get());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
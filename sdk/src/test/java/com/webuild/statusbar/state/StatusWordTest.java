@@ -0,0 +1,119 @@
+package com.webuild.statusbar.state;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * StatusWord 的位布局：各字段独立读写，互不覆盖
+ */
+public class StatusWordTest {
+
+    @Test
+    public void emptyIsAllUnknown() {
+        long word = StatusWord.EMPTY;
+        assertEquals(StatusSnapshot.UNKNOWN, StatusWord.batteryLevel(word));
+        assertFalse(StatusWord.isCharging(word));
+        assertEquals(StatusWord.TRANSPORT_UNKNOWN, StatusWord.transport(word));
+        assertEquals(StatusSnapshot.UNKNOWN, StatusWord.bluetoothState(word));
+        assertEquals(0, StatusWord.bluetoothDevices(word));
+        assertFalse(StatusWord.hasTime(word));
+        assertEquals(0, StatusWord.timeTick(word));
+    }
+
+    @Test
+    public void packRoundTrips() {
+        long word = StatusWord.pack(100, true, StatusWord.TRANSPORT_ETHERNET, 4, 2, true, -1);
+        assertEquals(100, StatusWord.batteryLevel(word));
+        assertTrue(StatusWord.isCharging(word));
+        assertEquals(StatusWord.TRANSPORT_ETHERNET, StatusWord.transport(word));
+        assertEquals(4, StatusWord.signalLevel(word));
+        assertEquals(2, StatusWord.bluetoothState(word));
+        assertTrue(StatusWord.hasTime(word));
+        assertTrue(StatusWord.is24HourFormat(word));
+        // All 32 tick bits survive
+        assertEquals(-1, StatusWord.timeTick(word));
+    }
+
+    @Test
+    public void outOfRangeValuesAreClampedOrUnknown() {
+        assertEquals(StatusSnapshot.UNKNOWN, StatusWord.batteryLevel(StatusWord.withBattery(0L, 101, false)));
+        assertEquals(StatusSnapshot.UNKNOWN, StatusWord.batteryLevel(StatusWord.withBattery(0L, -5, false)));
+        assertEquals(0, StatusWord.batteryLevel(StatusWord.withBattery(0L, 0, false)));
+        assertEquals(4, StatusWord.signalLevel(StatusWord.withNetwork(0L, StatusWord.TRANSPORT_WIFI, 9)));
+        assertEquals(0, StatusWord.signalLevel(StatusWord.withNetwork(0L, StatusWord.TRANSPORT_WIFI, -1)));
+        assertEquals(15, StatusWord.bluetoothDevices(StatusWord.withBluetooth(0L, 2, 40)));
+        assertEquals(0, StatusWord.bluetoothDevices(StatusWord.withBluetooth(0L, 2, -3)));
+    }
+
+    @Test
+    public void bluetoothStatesRoundTrip() {
+        assertEquals(-1, StatusWord.bluetoothState(StatusWord.withBluetooth(0L, -1)));
+        assertEquals(0, StatusWord.bluetoothState(StatusWord.withBluetooth(0L, 0)));
+        assertEquals(2, StatusWord.bluetoothState(StatusWord.withBluetooth(0L, 2)));
+        assertEquals(StatusSnapshot.UNKNOWN,
+                StatusWord.bluetoothState(StatusWord.withBluetooth(0L, StatusSnapshot.UNKNOWN)));
+    }
+
+    @Test
+    public void devicesDoNotLeakIntoNeighbours() {
+        long word = StatusWord.pack(50, false, StatusWord.TRANSPORT_WIFI, 3, 0, false, 7);
+        long withDevices = StatusWord.withBluetooth(word, 2, 15);
+        assertEquals(15, StatusWord.bluetoothDevices(withDevices));
+        assertEquals(2, StatusWord.bluetoothState(withDevices));
+        assertEquals(50, StatusWord.batteryLevel(withDevices));
+        assertEquals(StatusWord.TRANSPORT_WIFI, StatusWord.transport(withDevices));
+        assertEquals(3, StatusWord.signalLevel(withDevices));
+        assertFalse(StatusWord.is24HourFormat(withDevices));
+        assertTrue(StatusWord.hasTime(withDevices));
+        assertEquals(7, StatusWord.timeTick(withDevices));
+        // The short form clears the count
+        assertEquals(0, StatusWord.bluetoothDevices(StatusWord.withBluetooth(withDevices, 2)));
+    }
+
+    @Test
+    public void withBatteryTouchesOnlyBatteryBits() {
+        long word = StatusWord.withBluetooth(StatusWord.withTimeTick(StatusWord.EMPTY, 12), 2, 9);
+        long battery = StatusWord.withBattery(word, 33, true);
+        assertEquals(33, StatusWord.batteryLevel(battery));
+        assertTrue(StatusWord.isCharging(battery));
+        assertEquals(StatusSnapshot.FIELD_BATTERY_LEVEL | StatusSnapshot.FIELD_CHARGING,
+                StatusWord.changedFields(word, battery));
+        assertFalse(StatusWord.isCharging(StatusWord.withBattery(battery, 33, false)));
+        assertEquals(word, StatusWord.withBattery(battery, StatusSnapshot.UNKNOWN, false));
+    }
+
+    @Test
+    public void timeFormatAndTickMarkTheTimeKnown() {
+        assertTrue(StatusWord.hasTime(StatusWord.withTimeFormat(0L, false)));
+        assertTrue(StatusWord.hasTime(StatusWord.withTimeTick(0L, 0)));
+        long word = StatusWord.withTimeFormat(0L, true);
+        assertFalse(StatusWord.is24HourFormat(StatusWord.withTimeFormat(word, false)));
+        // A zero tick leaves the time unknown in pack
+        assertFalse(StatusWord.hasTime(StatusWord.pack(50, false, 0, 0, 0, true, 0)));
+    }
+
+    @Test
+    public void changedFieldsMapsEachField() {
+        long base = StatusWord.pack(50, false, StatusWord.TRANSPORT_WIFI, 2, 0, false, 1);
+        assertEquals(0, StatusWord.changedFields(base, base));
+        assertEquals(StatusSnapshot.FIELD_BATTERY_LEVEL,
+                StatusWord.changedFields(base, StatusWord.withBattery(base, 51, false)));
+        assertEquals(StatusSnapshot.FIELD_CHARGING,
+                StatusWord.changedFields(base, StatusWord.withBattery(base, 50, true)));
+        assertEquals(StatusSnapshot.FIELD_NETWORK,
+                StatusWord.changedFields(base, StatusWord.withNetwork(base, StatusWord.TRANSPORT_WIFI, 3)));
+        assertEquals(StatusSnapshot.FIELD_NETWORK,
+                StatusWord.changedFields(base, StatusWord.withNetwork(base, StatusWord.TRANSPORT_CELLULAR, 2)));
+        assertEquals(StatusSnapshot.FIELD_BLUETOOTH,
+                StatusWord.changedFields(base, StatusWord.withBluetooth(base, 0, 1)));
+        assertEquals(StatusSnapshot.FIELD_BLUETOOTH,
+                StatusWord.changedFields(base, StatusWord.withBluetooth(base, 2)));
+        assertEquals(StatusSnapshot.FIELD_TIME_FORMAT,
+                StatusWord.changedFields(base, StatusWord.withTimeFormat(base, true)));
+        assertEquals(StatusSnapshot.FIELD_TIME_TICK,
+                StatusWord.changedFields(base, StatusWord.withTimeTick(base, 2)));
+        assertEquals(StatusSnapshot.FIELD_TIME_FORMAT | StatusSnapshot.FIELD_TIME_TICK,
+                StatusWord.changedFields(StatusWord.EMPTY, StatusWord.withTimeTick(StatusWord.EMPTY, 1)));
+    }
+}